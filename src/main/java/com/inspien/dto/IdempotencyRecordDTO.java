@@ -0,0 +1,13 @@
+package com.inspien.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class IdempotencyRecordDTO {
+    private String traceId;          // 요청자가 보낸 X-Trace-Id
+    private String applicantKey;
+    private String receiptFileName;
+    private String orderIds;         // 콤마로 연결한 ORDER_ID 목록
+}
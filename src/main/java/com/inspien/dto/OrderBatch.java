@@ -0,0 +1,249 @@
+package com.inspien.dto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 주문 처리 내부용 묶음 (파싱 -> 검증 -> insert -> 영수증)
+ *
+ * ITEM 마다 OrderDTO 를 만들지 않고 컬럼별 배열에 저장
+ * - PRICE 는 long 으로 보관 (0 으로 시작하는 값 등 원문과 다르게 표현되는 경우에만 원문 보관)
+ * - NAME / ADDRESS / STATUS 는 HEADER 한 건당 한 번만 보관하고 행은 HEADER 번호만 가짐
+ * - 영수증 한 행의 byte 길이(ORDER_ID 제외)를 추가 시점에 미리 계산
+ *
+ * OrderDTO 는 JSON 응답(preview)에서만 toOrderRows() 로 만들어서 사용
+ */
+public class OrderBatch {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // 실제 ID 할당 전 임시 값 (preview 응답에 그대로 보임)
+    private static final String PLACEHOLDER_ORDER_ID = "T000";
+
+    private final String applicantKey;
+    private final int applicantKeyBytes;
+
+    // HEADER (USER_ID 가 같은 HEADER 가 여러 번 나오면 마지막 것이 사용됨)
+    private final List<String> headerNames = new ArrayList<>();
+    private final List<String> headerAddresses = new ArrayList<>();
+    private final List<String> headerStatuses = new ArrayList<>();
+    private final List<Integer> headerBytes = new ArrayList<>();
+
+    // ITEM
+    private int size;
+    private String[] orderIds;
+    private String[] userIds;
+    private String[] itemIds;
+    private String[] itemNames;
+    private long[] prices;
+    private String[] priceTexts; // 원문 보관이 필요한 행이 있을 때만 생성
+    private int[] headerRefs;
+    private int[] rowBytes;
+
+    private final Row row = new Row();
+
+    public OrderBatch(String applicantKey) {
+        this(applicantKey, INITIAL_CAPACITY);
+    }
+
+    public OrderBatch(String applicantKey, int capacity) {
+        this.applicantKey = applicantKey;
+        this.applicantKeyBytes = utf8Length(applicantKey);
+
+        int cap = Math.max(capacity, 1);
+        orderIds = new String[cap];
+        userIds = new String[cap];
+        itemIds = new String[cap];
+        itemNames = new String[cap];
+        prices = new long[cap];
+        headerRefs = new int[cap];
+        rowBytes = new int[cap];
+    }
+
+    public String getApplicantKey() {
+        return applicantKey;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // HEADER 등록 후 번호 반환 (ITEM 추가 시 사용)
+    public int addHeader(String name, String address, String status) {
+        headerNames.add(name);
+        headerAddresses.add(address);
+        headerStatuses.add(status);
+        headerBytes.add(utf8Length(name) + utf8Length(address));
+        return headerNames.size() - 1;
+    }
+
+    /**
+     * 검증이 끝난 ITEM 한 건 추가
+     * priceText 는 숫자만으로 이루어진 문자열, price 는 그 값 (long 범위를 넘으면 원문만 사용)
+     */
+    public void add(int headerRef, String userId, String itemId, String itemName, long price, String priceText) {
+        if (size == orderIds.length) grow();
+
+        int i = size++;
+        orderIds[i] = PLACEHOLDER_ORDER_ID;
+        userIds[i] = userId;
+        itemIds[i] = itemId;
+        itemNames[i] = itemName;
+        prices[i] = price;
+        headerRefs[i] = headerRef;
+
+        boolean canonical = price >= 0 && priceText.length() == digits(price)
+                && (priceText.length() == 1 || priceText.charAt(0) != '0');
+        if (!canonical) {
+            if (priceTexts == null) priceTexts = new String[orderIds.length];
+            priceTexts[i] = priceText;
+        } else if (priceTexts != null) {
+            priceTexts[i] = null;
+        }
+
+        // 구분자 7개 + 줄바꿈 1개
+        rowBytes[i] = utf8Length(userId) + utf8Length(itemId) + applicantKeyBytes + headerBytes.get(headerRef)
+                + utf8Length(itemName) + (canonical ? digits(price) : priceText.length()) + 8;
+    }
+
+    // ITEM 만 비우고 HEADER 는 유지 (스트리밍 입력에서 chunk 단위로 재사용)
+    public void clearItems() {
+        Arrays.fill(orderIds, 0, size, null);
+        Arrays.fill(userIds, 0, size, null);
+        Arrays.fill(itemIds, 0, size, null);
+        Arrays.fill(itemNames, 0, size, null);
+        if (priceTexts != null) Arrays.fill(priceTexts, 0, size, null);
+        size = 0;
+    }
+
+    public void setOrderId(int i, String orderId) {
+        orderIds[i] = orderId;
+    }
+
+    public String orderId(int i) { return orderIds[i]; }
+    public String userId(int i) { return userIds[i]; }
+    public String itemId(int i) { return itemIds[i]; }
+    public String itemName(int i) { return itemNames[i]; }
+    public String name(int i) { return headerNames.get(headerRefs[i]); }
+    public String address(int i) { return headerAddresses.get(headerRefs[i]); }
+    public String status(int i) { return headerStatuses.get(headerRefs[i]); }
+    public long price(int i) { return prices[i]; }
+
+    // 원문 그대로 써야 하는 PRICE 면 원문, 아니면 null (long 값을 그대로 사용)
+    public String priceOverride(int i) {
+        return priceTexts == null ? null : priceTexts[i];
+    }
+
+    public String priceText(int i) {
+        String text = priceOverride(i);
+        return text != null ? text : Long.toString(prices[i]);
+    }
+
+    // 영수증 한 행의 UTF-8 byte 길이 (ORDER_ID 포함)
+    public int receiptBytes(int i) {
+        return rowBytes[i] + utf8Length(orderIds[i]);
+    }
+
+    public List<String> orderIds() {
+        return Arrays.asList(Arrays.copyOf(orderIds, size));
+    }
+
+    public String joinOrderIds() {
+        StringBuilder sb = new StringBuilder(size * 5);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(orderIds[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * i 번째 행을 가리키는 재사용 객체 (MyBatis insert 파라미터용)
+     * BATCH executor 는 addBatch 시점에 값을 바인딩하므로 같은 객체를 옮겨가며 사용해도 됨
+     */
+    public Row row(int i) {
+        row.index = i;
+        return row;
+    }
+
+    // JSON 응답용
+    public List<OrderDTO> toOrderRows() {
+        List<OrderDTO> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            OrderDTO r = new OrderDTO();
+            r.setOrderId(orderIds[i]);
+            r.setUserId(userIds[i]);
+            r.setItemId(itemIds[i]);
+            r.setApplicantKey(applicantKey);
+            r.setName(name(i));
+            r.setAddress(address(i));
+            r.setItemName(itemNames[i]);
+            r.setPrice(priceText(i));
+            r.setStatus(status(i));
+            rows.add(r);
+        }
+        return rows;
+    }
+
+    private void grow() {
+        int cap = orderIds.length * 2;
+        orderIds = Arrays.copyOf(orderIds, cap);
+        userIds = Arrays.copyOf(userIds, cap);
+        itemIds = Arrays.copyOf(itemIds, cap);
+        itemNames = Arrays.copyOf(itemNames, cap);
+        prices = Arrays.copyOf(prices, cap);
+        headerRefs = Arrays.copyOf(headerRefs, cap);
+        rowBytes = Arrays.copyOf(rowBytes, cap);
+        if (priceTexts != null) priceTexts = Arrays.copyOf(priceTexts, cap);
+    }
+
+    private static int digits(long v) {
+        int n = 1;
+        while (v >= 10) {
+            v /= 10;
+            n++;
+        }
+        return n;
+    }
+
+    // 영수증 작성 시와 같은 규칙 (null 은 "null")
+    public static int utf8Length(String s) {
+        if (s == null) return 4;
+
+        int n = 0;
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                n++;
+            } else if (c < 0x800) {
+                n += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 4;
+                i++;
+            } else {
+                n += 3;
+            }
+        }
+        return n;
+    }
+
+    public class Row {
+        private int index;
+
+        public String getOrderId() { return orderIds[index]; }
+        public String getUserId() { return userIds[index]; }
+        public String getItemId() { return itemIds[index]; }
+        public String getApplicantKey() { return applicantKey; }
+        public String getName() { return name(index); }
+        public String getAddress() { return address(index); }
+        public String getItemName() { return itemNames[index]; }
+        public String getPrice() { return priceText(index); }
+        public String getStatus() { return status(index); }
+    }
+}
@@ -0,0 +1,13 @@
+package com.inspien.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class OrderIdBlockDTO {
+    private String applicantKey;
+    private int blockStart;   // 다음에 사용할 index (A000=0 ~ Z999=25999)
+    private int blockEnd;     // 블록 끝 index (미포함)
+    private String owner;     // 블록을 임대한 노드, 반납되면 null
+}
@@ -0,0 +1,15 @@
+package com.inspien.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderItemErrorDTO {
+    // 문서 안에서 ITEM 의 순서 (0부터)
+    private int itemIndex;
+    private String field;
+    private String message;
+}
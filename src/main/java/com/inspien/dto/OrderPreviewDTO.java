@@ -13,6 +13,13 @@ public class OrderPreviewDTO {
     private int recordCount;
     private List<OrderDTO> rows;
 
+    // 같은 XML 로 주문 생성 시 X-Preview-Token 헤더로 보내면 파싱/검증 생략
+    private String previewToken;
+
     // 실패 시 첨부할 메세지
     private String message;
+
+    // ITEM 검증 실패 시 전체 오류 목록 (ITEM 순서 포함)
+    private Integer errorCount;
+    private List<OrderItemErrorDTO> errors;
 }
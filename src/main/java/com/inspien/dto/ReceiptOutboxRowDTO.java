@@ -0,0 +1,15 @@
+package com.inspien.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class ReceiptOutboxRowDTO {
+    private String fileName;
+    private String traceId;
+    private String location;          // pending / sent / failed
+    private String retryable;         // Y: 실패 이력 있음(재시도 대상), N: 전송 중이거나 아직 시도 전
+    private long nextAttemptAt;       // epoch ms
+    private String metaJson;          // ReceiptMetaDTO json
+}
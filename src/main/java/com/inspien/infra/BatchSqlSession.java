@@ -0,0 +1,49 @@
+package com.inspien.infra;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * ExecutorType.BATCH 로 동작하는 MyBatis 세션
+ *
+ * 같은 SQL 문장을 연속으로 호출하면 PreparedStatement 하나에 addBatch 로 모았다가 flush 시 한 번에 전송
+ * (INSERT ALL + foreach 처럼 건수마다 SQL 문장이 달라지지 않으므로 Oracle 에서 cursor 를 재사용함)
+ *
+ * - 반드시 Spring 트랜잭션 안에서 사용 (트랜잭션이 없으면 호출마다 바로 커밋되어 batch 효과가 없음)
+ * - 같은 트랜잭션 안에서 기본(SIMPLE) mapper 와 섞어 쓸 수 없으므로 해당 트랜잭션의 모든 쿼리를 이 세션의 mapper 로 실행
+ * - batch 모드의 update/insert 반환값은 의미가 없으므로 실제 건수는 flush() 결과에서 확인
+ */
+@Component
+public class BatchSqlSession {
+
+    private final SqlSessionTemplate template;
+
+    public BatchSqlSession(SqlSessionFactory sqlSessionFactory) {
+        this.template = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+    }
+
+    public <T> T getMapper(Class<T> type) {
+        return template.getMapper(type);
+    }
+
+    // 모아둔 문장을 DB로 전송, PK 충돌 등의 오류도 이 시점에 발생
+    public List<BatchResult> flush() {
+        return template.flushStatements();
+    }
+
+    // flush 결과에서 실제 반영된 건수 합계
+    public static int affectedRows(List<BatchResult> results) {
+        int total = 0;
+        for (BatchResult r : results) {
+            for (int count : r.getUpdateCounts()) {
+                if (count > 0) total += count;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,250 @@
+package com.inspien.infra;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inspien.dto.ReceiptOutboxRowDTO;
+import com.inspien.mapper.ReceiptOutboxMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 영수증 meta 를 RECEIPT_OUTBOX_TB 에 저장 (inspien.receipt.outbox-backend=database)
+ *
+ * 여러 서버가 같은 테이블을 보므로, 한 서버가 죽어도 남은 서버가 그 서버의 pending 영수증을 재전송할 수 있음
+ * - 재전송 대상은 FOR UPDATE SKIP LOCKED 로 골라서 임대(LEASE_OWNER / LEASE_UNTIL)를 걸고 가져감
+ * - 전송(요청 처리 중 전송, 관리자 재전송 포함) 전에는 tryLease 로 선점, 끝나면 반납
+ *   반납하지 못하고 죽은 서버의 임대는 lease-seconds 가 지나면 다른 서버가 가져감
+ *   전송 중인 임대는 lease-renew-interval-ms 마다 연장하므로, 큰 영수증 전송이 lease-seconds 를 넘겨도 다른 서버가 가져가지 않음
+ * - 실패 이력이 없는데 stale-after-seconds 동안 바뀌지 않은 pending 은 전송 중에 서버가 죽은 것으로 보고 재전송 대상으로 바꿈
+ *
+ * 영수증 파일(.txt)은 각 서버 로컬 폴더에 있으므로, 다른 서버의 영수증을 가져간 경우 DB 에서 다시 만들어서 전송함
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "inspien.receipt.outbox-backend", havingValue = "database")
+public class DatabaseMetaStore implements SharedReceiptMetaStore {
+
+    private final ReceiptOutboxMapper mapper;
+    private final PlatformTransactionManager txManager;
+    private final ObjectMapper om = new ObjectMapper();
+
+    // 임대 시간 (전송 중에는 주기적으로 연장되므로 연장 주기보다 충분히 길게)
+    @Value("${inspien.receipt.db.lease-seconds:300}")
+    private int leaseSeconds;
+
+    @Value("${inspien.receipt.db.stale-after-seconds:600}")
+    private int staleAfterSeconds;
+
+    // 비어 있으면 hostname-pid
+    @Value("${inspien.receipt.db.node-id:}")
+    private String nodeId;
+
+    // 이 서버가 선점해서 아직 반납하지 않은 영수증 (임대 연장 대상)
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+
+    public DatabaseMetaStore(ReceiptOutboxMapper mapper, PlatformTransactionManager txManager) {
+        this.mapper = mapper;
+        this.txManager = txManager;
+    }
+
+    @Override
+    public void write(String location, ReceiptMetaDTO meta) {
+        mapper.upsert(toRow(location, meta));
+    }
+
+    @Override
+    public ReceiptMetaDTO read(String location, String fileName) {
+        ReceiptOutboxRowDTO row = mapper.selectByFileName(fileName);
+        if (row == null || !row.getLocation().equals(location)) return null;
+        return fromJson(row.getMetaJson());
+    }
+
+    @Override
+    public boolean exists(String location, String fileName) {
+        ReceiptOutboxRowDTO row = mapper.selectByFileName(fileName);
+        return row != null && row.getLocation().equals(location);
+    }
+
+    @Override
+    public boolean move(String fileName, String fromLocation, String toLocation) {
+        try {
+            // 0 건이면 이미 옮겨졌거나 원래 없던 것
+            mapper.updateLocation(fileName, fromLocation, toLocation);
+            return true;
+        } catch (Exception e) {
+            log.error("Move failed. fileName={}, from={}, to={}, msg={}", fileName, fromLocation, toLocation, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public void rename(String location, String oldFileName, String newFileName) throws Exception {
+        mapper.updateFileName(oldFileName, newFileName);
+    }
+
+    @Override
+    public void delete(String location, String fileName) {
+        try {
+            mapper.deleteByFileName(fileName, location);
+        } catch (Exception e) {
+            log.error("Discard failed. fileName={}, msg={}", fileName, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void forEach(String location, Consumer<ReceiptMetaDTO> action) {
+        for (ReceiptOutboxRowDTO row : mapper.selectByLocation(location)) {
+            try {
+                action.accept(fromJson(row.getMetaJson()));
+            } catch (Exception e) {
+                log.error("Read meta failed. fileName={}, msg={}", row.getFileName(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String locationOf(String fileName) {
+        ReceiptOutboxRowDTO row = mapper.selectByFileName(fileName);
+        return row == null ? null : row.getLocation();
+    }
+
+    @Override
+    public Stored findByTraceId(String traceId) {
+        ReceiptOutboxRowDTO row = mapper.selectByTraceId(traceId);
+        return row == null ? null : new Stored(row.getLocation(), fromJson(row.getMetaJson()));
+    }
+
+    @Override
+    public int countPending() {
+        return mapper.countByLocation(ReceiptOutbox.PENDING);
+    }
+
+    /**
+     * 재전송 대상 선점: 대상 행을 잠그고(SKIP LOCKED) 임대를 건 뒤 commit
+     * 전송 중에 서버가 죽은 것으로 보이는 영수증은 이때 재전송 대상(INTERRUPTED_BEFORE_DELIVERY)으로 바꿈
+     */
+    @Override
+    public List<String> claimDue(int limit) {
+        long now = System.currentTimeMillis();
+        List<String> claimed = newTx().execute(status -> {
+            List<String> res = new ArrayList<>();
+            for (ReceiptOutboxRowDTO row : mapper.selectDueForUpdate(now, staleAfterSeconds, new RowBounds(0, limit))) {
+                if (!"Y".equals(row.getRetryable())) {
+                    ReceiptMetaDTO meta = fromJson(row.getMetaJson());
+                    meta.setLastError("INTERRUPTED_BEFORE_DELIVERY");
+                    meta.setNextAttemptAtEpochMs(now);
+                    mapper.upsert(toRow(row.getLocation(), meta));
+                    log.warn("Stale receipt marked for retry. fileName={}", row.getFileName());
+                }
+                mapper.tryLease(row.getFileName(), owner(), leaseSeconds);
+                res.add(row.getFileName());
+            }
+            return res;
+        });
+        held.addAll(claimed);
+        return claimed;
+    }
+
+    @Override
+    public boolean tryLease(String fileName) {
+        try {
+            if (mapper.tryLease(fileName, owner(), leaseSeconds) != 1) return false;
+            held.add(fileName);
+            return true;
+        } catch (Exception e) {
+            log.error("Receipt lease failed. fileName={}, msg={}", fileName, e.getMessage());
+            return false;
+        }
+    }
+
+    // 반납에 실패해도 임대 만료 후 다른 서버가 가져갈 수 있음
+    @Override
+    public void releaseLease(String fileName) {
+        held.remove(fileName);
+        try {
+            mapper.releaseLease(fileName, owner());
+        } catch (Exception e) {
+            log.warn("Receipt lease release failed. fileName={}, msg={}", fileName, e.getMessage());
+        }
+    }
+
+    /**
+     * 선점 중인 영수증의 임대 연장
+     * 연장되지 않으면(연장이 늦어 만료된 사이 다른 서버가 가져감) 더 연장하지 않고 경고만 남김
+     */
+    @Scheduled(fixedDelayString = "${inspien.receipt.db.lease-renew-interval-ms:60000}")
+    public void renewLeases() {
+        for (String fileName : held) {
+            try {
+                if (mapper.renewLease(fileName, owner(), leaseSeconds) == 0) {
+                    held.remove(fileName);
+                    log.warn("Receipt lease lost while in use. fileName={}", fileName);
+                }
+            } catch (Exception e) {
+                log.warn("Receipt lease renew failed. fileName={}, msg={}", fileName, e.getMessage());
+            }
+        }
+    }
+
+    private ReceiptOutboxRowDTO toRow(String location, ReceiptMetaDTO meta) {
+        boolean retryable = meta.getAttempts() > 0 || (meta.getLastError() != null && !meta.getLastError().isBlank());
+
+        ReceiptOutboxRowDTO row = new ReceiptOutboxRowDTO();
+        row.setFileName(meta.getFileName());
+        row.setTraceId(meta.getTraceId());
+        row.setLocation(location);
+        row.setRetryable(retryable ? "Y" : "N");
+        row.setNextAttemptAt(meta.getNextAttemptAtEpochMs());
+        row.setMetaJson(toJson(meta));
+        return row;
+    }
+
+    private String toJson(ReceiptMetaDTO meta) {
+        try {
+            return om.writeValueAsString(meta);
+        } catch (Exception e) {
+            throw new RuntimeException("Meta json serialization failed: " + e.getMessage(), e);
+        }
+    }
+
+    private ReceiptMetaDTO fromJson(String json) {
+        try {
+            return om.readValue(json, ReceiptMetaDTO.class);
+        } catch (Exception e) {
+            throw new RuntimeException("Read meta failed: " + e.getMessage(), e);
+        }
+    }
+
+    private TransactionTemplate newTx() {
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return tx;
+    }
+
+    private String owner() {
+        if (nodeId == null || nodeId.isBlank()) {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                host = "unknown";
+            }
+            // 재기동 시 이전 프로세스의 임대와 구분되도록 pid 포함
+            nodeId = host + "-" + ProcessHandle.current().pid();
+        }
+        return nodeId;
+    }
+}
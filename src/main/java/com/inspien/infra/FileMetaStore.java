@@ -0,0 +1,128 @@
+package com.inspien.infra;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.*;
+import java.util.function.Consumer;
+
+/**
+ * 영수증 meta 를 outbox 폴더(pending/sent/failed)에 <fileName>.meta.json 파일로 저장 (기본 backend)
+ * 사람이 폴더만 보고도 상태를 확인할 수 있지만, 상태가 바뀔 때마다 파일 쓰기 + rename 이 일어남
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "inspien.receipt.outbox-backend", havingValue = "file", matchIfMissing = true)
+public class FileMetaStore implements ReceiptMetaStore {
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Value("${inspien.receipt.outbox-dir:./out/receipts}")
+    private String outboxDir;
+
+    private Path metaPath(String location, String fileName) {
+        return Paths.get(outboxDir, location).resolve(fileName + ".meta.json");
+    }
+
+    @Override
+    public void write(String location, ReceiptMetaDTO meta) {
+        atomicWriteString(metaPath(location, meta.getFileName()), toJson(meta));
+    }
+
+    @Override
+    public ReceiptMetaDTO read(String location, String fileName) {
+        try {
+            String json = Files.readString(metaPath(location, fileName));
+            return om.readValue(json, ReceiptMetaDTO.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (Exception e) {
+            throw new RuntimeException("Read meta failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean exists(String location, String fileName) {
+        return Files.exists(metaPath(location, fileName));
+    }
+
+    @Override
+    public boolean move(String fileName, String fromLocation, String toLocation) {
+        Path from = metaPath(fromLocation, fileName);
+        Path to = metaPath(toLocation, fileName);
+        try {
+            if (Files.exists(from)) {
+                Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("Move failed. from={}, to={}, msg={}", from, to, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public void rename(String location, String oldFileName, String newFileName) throws Exception {
+        Path oldMeta = metaPath(location, oldFileName);
+        if (Files.exists(oldMeta)) {
+            Files.move(oldMeta, metaPath(location, newFileName));
+        }
+    }
+
+    @Override
+    public void delete(String location, String fileName) {
+        Path p = metaPath(location, fileName);
+        try {
+            Files.deleteIfExists(p);
+        } catch (Exception e) {
+            log.error("Discard failed. path={}, msg={}", p, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void forEach(String location, Consumer<ReceiptMetaDTO> action) {
+        Path dir = Paths.get(outboxDir, location);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.meta.json")) {
+            for (Path metaPath : stream) {
+                try {
+                    action.accept(om.readValue(Files.readString(metaPath), ReceiptMetaDTO.class));
+                } catch (Exception e) {
+                    log.error("Read meta failed. metaPath={}, msg={}", metaPath, e.getMessage());
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // 폴더가 아직 없으면 읽을 것도 없음
+        } catch (Exception e) {
+            log.error("Meta scan failed. dir={}, msg={}", dir, e.getMessage(), e);
+        }
+    }
+
+    private String toJson(ReceiptMetaDTO meta) {
+        try {
+            return om.writeValueAsString(meta);
+        } catch (Exception e) {
+            throw new RuntimeException("Meta json serialization failed: " + e.getMessage(), e);
+        }
+    }
+
+    // 깨진(작성하다가 중간에 중단된) 파일이 만들어지는 걸 방지하기 위해 atomic write 패턴 사용
+    private void atomicWriteString(Path target, String content) {
+        try {
+            Path tmp = Paths.get(target.toString() + ".tmp");
+            Files.writeString(tmp, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // atomic_move 가 지원되지 않는 경우엔 일반적인 방법으로 생성
+            try {
+                Files.writeString(target, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (Exception ex) {
+                throw new RuntimeException("Write failed: " + ex.getMessage(), ex);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Write failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package com.inspien.infra;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 영수증 meta 를 append-only journal 로 저장 (inspien.receipt.outbox-backend=journal)
+ *
+ * meta 파일을 상태가 바뀔 때마다 새로 쓰고 옮기는 대신, 변경 내용(PUT / MOVE / RENAME / DELETE)만 로그 끝에 추가
+ * - 레코드: [길이 4byte][CRC32C 4byte][내용], 시작 시 처음부터 다시 읽어서 메모리 상태 복원
+ *   마지막 레코드가 덜 쓰였거나 CRC 가 맞지 않으면 그 지점에서 잘라냄
+ * - fsync 는 동시에 기록한 요청끼리 묶어서 한 번만 (먼저 도착한 스레드가 대표로 수행)
+ * - segment-bytes 를 넘으면 새 segment 파일로 넘어가고, 주기적으로 현재 상태만 남긴 snapshot 으로 이전 segment 를 정리
+ *
+ * 영수증 파일(.txt)은 file backend 와 같이 pending/sent/failed 폴더에 그대로 저장됨
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "inspien.receipt.outbox-backend", havingValue = "journal")
+public class JournalMetaStore implements ReceiptMetaStore {
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_MOVE = 2;
+    private static final byte OP_RENAME = 3;
+    private static final byte OP_DELETE = 4;
+    private static final byte OP_RESET = 5; // compaction snapshot 시작 (이전 내용 무시)
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Value("${inspien.receipt.outbox-dir:./out/receipts}")
+    private String outboxDir;
+
+    @Value("${inspien.receipt.journal.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    // false 면 OS 에 맡김 (서버가 갑자기 꺼지면 마지막 변경 일부가 사라질 수 있음)
+    @Value("${inspien.receipt.journal.fsync:true}")
+    private boolean fsync;
+
+    // 로그 전체 크기가 이 값 이상이고 현재 상태의 2배를 넘으면 compaction
+    @Value("${inspien.receipt.journal.compact-min-bytes:16777216}")
+    private long compactMinBytes;
+
+    private record Stored(String location, String json) {}
+
+    // fileName -> 현재 상태 (writeLock 으로 보호)
+    private final Map<String, Stored> state = new HashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private FileChannel channel;
+    private int segmentNo;
+    private long segmentSize;
+    private long totalBytes;
+
+    // group fsync
+    private final Object syncMonitor = new Object();
+    private long appendedSeq;
+    private long syncedSeq;
+    private boolean syncing;
+
+    private Path journalDir() {
+        return Paths.get(outboxDir, "journal");
+    }
+
+    private Path segmentPath(int no) {
+        return journalDir().resolve(String.format("%s%06d%s", SEGMENT_PREFIX, no, SEGMENT_SUFFIX));
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        Files.createDirectories(journalDir());
+
+        List<Integer> segments = listSegments();
+        int records = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            records += replay(segments.get(i), i == segments.size() - 1);
+        }
+
+        segmentNo = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        openSegment(segmentNo);
+        totalBytes = sizeOfSegments(segmentNo);
+
+        log.info("Receipt journal opened. segments={}, records={}, entries={}, bytes={}",
+                segments.size(), records, state.size(), totalBytes);
+    }
+
+    @PreDestroy
+    void close() {
+        writeLock.lock();
+        try {
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+            }
+        } catch (IOException e) {
+            log.error("Receipt journal close failed. msg={}", e.getMessage(), e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void write(String location, ReceiptMetaDTO meta) {
+        String json = toJson(meta);
+        long seq;
+        writeLock.lock();
+        try {
+            seq = append(encode(OP_PUT, location, meta.getFileName(), json));
+            state.put(meta.getFileName(), new Stored(location, json));
+        } finally {
+            writeLock.unlock();
+        }
+        awaitSync(seq);
+    }
+
+    @Override
+    public ReceiptMetaDTO read(String location, String fileName) {
+        Stored s;
+        writeLock.lock();
+        try {
+            s = state.get(fileName);
+        } finally {
+            writeLock.unlock();
+        }
+        if (s == null || !s.location().equals(location)) return null;
+        return fromJson(s.json());
+    }
+
+    @Override
+    public boolean exists(String location, String fileName) {
+        writeLock.lock();
+        try {
+            Stored s = state.get(fileName);
+            return s != null && s.location().equals(location);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean move(String fileName, String fromLocation, String toLocation) {
+        long seq;
+        writeLock.lock();
+        try {
+            Stored s = state.get(fileName);
+            if (s == null || !s.location().equals(fromLocation)) return true;
+
+            seq = append(encode(OP_MOVE, fileName, toLocation));
+            state.put(fileName, new Stored(toLocation, s.json()));
+        } catch (Exception e) {
+            log.error("Journal move failed. fileName={}, to={}, msg={}", fileName, toLocation, e.getMessage(), e);
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+        awaitSync(seq);
+        return true;
+    }
+
+    @Override
+    public void rename(String location, String oldFileName, String newFileName) {
+        long seq;
+        writeLock.lock();
+        try {
+            Stored s = state.get(oldFileName);
+            if (s == null || !s.location().equals(location)) return;
+            if (state.containsKey(newFileName)) {
+                throw new IllegalStateException("Target filename already exists: " + newFileName);
+            }
+
+            seq = append(encode(OP_RENAME, oldFileName, newFileName));
+            state.remove(oldFileName);
+            state.put(newFileName, s);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitSync(seq);
+    }
+
+    @Override
+    public void delete(String location, String fileName) {
+        long seq;
+        writeLock.lock();
+        try {
+            Stored s = state.get(fileName);
+            if (s == null || !s.location().equals(location)) return;
+
+            seq = append(encode(OP_DELETE, fileName));
+            state.remove(fileName);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitSync(seq);
+    }
+
+    @Override
+    public void forEach(String location, Consumer<ReceiptMetaDTO> action) {
+        List<String> jsons = new ArrayList<>();
+        writeLock.lock();
+        try {
+            for (Stored s : state.values()) {
+                if (s.location().equals(location)) jsons.add(s.json());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        for (String json : jsons) {
+            action.accept(fromJson(json));
+        }
+    }
+
+    /**
+     * compaction: 현재 segment 를 닫고, 그때까지의 상태를 snapshot 한 파일로 이전 segment 들을 대체
+     * snapshot 은 RESET 으로 시작하므로, 교체 도중 서버가 죽어서 이전 segment 가 남아 있어도 결과는 같음
+     */
+    @Scheduled(fixedDelayString = "${inspien.receipt.journal.compact-interval-ms:300000}")
+    public void compact() {
+        Map<String, Stored> snapshot;
+        int upTo;
+
+        writeLock.lock();
+        try {
+            long liveBytes = 0;
+            for (Stored s : state.values()) liveBytes += s.json().length() + 64;
+            if (totalBytes < compactMinBytes || totalBytes < liveBytes * 2) return;
+
+            rollSegment();
+            snapshot = new HashMap<>(state);
+            upTo = segmentNo - 1;
+        } catch (IOException e) {
+            log.error("Receipt journal compaction failed. msg={}", e.getMessage(), e);
+            return;
+        } finally {
+            writeLock.unlock();
+        }
+
+        Path target = segmentPath(upTo);
+        Path tmp = Paths.get(target + ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                writeFully(out, frame(encode(OP_RESET)));
+                for (Map.Entry<String, Stored> e : snapshot.entrySet()) {
+                    writeFully(out, frame(encode(OP_PUT, e.getValue().location(), e.getKey(), e.getValue().json())));
+                }
+                out.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            for (int no : listSegments()) {
+                if (no < upTo) Files.deleteIfExists(segmentPath(no));
+            }
+
+            writeLock.lock();
+            try {
+                totalBytes = sizeOfSegments(segmentNo);
+            } finally {
+                writeLock.unlock();
+            }
+            log.info("Receipt journal compacted. upToSegment={}, entries={}, bytes={}", upTo, snapshot.size(), totalBytes);
+
+        } catch (Exception e) {
+            log.error("Receipt journal compaction failed. msg={}", e.getMessage(), e);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // 다음 시작 시 정리됨
+            }
+        }
+    }
+
+    // writeLock 안에서 호출, 기록 순번 반환
+    private long append(byte[] payload) {
+        ByteBuffer buf = frame(payload);
+        try {
+            if (segmentSize > 0 && segmentSize + buf.remaining() > segmentBytes) {
+                rollSegment();
+            }
+            int len = buf.remaining();
+            writeFully(channel, buf);
+            segmentSize += len;
+            totalBytes += len;
+            return ++appendedSeq;
+        } catch (IOException e) {
+            throw new RuntimeException("Journal write failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * seq 까지 디스크에 기록될 때까지 대기
+     * 진행 중인 fsync 가 없으면 직접 수행하고, 그동안 쌓인 기록은 다음 한 번의 fsync 로 같이 처리
+     */
+    private void awaitSync(long seq) {
+        if (!fsync) return;
+
+        while (true) {
+            synchronized (syncMonitor) {
+                while (syncedSeq < seq && syncing) {
+                    try {
+                        syncMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while waiting for journal sync", e);
+                    }
+                }
+                if (syncedSeq >= seq) return;
+                syncing = true;
+            }
+
+            long target;
+            FileChannel ch;
+            writeLock.lock();
+            try {
+                target = appendedSeq;
+                ch = channel;
+            } finally {
+                writeLock.unlock();
+            }
+
+            boolean ok = false;
+            try {
+                ch.force(false);
+                ok = true;
+            } catch (ClosedChannelException e) {
+                // segment 가 넘어가면서 닫힘: 닫기 전에 force 했으므로 기록은 완료된 상태
+                ok = true;
+            } catch (IOException e) {
+                throw new RuntimeException("Journal sync failed: " + e.getMessage(), e);
+            } finally {
+                synchronized (syncMonitor) {
+                    syncing = false;
+                    if (ok) syncedSeq = Math.max(syncedSeq, target);
+                    syncMonitor.notifyAll();
+                }
+            }
+        }
+    }
+
+    // writeLock 안에서 호출
+    private void rollSegment() throws IOException {
+        channel.force(true);
+        channel.close();
+        openSegment(++segmentNo);
+    }
+
+    private void openSegment(int no) throws IOException {
+        channel = FileChannel.open(segmentPath(no), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segmentSize = channel.size();
+        channel.position(segmentSize);
+    }
+
+    private List<Integer> listSegments() throws IOException {
+        List<Integer> res = new ArrayList<>();
+        try (Stream<Path> files = Files.list(journalDir())) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // compaction 도중 중단된 파일
+                    Files.deleteIfExists(p);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    res.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                }
+            }
+        }
+        Collections.sort(res);
+        return res;
+    }
+
+    private long sizeOfSegments(int upToInclusive) throws IOException {
+        long sum = 0;
+        for (int no : listSegments()) {
+            if (no <= upToInclusive) sum += Files.size(segmentPath(no));
+        }
+        return sum;
+    }
+
+    /**
+     * segment 하나를 읽어서 상태에 반영, 읽은 레코드 수 반환
+     * 덜 쓰인 레코드 / CRC 불일치가 나오면 거기서 멈추고, 마지막 segment 면 그 위치로 잘라냄
+     */
+    private int replay(int no, boolean last) throws IOException {
+        Path path = segmentPath(no);
+        int records = 0;
+        long goodPos = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                int len;
+                try {
+                    len = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                byte[] payload;
+                long crc;
+                try {
+                    crc = in.readInt() & 0xFFFFFFFFL;
+                    if (len < 1) throw new EOFException("bad length");
+                    payload = in.readNBytes(len);
+                    if (payload.length != len) throw new EOFException("short record");
+                } catch (EOFException e) {
+                    log.warn("Receipt journal has a torn record. segment={}, position={}", path, goodPos);
+                    break;
+                }
+
+                CRC32C c = new CRC32C();
+                c.update(payload);
+                if (c.getValue() != crc) {
+                    log.warn("Receipt journal checksum mismatch. segment={}, position={}", path, goodPos);
+                    break;
+                }
+
+                apply(payload);
+                records++;
+                goodPos += 8 + len;
+            }
+        }
+
+        if (last && goodPos < Files.size(path)) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                ch.truncate(goodPos);
+                ch.force(true);
+            }
+            log.warn("Receipt journal truncated. segment={}, size={}", path, goodPos);
+        }
+        return records;
+    }
+
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        switch (op) {
+            case OP_PUT -> {
+                String location = readString(in);
+                String fileName = readString(in);
+                state.put(fileName, new Stored(location, readString(in)));
+            }
+            case OP_MOVE -> {
+                String fileName = readString(in);
+                String to = readString(in);
+                Stored s = state.get(fileName);
+                if (s != null) state.put(fileName, new Stored(to, s.json()));
+            }
+            case OP_RENAME -> {
+                String oldFileName = readString(in);
+                String newFileName = readString(in);
+                Stored s = state.remove(oldFileName);
+                if (s != null) state.put(newFileName, s);
+            }
+            case OP_DELETE -> state.remove(readString(in));
+            case OP_RESET -> state.clear();
+            default -> throw new IOException("Unknown journal op: " + op);
+        }
+    }
+
+    private static byte[] encode(byte op, String... fields) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeByte(op);
+            for (String f : fields) {
+                byte[] b = f.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(b.length);
+                out.write(b);
+            }
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = in.readNBytes(in.readInt());
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer frame(byte[] payload) {
+        CRC32C c = new CRC32C();
+        c.update(payload);
+
+        ByteBuffer buf = ByteBuffer.allocate(8 + payload.length);
+        buf.putInt(payload.length);
+        buf.putInt((int) c.getValue());
+        buf.put(payload);
+        buf.flip();
+        return buf;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+
+    private String toJson(ReceiptMetaDTO meta) {
+        try {
+            return om.writeValueAsString(meta);
+        } catch (Exception e) {
+            throw new RuntimeException("Meta json serialization failed: " + e.getMessage(), e);
+        }
+    }
+
+    private ReceiptMetaDTO fromJson(String json) {
+        try {
+            return om.readValue(json, ReceiptMetaDTO.class);
+        } catch (Exception e) {
+            throw new RuntimeException("Read meta failed: " + e.getMessage(), e);
+        }
+    }
+}
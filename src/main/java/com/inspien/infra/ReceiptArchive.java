@@ -0,0 +1,291 @@
+package com.inspien.infra;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 전송 완료(sent) 영수증 보관
+ *
+ * sent 폴더에 영수증이 계속 쌓이면 폴더 작업이 느려지므로, 일정 기간이 지난 영수증은 날짜별 zip 으로 묶고 sent 에서 제거
+ * - archive/sent-<yyyy-MM-dd>[-n].zip : 영수증 파일 + <fileName>.meta.json
+ * - archive/sent-<yyyy-MM-dd>[-n].zip.idx : 한 줄에 "fileName<TAB>traceId" (시작 시 메모리 색인으로 읽음)
+ * - retention-days 가 지난 zip 은 삭제 (0 이면 보관 기간 제한 없음)
+ *
+ * 날짜는 영수증 파일명의 시각(INSPIEN_<name>_<yyyyMMddHHmmss>.txt) 기준, 형식이 다르면 파일 수정 시각
+ */
+@Slf4j
+@Component
+public class ReceiptArchive {
+
+    private static final Pattern RECEIPT_TIME_PATTERN = Pattern.compile("_(\\d{14})\\.txt$");
+    private static final DateTimeFormatter RECEIPT_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final Pattern ARCHIVE_NAME_PATTERN = Pattern.compile("^sent-(\\d{4}-\\d{2}-\\d{2})(-\\d+)?\\.zip$");
+
+    private final ReceiptOutbox outbox;
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Value("${inspien.receipt.outbox-dir:./out/receipts}")
+    private String outboxDir;
+
+    // 이 일수보다 오래된 날짜의 영수증만 보관 (당일 영수증은 sent 에서 바로 조회할 수 있도록)
+    @Value("${inspien.receipt.archive.min-age-days:1}")
+    private int minAgeDays;
+
+    @Value("${inspien.receipt.archive.retention-days:365}")
+    private int retentionDays;
+
+    public record Entry(String archive, String fileName, String traceId) {}
+
+    // 보관된 영수증 조회 결과 (receipt 는 영수증 원문)
+    public record Archived(Entry entry, ReceiptMetaDTO meta, String receipt) {}
+
+    private final Map<String, Entry> byTraceId = new ConcurrentHashMap<>();
+    private final Map<String, Entry> byFileName = new ConcurrentHashMap<>();
+
+    public ReceiptArchive(ReceiptOutbox outbox) {
+        this.outbox = outbox;
+    }
+
+    public Path archiveDir() {
+        return Paths.get(outboxDir, "archive");
+    }
+
+    /**
+     * 시작 시 .idx 파일로 색인 구성
+     * .idx 가 없는 zip 은 작성 도중 중단된 것 (sent 에서 아직 지우지 않은 상태) 이므로 삭제
+     */
+    @PostConstruct
+    public void loadIndex() {
+        try {
+            Files.createDirectories(archiveDir());
+            for (Path zip : listArchives()) {
+                Path idx = idxPathOf(zip);
+                if (!Files.exists(idx)) {
+                    log.warn("Archive without index removed. archive={}", zip);
+                    Files.deleteIfExists(zip);
+                    continue;
+                }
+                for (String line : Files.readAllLines(idx, StandardCharsets.UTF_8)) {
+                    int tab = line.indexOf('\t');
+                    if (tab < 0) continue;
+                    register(new Entry(zip.getFileName().toString(), line.substring(0, tab), line.substring(tab + 1)));
+                }
+            }
+            log.info("Receipt archive index loaded. entries={}", byFileName.size());
+        } catch (Exception e) {
+            log.error("Receipt archive index load failed. msg={}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * sent 영수증을 날짜별 zip 으로 보관하고 sent 에서 제거, 보관 건수 반환
+     */
+    public int archiveSent() {
+        LocalDate cutoff = LocalDate.now().minusDays(minAgeDays);
+
+        Map<LocalDate, List<String>> byDay = new TreeMap<>();
+        for (String fileName : outbox.fileNames(ReceiptOutbox.SENT)) {
+            if (byFileName.containsKey(fileName)) {
+                // zip / idx 확정 후 sent 에서 지우기 전에 중단된 경우: 다시 묶지 않고 sent 에서만 제거
+                outbox.forgetSent(fileName);
+                continue;
+            }
+            LocalDate day = dayOf(fileName);
+            if (day != null && !day.isAfter(cutoff)) {
+                byDay.computeIfAbsent(day, d -> new ArrayList<>()).add(fileName);
+            }
+        }
+
+        int archived = 0;
+        for (Map.Entry<LocalDate, List<String>> e : byDay.entrySet()) {
+            try {
+                archived += writeArchive(e.getKey(), e.getValue());
+            } catch (Exception ex) {
+                log.error("Receipt archive failed. day={}, msg={}", e.getKey(), ex.getMessage(), ex);
+            }
+        }
+        return archived;
+    }
+
+    // retention-days 가 지난 zip 삭제, 삭제한 zip 수 반환
+    public int pruneExpired() {
+        if (retentionDays <= 0) return 0;
+
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        int removed = 0;
+        try {
+            for (Path zip : listArchives()) {
+                Matcher m = ARCHIVE_NAME_PATTERN.matcher(zip.getFileName().toString());
+                if (!m.matches() || !LocalDate.parse(m.group(1)).isBefore(cutoff)) continue;
+
+                String name = zip.getFileName().toString();
+                byFileName.values().removeIf(en -> en.archive().equals(name));
+                byTraceId.values().removeIf(en -> en.archive().equals(name));
+
+                Files.deleteIfExists(idxPathOf(zip));
+                Files.deleteIfExists(zip);
+                removed++;
+                log.info("Expired receipt archive removed. archive={}", name);
+            }
+        } catch (Exception e) {
+            log.error("Receipt archive prune failed. msg={}", e.getMessage(), e);
+        }
+        return removed;
+    }
+
+    public Entry findByTraceId(String traceId) {
+        return traceId == null ? null : byTraceId.get(traceId);
+    }
+
+    public Entry findByFileName(String fileName) {
+        return fileName == null ? null : byFileName.get(fileName);
+    }
+
+    // zip 에서 영수증 + meta 읽기
+    public Archived read(Entry entry) {
+        try (ZipFile zip = new ZipFile(archiveDir().resolve(entry.archive()).toFile(), StandardCharsets.UTF_8)) {
+            ZipEntry metaEntry = zip.getEntry(entry.fileName() + ".meta.json");
+            ZipEntry receiptEntry = zip.getEntry(entry.fileName());
+
+            ReceiptMetaDTO meta = null;
+            if (metaEntry != null) {
+                meta = om.readValue(zip.getInputStream(metaEntry), ReceiptMetaDTO.class);
+            }
+            String receipt = null;
+            if (receiptEntry != null) {
+                receipt = new String(zip.getInputStream(receiptEntry).readAllBytes(), StandardCharsets.UTF_8);
+            }
+            return new Archived(entry, meta, receipt);
+        } catch (Exception e) {
+            throw new RuntimeException("Archive read failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 하루치 영수증을 새 zip 으로 작성 (.tmp 에 쓴 뒤 rename)
+     * zip -> idx 순서로 확정한 뒤에 sent 에서 제거하므로, 중간에 중단되면 다음 실행에서 다시 보관됨
+     */
+    private int writeArchive(LocalDate day, List<String> fileNames) throws Exception {
+        Path zipPath = newArchivePath(day);
+        Path zipTmp = Paths.get(zipPath + ".tmp");
+        Path idxPath = idxPathOf(zipPath);
+        Path idxTmp = Paths.get(idxPath + ".tmp");
+        String archiveName = zipPath.getFileName().toString();
+
+        List<Entry> entries = new ArrayList<>(fileNames.size());
+        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(zipTmp)), StandardCharsets.UTF_8);
+             BufferedWriter idx = Files.newBufferedWriter(idxTmp, StandardCharsets.UTF_8)) {
+
+            for (String fileName : fileNames) {
+                ReceiptMetaDTO meta = outbox.readMeta(fileName);
+                if (meta == null) continue;
+
+                Path receipt = outbox.sentDir().resolve(fileName);
+                if (Files.exists(receipt)) {
+                    zos.putNextEntry(new ZipEntry(fileName));
+                    Files.copy(receipt, zos);
+                    zos.closeEntry();
+                }
+                zos.putNextEntry(new ZipEntry(fileName + ".meta.json"));
+                zos.write(om.writeValueAsBytes(meta));
+                zos.closeEntry();
+
+                idx.write(fileName + "\t" + (meta.getTraceId() == null ? "" : meta.getTraceId()));
+                idx.newLine();
+                entries.add(new Entry(archiveName, fileName, meta.getTraceId()));
+            }
+        } catch (Exception e) {
+            Files.deleteIfExists(zipTmp);
+            Files.deleteIfExists(idxTmp);
+            throw e;
+        }
+
+        if (entries.isEmpty()) {
+            Files.deleteIfExists(zipTmp);
+            Files.deleteIfExists(idxTmp);
+            return 0;
+        }
+
+        Files.move(zipTmp, zipPath, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(idxTmp, idxPath, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Entry en : entries) {
+            register(en);
+            outbox.forgetSent(en.fileName());
+        }
+        log.info("Sent receipts archived. archive={}, count={}", archiveName, entries.size());
+        return entries.size();
+    }
+
+    // 같은 날짜의 zip 이 이미 있으면 -2, -3 ... 을 붙임 (늦게 sent 로 옮겨진 영수증)
+    private Path newArchivePath(LocalDate day) {
+        Path p = archiveDir().resolve("sent-" + day + ".zip");
+        for (int n = 2; Files.exists(p); n++) {
+            p = archiveDir().resolve("sent-" + day + "-" + n + ".zip");
+        }
+        return p;
+    }
+
+    private List<Path> listArchives() throws Exception {
+        List<Path> res = new ArrayList<>();
+        try (Stream<Path> files = Files.list(archiveDir())) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(p);
+                } else if (ARCHIVE_NAME_PATTERN.matcher(name).matches()) {
+                    res.add(p);
+                }
+            }
+        }
+        Collections.sort(res);
+        return res;
+    }
+
+    private Path idxPathOf(Path zip) {
+        return Paths.get(zip + ".idx");
+    }
+
+    private void register(Entry e) {
+        byFileName.put(e.fileName(), e);
+        if (e.traceId() != null && !e.traceId().isEmpty()) byTraceId.put(e.traceId(), e);
+    }
+
+    private LocalDate dayOf(String fileName) {
+        Matcher m = RECEIPT_TIME_PATTERN.matcher(fileName);
+        if (m.find()) {
+            try {
+                return LocalDateTime.parse(m.group(1), RECEIPT_TIME).toLocalDate();
+            } catch (Exception ignored) {
+                // 파일 수정 시각 사용
+            }
+        }
+        try {
+            Instant mtime = Files.getLastModifiedTime(outbox.sentDir().resolve(fileName)).toInstant();
+            return LocalDate.ofInstant(mtime, ZoneId.systemDefault());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
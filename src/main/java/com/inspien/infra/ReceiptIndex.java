@@ -0,0 +1,162 @@
+package com.inspien.infra;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * ReceiptOutbox 메모리 색인 (폴더를 매번 읽지 않기 위함)
+ *
+ * - fileName -> 위치(pending/failed/sent), traceId -> fileName
+ * - pending 중 재시도 대상(실패 이력 있음)은 nextAttemptAtEpochMs 순서로 정렬해서 보관
+ *
+ * 시작 시 폴더 내용으로 다시 만들고, 이후에는 ReceiptOutbox 의 쓰기/이동/이름 변경 시 함께 갱신
+ */
+final class ReceiptIndex {
+
+    record Entry(String traceId, String fileName, String location, long nextAttemptAtEpochMs, boolean retryable) {}
+
+    private record Due(long nextAttemptAtEpochMs, String fileName) implements Comparable<Due> {
+        @Override
+        public int compareTo(Due o) {
+            int c = Long.compare(nextAttemptAtEpochMs, o.nextAttemptAtEpochMs);
+            return c != 0 ? c : fileName.compareTo(o.fileName);
+        }
+    }
+
+    private final Map<String, Entry> byFileName = new HashMap<>();
+    private final Map<String, String> fileNameByTraceId = new HashMap<>();
+    private final TreeSet<Due> dueQueue = new TreeSet<>();
+    private int pendingCount;
+
+    synchronized void clear() {
+        byFileName.clear();
+        fileNameByTraceId.clear();
+        dueQueue.clear();
+        pendingCount = 0;
+    }
+
+    synchronized void put(String location, ReceiptMetaDTO meta) {
+        String fileName = meta.getFileName();
+        boolean retryable = meta.getAttempts() > 0 || (meta.getLastError() != null && !meta.getLastError().isBlank());
+        Entry entry = new Entry(meta.getTraceId(), fileName, location, meta.getNextAttemptAtEpochMs(), retryable);
+
+        Entry prev = byFileName.put(fileName, entry);
+        unlink(prev);
+        link(entry);
+    }
+
+    synchronized void move(String fileName, String toLocation) {
+        Entry prev = byFileName.get(fileName);
+        if (prev == null || prev.location().equals(toLocation)) return;
+
+        Entry entry = new Entry(prev.traceId(), fileName, toLocation, prev.nextAttemptAtEpochMs(), prev.retryable());
+        byFileName.put(fileName, entry);
+        unlink(prev);
+        link(entry);
+    }
+
+    synchronized void rename(String oldFileName, String newFileName) {
+        Entry prev = byFileName.remove(oldFileName);
+        if (prev == null) return;
+        unlink(prev);
+
+        Entry entry = new Entry(prev.traceId(), newFileName, prev.location(), prev.nextAttemptAtEpochMs(), prev.retryable());
+        byFileName.put(newFileName, entry);
+        link(entry);
+    }
+
+    synchronized void remove(String fileName) {
+        unlink(byFileName.remove(fileName));
+    }
+
+    synchronized Entry get(String fileName) {
+        return byFileName.get(fileName);
+    }
+
+    synchronized Entry findByTraceId(String traceId) {
+        String fileName = fileNameByTraceId.get(traceId);
+        return fileName == null ? null : byFileName.get(fileName);
+    }
+
+    // nextAttemptAtEpochMs 가 now 이하인 재시도 대상 (오래된 순)
+    synchronized List<String> dueFileNames(long now, int limit) {
+        List<String> res = new ArrayList<>();
+        for (Due d : dueQueue) {
+            if (d.nextAttemptAtEpochMs() > now || res.size() >= limit) break;
+            res.add(d.fileName());
+        }
+        return res;
+    }
+
+    /**
+     * 재시도 대상이 생길 때까지 대기 (가장 이른 재시도 시각까지 잠들고, 색인이 바뀌면 다시 확인)
+     * skip 에 있는 영수증(전송 중)은 제외, maxWaitMs 가 지나도 없으면 빈 목록
+     */
+    synchronized List<String> awaitDue(int limit, long maxWaitMs, Set<String> skip) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxWaitMs;
+        while (true) {
+            long now = System.currentTimeMillis();
+            long wakeAt = deadline;
+
+            List<String> res = new ArrayList<>();
+            for (Due d : dueQueue) {
+                if (skip.contains(d.fileName())) continue;
+                if (d.nextAttemptAtEpochMs() > now) {
+                    wakeAt = Math.min(wakeAt, d.nextAttemptAtEpochMs());
+                    break;
+                }
+                res.add(d.fileName());
+                if (res.size() >= limit) break;
+            }
+
+            if (!res.isEmpty() || now >= deadline) return res;
+            wait(Math.max(1, wakeAt - now));
+        }
+    }
+
+    // 색인이 바뀌거나 signal 될 때까지 최대 maxWaitMs 대기
+    synchronized void await(long maxWaitMs) throws InterruptedException {
+        wait(Math.max(1, maxWaitMs));
+    }
+
+    // awaitDue 로 대기 중인 스레드를 깨움
+    synchronized void signal() {
+        notifyAll();
+    }
+
+    synchronized List<String> fileNames(String location) {
+        List<String> res = new ArrayList<>();
+        for (Entry e : byFileName.values()) {
+            if (e.location().equals(location)) res.add(e.fileName());
+        }
+        return res;
+    }
+
+    synchronized int pendingCount() {
+        return pendingCount;
+    }
+
+    private void link(Entry e) {
+        if (e.traceId() != null) fileNameByTraceId.put(e.traceId(), e.fileName());
+        if (ReceiptOutbox.PENDING.equals(e.location())) {
+            pendingCount++;
+            if (e.retryable()) {
+                dueQueue.add(new Due(e.nextAttemptAtEpochMs(), e.fileName()));
+                notifyAll();
+            }
+        }
+    }
+
+    private void unlink(Entry e) {
+        if (e == null) return;
+        if (e.traceId() != null) fileNameByTraceId.remove(e.traceId(), e.fileName());
+        if (ReceiptOutbox.PENDING.equals(e.location())) {
+            pendingCount--;
+            if (e.retryable()) dueQueue.remove(new Due(e.nextAttemptAtEpochMs(), e.fileName()));
+        }
+    }
+}
@@ -16,4 +16,7 @@ public class ReceiptMetaDTO {
     private int attempts;             // 재시도 횟수(즉시 시도 포함)
     private long nextAttemptAtEpochMs; // 다음 재시도 시각
     private String lastError;         // 마지막 실패 원인
+
+    private Long sizeBytes;           // 전송 확인된 영수증 크기
+    private String checksumSha256;    // 전송 확인된 영수증 SHA-256 (hex), 원격 파일 내용까지 비교한 경우에만 (크기만 비교했으면 null)
 }
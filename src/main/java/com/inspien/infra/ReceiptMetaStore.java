@@ -0,0 +1,33 @@
+package com.inspien.infra;
+
+import java.util.function.Consumer;
+
+/**
+ * 영수증 meta 저장소 (ReceiptOutbox 가 사용)
+ *
+ * location 은 ReceiptOutbox.PENDING / SENT / FAILED
+ * inspien.receipt.outbox-backend 로 선택
+ * - file (기본)  : 폴더(pending/sent/failed)마다 <fileName>.meta.json 파일
+ * - journal      : 상태 변경을 append-only 로그에 기록 (JournalMetaStore)
+ * - database     : RECEIPT_OUTBOX_TB, 여러 서버가 함께 사용 (DatabaseMetaStore, SharedReceiptMetaStore)
+ */
+public interface ReceiptMetaStore {
+
+    // 새로 쓰거나 덮어쓰기
+    void write(String location, ReceiptMetaDTO meta);
+
+    // 없으면 null
+    ReceiptMetaDTO read(String location, String fileName);
+
+    boolean exists(String location, String fileName);
+
+    // 옮겼거나 원래 없었으면 true, 실패하면 false
+    boolean move(String fileName, String fromLocation, String toLocation);
+
+    void rename(String location, String oldFileName, String newFileName) throws Exception;
+
+    void delete(String location, String fileName);
+
+    // 시작 시 색인 재구성용
+    void forEach(String location, Consumer<ReceiptMetaDTO> action);
+}
@@ -1,12 +1,17 @@
 package com.inspien.infra;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inspien.dto.OrderBatch;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.nio.file.*;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Component
@@ -15,18 +20,94 @@ public class ReceiptOutbox {
     /** 
      * DB insert가 성공한 이후에 파일 생성 및 전송(SFTP)가 실패할 수 있으므로, 영수증 전송 작업을
      * local outbox 폴더(pending/sent/failed)로 영속화하여 전송 재시도 및 admin 조치를 가능하게 함
+     *
+     * 영수증 파일은 폴더에, meta 는 ReceiptMetaStore(inspien.receipt.outbox-backend)에 저장
+     * 여러 서버가 함께 쓰는 저장소(database)면 위치 / 재시도 대상 / 전송 선점을 메모리 색인 대신 저장소에서 확인
      */
 
-    private final ObjectMapper om = new ObjectMapper();
+    public static final String PENDING = "pending";
+    public static final String SENT = "sent";
+    public static final String FAILED = "failed";
+
+    private final ReceiptMetaStore metaStore;
+
+    // database backend 일 때만 (아니면 null)
+    private final SharedReceiptMetaStore sharedStore;
+
+    // 폴더를 매번 읽지 않도록 위치 / 재시도 시각을 메모리에 색인 (시작 시 재구성)
+    private final ReceiptIndex index = new ReceiptIndex();
+
+    // 지금 전송 중인 영수증 (같은 파일을 두 곳에서 동시에 올리지 않도록)
+    private final Set<String> claimed = ConcurrentHashMap.newKeySet();
 
     @Value("${inspien.receipt.outbox-dir:./out/receipts}")
     private String outboxDir;
 
+    // database backend 에서 재전송 대상이 없을 때 다시 확인하는 간격 (다른 서버가 남긴 영수증은 알림이 오지 않음)
+    @Value("${inspien.receipt.db.poll-interval-ms:5000}")
+    private long sharedPollIntervalMs;
+
+    // 시작 시 pending 에 있던 영수증 (이전 프로세스에서 남은 것)
+    private List<String> pendingAtStartup = List.of();
+
+    // 전송 실패 후 재시도 간격: initialDelayMs * 2^(attempts-1), 최대 max-delay-ms
+    @Value("${inspien.sftp.retry.initialDelayMs:90000}")
+    private long initialRetryDelayMs;
+
+    @Value("${inspien.sftp.retry.max-delay-ms:600000}")
+    private long maxRetryDelayMs;
+
+    public ReceiptOutbox(ReceiptMetaStore metaStore) {
+        this.metaStore = metaStore;
+        this.sharedStore = metaStore instanceof SharedReceiptMetaStore s ? s : null;
+    }
+
     // 각 outbox 폴더의 경로 선언
     public Path pendingDir() { return Paths.get(outboxDir, "pending"); }
     public Path sentDir()    { return Paths.get(outboxDir, "sent"); }
     public Path failedDir()  { return Paths.get(outboxDir, "failed"); }
 
+    public Path dirOf(String location) {
+        return switch (location) {
+            case PENDING -> pendingDir();
+            case SENT -> sentDir();
+            case FAILED -> failedDir();
+            default -> throw new IllegalArgumentException("Unknown outbox location: " + location);
+        };
+    }
+
+    /**
+     * 시작 시 meta 저장소 내용으로 색인 재구성
+     * 이후 변경은 이 클래스를 통해서만 일어나므로 저장소를 다시 읽지 않음
+     * (운영 중에 파일을 직접 옮긴 경우에는 재시작해야 반영됨)
+     */
+    @PostConstruct
+    public void rebuildIndex() {
+        ensureDirs();
+        index.clear();
+
+        // 공유 저장소는 다른 서버도 바꾸므로 색인하지 않음 (중단된 전송은 저장소의 재전송 선점 단계에서 처리)
+        if (sharedStore != null) {
+            log.info("Receipt outbox uses shared store. backend={}", metaStore.getClass().getSimpleName());
+            return;
+        }
+
+        int[] count = new int[1];
+        for (String location : List.of(SENT, FAILED, PENDING)) {
+            metaStore.forEach(location, meta -> {
+                index.put(location, meta);
+                count[0]++;
+            });
+        }
+        pendingAtStartup = index.fileNames(PENDING);
+        log.info("Receipt outbox index rebuilt. backend={}, count={}, pending={}",
+                metaStore.getClass().getSimpleName(), count[0], index.pendingCount());
+    }
+
+    public List<String> pendingAtStartup() {
+        return pendingAtStartup;
+    }
+
     // 폴더 없으면 만들기
     public void ensureDirs() {
         try {
@@ -38,10 +119,6 @@ public class ReceiptOutbox {
         }
     }
 
-    public Path metaPathInPending(String fileName) {
-        return pendingDir().resolve(fileName + ".meta.json");
-    }
-
     public Path receiptPathInPending(String fileName) {
         return pendingDir().resolve(fileName);
     }
@@ -50,74 +127,299 @@ public class ReceiptOutbox {
     // meta 파일을 반드시 영수증 파일보다 먼저 만들도록 할 것(그래야 영수증 생성에서 에러 나도 추적 후 재생성 가능)
     public void writeMetaToPending(ReceiptMetaDTO meta) {
         ensureDirs();
-        Path metaPath = metaPathInPending(meta.getFileName());
-        atomicWriteString(metaPath, toJson(meta));
+        metaStore.write(PENDING, meta);
+        index.put(PENDING, meta);
     }
 
-    // meta 파일 읽기
-    public ReceiptMetaDTO readMeta(Path metaPath) {
+    // meta 읽기 (현재 위치 기준), 없으면 null
+    public ReceiptMetaDTO readMeta(String fileName) {
+        return metaStore.read(locationOfFile(fileName), fileName);
+    }
+
+    // 수정할 사항을 전달받았을 경우 meta 수정 (현재 위치 기준)
+    public void updateMeta(ReceiptMetaDTO meta) {
         try {
-            String json = Files.readString(metaPath);
-            return om.readValue(json, ReceiptMetaDTO.class);
+            String location = locationOfFile(meta.getFileName());
+            metaStore.write(location, meta);
+            index.put(location, meta);
         } catch (Exception e) {
-            throw new RuntimeException("Read meta failed: " + e.getMessage(), e);
+            log.error("Meta update failed. fileName={}, msg={}", meta.getFileName(), e.getMessage(), e);
         }
     }
 
-    // 수정할 사항을 전달받았을 경우 meta 파일 수정
-    public void updateMeta(Path metaPath, ReceiptMetaDTO meta) {
-        try {
-            atomicWriteString(metaPath, toJson(meta));
+    public void writeReceiptToPending(String fileName, OrderBatch batch) {
+        ensureDirs();
+        Path target = receiptPathInPending(fileName);
+        Path tmp = tmpPathOf(target);
+        try (ReceiptWriter w = ReceiptWriter.open(tmp)) {
+            w.writeAll(batch);
         } catch (Exception e) {
-            log.error("Meta update failed. metaPath={}, msg={}", metaPath, e.getMessage(), e);
+            throw new RuntimeException("Write failed: " + e.getMessage(), e);
         }
+        commitTmp(tmp, target);
     }
 
-    public void writeReceiptToPending(String fileName, String content) {
+    /**
+     * 대용량(스트리밍) 주문용: 영수증 내용을 .tmp 파일에 조금씩 이어서 쓰고,
+     * 다 쓴 뒤 commitReceiptInPending 으로 한 번에 확정 (atomic write 패턴과 동일한 결과)
+     */
+    public ReceiptWriter openReceiptTmpInPending(String fileName) {
         ensureDirs();
-        Path receiptPath = receiptPathInPending(fileName);
-        atomicWriteString(receiptPath, content);
+        return openReceiptTmp(receiptPathInPending(fileName));
+    }
+
+    public void commitReceiptInPending(String fileName) {
+        commitReceipt(receiptPathInPending(fileName));
+    }
+
+    // 지정한 위치(pending/failed)의 영수증을 .tmp 에 나눠 쓰기 (DB 에서 재생성할 때)
+    public ReceiptWriter openReceiptTmp(Path target) {
+        try {
+            return ReceiptWriter.open(tmpPathOf(target));
+        } catch (Exception e) {
+            throw new RuntimeException("Receipt tmp open failed: " + e.getMessage(), e);
+        }
+    }
+
+    public void commitReceipt(Path target) {
+        commitTmp(tmpPathOf(target), target);
+    }
+
+    public void discardReceiptTmp(Path target) {
+        try {
+            Files.deleteIfExists(tmpPathOf(target));
+        } catch (Exception e) {
+            log.error("Discard failed. path={}, msg={}", target, e.getMessage(), e);
+        }
+    }
+
+    // 한 건도 저장되지 않은 요청의 흔적(meta, 작성 중이던 영수증) 제거
+    public void discardPending(String fileName) {
+        metaStore.delete(PENDING, fileName);
+        index.remove(fileName);
+
+        Path receipt = receiptPathInPending(fileName);
+        Path[] targets = { receipt, tmpPathOf(receipt) };
+        for (Path p : targets) {
+            try {
+                Files.deleteIfExists(p);
+            } catch (Exception e) {
+                log.error("Discard failed. path={}, msg={}", p, e.getMessage(), e);
+            }
+        }
+    }
+
+    // 성공 처리: 전송 결과(크기, checksum)를 meta 에 기록한 뒤 sent 로 이동 (pending / failed 어디에 있든)
+    public void markSent(ReceiptMetaDTO meta, SftpUploader.UploadResult result) {
+        meta.setSizeBytes(result.size());
+        meta.setChecksumSha256(result.sha256());
+
+        updateMeta(meta);
+        move(locationOfFile(meta.getFileName()), meta.getFileName(), SENT);
     }
 
     // 성공 처리: pending 에서 sent로 이동
     public void markSent(String fileName) {
-        ensureDirs();
-        moveIfExists(receiptPathInPending(fileName), sentDir().resolve(fileName));
-        moveIfExists(metaPathInPending(fileName), sentDir().resolve(fileName + ".meta.json"));
+        move(PENDING, fileName, SENT);
     }
 
     // 최종 실패 처리: pending 에서 failed로 이동
     public void markFailed(String fileName) {
-        ensureDirs();
-        moveIfExists(receiptPathInPending(fileName), failedDir().resolve(fileName));
-        moveIfExists(metaPathInPending(fileName), failedDir().resolve(fileName + ".meta.json"));
+        move(PENDING, fileName, FAILED);
     }
 
-    // 백오프(재시도 간격): 2^attempts 초, 최대 10분
-    // public long calcNextAttemptAt(int attempts) {
-    //     long delayMs = Math.min(10 * 60 * 1000L, (1L << Math.min(attempts, 10)) * 1000L);
-    //     return Instant.now().toEpochMilli() + delayMs;
-    // }
+    // 보관(archive) 이 끝난 sent 영수증 제거
+    public void forgetSent(String fileName) {
+        metaStore.delete(SENT, fileName);
+        index.remove(fileName);
+        try {
+            Files.deleteIfExists(sentDir().resolve(fileName));
+        } catch (Exception e) {
+            log.error("Sent receipt delete failed. fileName={}, msg={}", fileName, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 같은 폴더 안에서 영수증 + meta 이름 변경 (관리자 재전송 시 참여자 이름 변경)
+     * 바꿀 이름이 이미 있으면 예외
+     */
+    public void rename(String location, String oldFileName, String newFileName) throws Exception {
+        Path dir = dirOf(location);
+        Path oldReceipt = dir.resolve(oldFileName);
+        Path newReceipt = dir.resolve(newFileName);
+
+        // 이미 존재하면 덮어쓰지 않도록 처리
+        if (Files.exists(newReceipt) || metaStore.exists(location, newFileName)) {
+            throw new IllegalStateException("Target filename already exists: " + newFileName);
+        }
 
-    private String toJson(ReceiptMetaDTO meta) {
+        // 선점 중인 영수증이면 선점도 새 이름으로 옮김 (공유 저장소 임대는 행과 함께 옮겨짐)
+        // 옮기는 동안 새 이름을 다른 스레드가 가져가지 않도록 먼저 선점
+        boolean moveClaim = claimed.contains(oldFileName);
+        if (moveClaim && !claimed.add(newFileName)) {
+            throw new IllegalStateException("Target filename is being delivered: " + newFileName);
+        }
         try {
-            return om.writeValueAsString(meta);
+            if (Files.exists(oldReceipt)) {
+                Files.move(oldReceipt, newReceipt);
+            }
+            metaStore.rename(location, oldFileName, newFileName);
+            index.rename(oldFileName, newFileName);
         } catch (Exception e) {
-            throw new RuntimeException("Meta json serialization failed: " + e.getMessage(), e);
+            if (moveClaim) claimed.remove(newFileName);
+            throw e;
+        }
+        if (moveClaim) claimed.remove(oldFileName);
+    }
+
+    /**
+     * traceId 로 영수증 위치 조회 (색인 기준)
+     * 찾지 못하면 null
+     */
+    public Located findByTraceId(String traceId) {
+        if (sharedStore != null) {
+            SharedReceiptMetaStore.Stored s = sharedStore.findByTraceId(traceId);
+            return s == null ? null : new Located(s.location(), dirOf(s.location()), s.meta());
+        }
+
+        // 조회 직후 다른 스레드가 옮겼으면 한 번 더
+        for (int i = 0; i < 2; i++) {
+            ReceiptIndex.Entry e = index.findByTraceId(traceId);
+            if (e == null) return null;
+
+            ReceiptMetaDTO meta = metaStore.read(e.location(), e.fileName());
+            if (meta != null) return new Located(e.location(), dirOf(e.location()), meta);
+        }
+        return null;
+    }
+
+    /**
+     * 재시도 시각이 지난 pending 영수증 (재시도 시각 순, 최대 limit 건)
+     * 실패 이력이 없는 영수증(전송 중)은 포함하지 않음
+     */
+    public List<String> dueFileNames(long now, int limit) {
+        return index.dueFileNames(now, limit);
+    }
+
+    /**
+     * 재시도 시각이 된 pending 영수증이 생길 때까지 대기 (전송 중인 영수증은 제외)
+     * 새 meta 가 기록되거나 재시도 시각이 바뀌면 바로 깨어남, maxWaitMs 동안 없으면 빈 목록
+     * 공유 저장소면 저장소에서 선점한 영수증 (poll-interval-ms 마다 다시 확인)
+     */
+    public List<String> awaitDue(int limit, long maxWaitMs) throws InterruptedException {
+        if (sharedStore == null) {
+            return index.awaitDue(limit, maxWaitMs, claimed);
         }
+
+        long deadline = System.currentTimeMillis() + maxWaitMs;
+        while (true) {
+            List<String> res = new ArrayList<>();
+            try {
+                for (String fileName : sharedStore.claimDue(limit)) {
+                    if (!claimed.contains(fileName)) res.add(fileName);
+                }
+            } catch (Exception e) {
+                log.error("Receipt claim failed. msg={}", e.getMessage());
+            }
+
+            long now = System.currentTimeMillis();
+            if (!res.isEmpty() || now >= deadline) return res;
+            index.await(Math.min(sharedPollIntervalMs, deadline - now));
+        }
+    }
+
+    public boolean isPending(String fileName) {
+        if (sharedStore != null) return PENDING.equals(sharedStore.locationOf(fileName));
+        return PENDING.equals(locationOfFile(fileName)) && metaStore.exists(PENDING, fileName);
+    }
+
+    /**
+     * 위치(pending/failed)의 영수증 meta 목록 (관리자 일괄 재전송 대상 선정용)
+     * 공유 저장소면 다른 서버의 영수증까지 포함
+     */
+    public List<Located> list(String location) {
+        List<Located> res = new ArrayList<>();
+        if (sharedStore != null) {
+            sharedStore.forEach(location, meta -> res.add(new Located(location, dirOf(location), meta)));
+            return res;
+        }
+        for (String fileName : index.fileNames(location)) {
+            ReceiptMetaDTO meta = metaStore.read(location, fileName);
+            if (meta != null) res.add(new Located(location, dirOf(location), meta));
+        }
+        return res;
     }
 
+    // 공유 저장소면 이 서버 폴더에 있는 영수증 파일 기준 (다른 서버의 영수증은 그 서버가 처리)
+    public List<String> fileNames(String location) {
+        if (sharedStore != null) return localReceiptFiles(location);
+        return index.fileNames(location);
+    }
 
-    // 깨진(작성하다가 중간에 중단된) 파일이 만들어지는 걸 방지하기 위해 atomic write 패턴 사용 
-    private void atomicWriteString(Path target, String content) {
+    /**
+     * 전송 작업 선점
+     * 이미 다른 스레드(공유 저장소면 다른 서버 포함)가 전송 중이면 false, 작업이 끝나면 releaseClaim 호출
+     */
+    public boolean tryClaim(String fileName) {
+        if (!claimed.add(fileName)) return false;
+        if (sharedStore != null && !sharedStore.tryLease(fileName)) {
+            claimed.remove(fileName);
+            return false;
+        }
+        return true;
+    }
+
+    public void releaseClaim(String fileName) {
+        if (sharedStore != null) sharedStore.releaseLease(fileName);
+        claimed.remove(fileName);
+        // 선점 때문에 건너뛰었던 재시도 대상을 다시 확인하도록
+        index.signal();
+    }
+
+    /**
+     * awaitDue 로 받았지만 tryClaim 하지 않고 넘긴 영수증의 저장소 임대 반납 (공유 저장소에서만 의미 있음)
+     * 이 서버의 다른 스레드가 전송 중이면 그 스레드의 임대이므로 그대로 둠
+     * 확인과 반납 사이에 다른 스레드가 선점하지 못하도록 잠시 로컬 선점을 잡고 반납
+     */
+    public void releaseUnclaimed(String fileName) {
+        if (sharedStore == null || !claimed.add(fileName)) return;
+        try {
+            sharedStore.releaseLease(fileName);
+        } finally {
+            claimed.remove(fileName);
+        }
+    }
+
+    // pending 에 남아 있는 전송 건수 (meta 기준)
+    public int pendingCount() {
+        if (sharedStore != null) {
+            try {
+                return sharedStore.countPending();
+            } catch (Exception e) {
+                log.warn("Pending count failed. msg={}", e.getMessage());
+                return 0;
+            }
+        }
+        return index.pendingCount();
+    }
+
+    // 조회 결과: location 은 "pending" / "failed" / "sent"
+    public record Located(String location, Path dir, ReceiptMetaDTO meta) {}
+
+    // 백오프(재시도 간격): initialDelayMs * 2^(attempts-1), 최대 max-delay-ms
+    public long calcNextAttemptAt(int attempts) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 20);
+        long delayMs = Math.min(maxRetryDelayMs, initialRetryDelayMs << shift);
+        return Instant.now().toEpochMilli() + delayMs;
+    }
+
+    private void commitTmp(Path tmp, Path target) {
         try {
-            Path tmp = Paths.get(target.toString() + ".tmp");
-            Files.writeString(tmp, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
             Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (AtomicMoveNotSupportedException e) {
-            // atomic_move 가 지원되지 않는 경우엔 일반적인 방법으로 생성
+            // atomic_move 가 지원되지 않는 경우엔 일반 move
             try {
-                Files.writeString(target, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
             } catch (Exception ex) {
                 throw new RuntimeException("Write failed: " + ex.getMessage(), ex);
             }
@@ -126,14 +428,56 @@ public class ReceiptOutbox {
         }
     }
 
-    private void moveIfExists(Path from, Path to) {
+    private Path tmpPathOf(Path target) {
+        return Paths.get(target.toString() + ".tmp");
+    }
+
+    private void move(String fromLocation, String fileName, String toLocation) {
+        ensureDirs();
+        Path from = dirOf(fromLocation);
+        Path to = dirOf(toLocation);
+
+        moveIfExists(from.resolve(fileName), to.resolve(fileName));
+        // meta 가 옮겨지지 않았으면 색인도 그대로 둠 (다음 재시도에서 다시 처리)
+        if (metaStore.move(fileName, fromLocation, toLocation)) {
+            index.move(fileName, toLocation);
+        }
+    }
+
+    // 색인(공유 저장소면 저장소)에 없으면 pending 으로 간주
+    private String locationOfFile(String fileName) {
+        if (sharedStore != null) {
+            String location = sharedStore.locationOf(fileName);
+            return location == null ? PENDING : location;
+        }
+        ReceiptIndex.Entry e = index.get(fileName);
+        return e == null ? PENDING : e.location();
+    }
+
+    private List<String> localReceiptFiles(String location) {
+        List<String> res = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dirOf(location))) {
+            for (Path p : stream) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".tmp") || name.endsWith(".meta.json") || !Files.isRegularFile(p)) continue;
+                res.add(name);
+            }
+        } catch (Exception e) {
+            log.error("Receipt scan failed. location={}, msg={}", location, e.getMessage(), e);
+        }
+        return res;
+    }
+
+    private boolean moveIfExists(Path from, Path to) {
         try {
             if (Files.exists(from)) {
                 Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
             }
+            return true;
         } catch (Exception e) {
-            // 업로드는 성공했는데 마킹 이동이 실패하면 중복 업로드 위험이 생길 수 있음
+            // 업로드는 성공했는데 마킹 이동이 실패한 경우, 재전송 시 원격 파일을 먼저 확인해서 다시 올리지 않음 (SftpUploader.findDelivered)
             log.error("Move failed. from={}, to={}, msg={}", from, to, e.getMessage(), e);
+            return false;
         }
     }
 }
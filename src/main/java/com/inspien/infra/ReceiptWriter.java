@@ -0,0 +1,239 @@
+package com.inspien.infra;
+
+import com.inspien.dto.OrderBatch;
+import com.inspien.dto.OrderDTO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 영수증 파일 작성기 (주문 요청 / 재시도 스케줄러 / 관리자 재전송 공통)
+ *
+ * 요구사항 포맷
+ * ORDER_ID^USER_ID^ITEM_ID^APPLICANT_KEY^NAME^ADDRESS^ITEM_NAME^PRICE\n
+ *
+ * 영수증 전체를 String 으로 만들지 않고 행 단위로 UTF-8 인코딩해서 direct ByteBuffer 에 담고,
+ * 버퍼가 차면 FileChannel 로 바로 내보냄 (버퍼는 스레드별로 재사용)
+ * 잘못된 문자(짝이 없는 surrogate 등)는 기존 Files.writeString 과 같이 예외 처리
+ *
+ * OrderBatch 는 행 길이를 미리 알고 있으므로 버퍼 공간을 행 단위로 한 번만 확인하고,
+ * PRICE 는 문자열로 바꾸지 않고 숫자를 바로 기록
+ */
+public final class ReceiptWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<>();
+    private static final ThreadLocal<CharsetEncoder> ENCODERS = ThreadLocal.withInitial(() ->
+            StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT));
+
+    private final FileChannel channel;
+    private final ByteBuffer buf;
+    private final CharsetEncoder encoder = ENCODERS.get();
+    private long bytesWritten;
+
+    private ReceiptWriter(FileChannel channel, ByteBuffer buf) {
+        this.channel = channel;
+        this.buf = buf;
+    }
+
+    // 파일을 새로 만들거나 기존 내용을 비우고 열기
+    public static ReceiptWriter open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        // 같은 스레드에서 이미 사용 중이면(중첩 사용) 새로 할당
+        ByteBuffer buf = BUFFERS.get();
+        if (buf != null) {
+            BUFFERS.remove();
+        } else {
+            buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        buf.clear();
+        return new ReceiptWriter(channel, buf);
+    }
+
+    public void writeAll(Iterable<OrderDTO> rows) throws IOException {
+        for (OrderDTO r : rows) write(r);
+    }
+
+    public void writeAll(OrderBatch batch) throws IOException {
+        for (int i = 0; i < batch.size(); i++) write(batch, i);
+    }
+
+    public void write(OrderBatch batch, int i) throws IOException {
+        int rowBytes = batch.receiptBytes(i);
+        if (rowBytes > buf.capacity()) {
+            // 버퍼보다 긴 행은 일반 경로로 기록
+            writeChecked(batch, i);
+            return;
+        }
+        if (rowBytes > buf.remaining()) drain();
+
+        put(batch.orderId(i));
+        buf.put((byte) '^');
+        put(batch.userId(i));
+        buf.put((byte) '^');
+        put(batch.itemId(i));
+        buf.put((byte) '^');
+        put(batch.getApplicantKey());
+        buf.put((byte) '^');
+        put(batch.name(i));
+        buf.put((byte) '^');
+        put(batch.address(i));
+        buf.put((byte) '^');
+        put(batch.itemName(i));
+        buf.put((byte) '^');
+        String priceText = batch.priceOverride(i);
+        if (priceText != null) {
+            put(priceText);
+        } else {
+            putDigits(batch.price(i));
+        }
+        buf.put((byte) '\n');
+    }
+
+    public void write(OrderDTO r) throws IOException {
+        field(r.getOrderId());
+        sep('^');
+        field(r.getUserId());
+        sep('^');
+        field(r.getItemId());
+        sep('^');
+        field(r.getApplicantKey());
+        sep('^');
+        field(r.getName());
+        sep('^');
+        field(r.getAddress());
+        sep('^');
+        field(r.getItemName());
+        sep('^');
+        field(r.getPrice());
+        sep('\n');
+    }
+
+    public long bytesWritten() {
+        return bytesWritten + buf.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            // drain 이 실패해도 파일 핸들은 닫음
+            try {
+                channel.close();
+            } finally {
+                BUFFERS.set(buf);
+            }
+        }
+    }
+
+    private void writeChecked(OrderBatch batch, int i) throws IOException {
+        field(batch.orderId(i));
+        sep('^');
+        field(batch.userId(i));
+        sep('^');
+        field(batch.itemId(i));
+        sep('^');
+        field(batch.getApplicantKey());
+        sep('^');
+        field(batch.name(i));
+        sep('^');
+        field(batch.address(i));
+        sep('^');
+        field(batch.itemName(i));
+        sep('^');
+        field(batch.priceText(i));
+        sep('\n');
+    }
+
+    // 버퍼 공간이 이미 확보된 상태에서 사용 (ASCII 가 아니면 encoder 로 처리)
+    private void put(String s) throws IOException {
+        if (s == null) s = "null";
+
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                encode(s, i);
+                return;
+            }
+            buf.put((byte) c);
+        }
+    }
+
+    private void putDigits(long v) {
+        int n = 1;
+        for (long t = v; t >= 10; t /= 10) n++;
+
+        int end = buf.position() + n;
+        for (int p = end - 1; p >= buf.position(); p--) {
+            buf.put(p, (byte) ('0' + (v % 10)));
+            v /= 10;
+        }
+        buf.position(end);
+    }
+
+    private void sep(char c) throws IOException {
+        if (!buf.hasRemaining()) drain();
+        buf.put((byte) c);
+    }
+
+    private void field(String s) throws IOException {
+        // 기존 StringBuilder.append(null) / String.join 과 같은 결과
+        if (s == null) s = "null";
+
+        int len = s.length();
+        int i = 0;
+
+        // ASCII 는 바로 기록
+        for (; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) break;
+            if (!buf.hasRemaining()) drain();
+            buf.put((byte) c);
+        }
+        if (i == len) return;
+
+        encode(s, i);
+    }
+
+    // s 의 from 이후를 encoder 로 처리
+    private void encode(String s, int from) throws IOException {
+        CharBuffer in = CharBuffer.wrap(s, from, s.length());
+        encoder.reset();
+        while (true) {
+            CoderResult cr = encoder.encode(in, buf, true);
+            if (cr.isOverflow()) {
+                drain();
+                continue;
+            }
+            if (cr.isError()) cr.throwException();
+            break;
+        }
+        while (encoder.flush(buf).isOverflow()) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            bytesWritten += channel.write(buf);
+        }
+        buf.clear();
+    }
+}
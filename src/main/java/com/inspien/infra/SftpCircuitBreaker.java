@@ -0,0 +1,142 @@
+package com.inspien.infra;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SFTP 서버 장애 감지용 circuit breaker
+ *
+ * - CLOSED    : 정상, 연속 실패가 failure-threshold 에 도달하면 OPEN
+ * - OPEN      : 주문 요청에서는 SFTP 전송을 시도하지 않고 바로 outbox(pending) 에 맡김 (접속 timeout 만큼 응답이 늦어지지 않도록)
+ * - HALF_OPEN : open-duration-ms 가 지나면 재시도 스케줄러가 한 건만 시험 전송, 성공하면 CLOSED / 실패하면 다시 OPEN
+ *
+ * 성공/실패는 SftpUploader 에서 모든 전송 결과를 기록
+ */
+@Slf4j
+@Component
+public class SftpCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    @Value("${inspien.sftp.breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${inspien.sftp.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${inspien.sftp.breaker.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    // 시험 전송 결과를 기다리는 동안 다른 영수증을 다시 확인하는 간격
+    private static final long HALF_OPEN_RECHECK_MS = 1000;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtMs;
+    private boolean probeInFlight;
+    private Thread probeOwner;
+    private String lastError;
+    private long lastFailureAtMs;
+
+    /**
+     * 주문 요청 스레드(동기/비동기 전송)에서 바로 전송해도 되는지
+     * CLOSED 일 때만 true (시험 전송은 재시도 스케줄러만 담당)
+     */
+    public synchronized boolean allowInline() {
+        return !enabled || state == State.CLOSED;
+    }
+
+    /**
+     * 재시도 스케줄러 / 관리자 재전송에서 전송해도 되는지
+     * OPEN 상태가 open-duration-ms 이상 지났으면 HALF_OPEN 으로 바꾸고 한 건만 허용
+     */
+    public synchronized boolean tryAcquire() {
+        if (!enabled || state == State.CLOSED) return true;
+
+        if (state == State.OPEN && System.currentTimeMillis() - openedAtMs >= openDurationMs) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+            log.info("SFTP circuit half-open. Sending probe upload.");
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            probeOwner = Thread.currentThread();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * tryAcquire 로 받은 시험 전송 권한 반납 (전송 시도 후 finally 에서 호출)
+     * 업로드 결과(recordSuccess / recordFailure)가 기록되지 않고 끝난 경우
+     * (로컬 파일 오류, 원격에 이미 있어서 업로드 생략 등) 다음 시험 전송이 가능하도록 함
+     * 이 스레드가 가진 권한이 아니거나 이미 결과가 기록되었으면 아무것도 하지 않음
+     */
+    public synchronized void releaseProbe() {
+        if (state == State.HALF_OPEN && probeInFlight && probeOwner == Thread.currentThread()) {
+            probeInFlight = false;
+            probeOwner = null;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            log.info("SFTP circuit closed. previousState={}", state);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        probeOwner = null;
+    }
+
+    public synchronized void recordFailure(String error) {
+        consecutiveFailures++;
+        lastError = error;
+        lastFailureAtMs = System.currentTimeMillis();
+
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAtMs = lastFailureAtMs;
+            probeInFlight = false;
+            probeOwner = null;
+            log.warn("SFTP circuit opened. consecutiveFailures={}, msg={}", consecutiveFailures, error);
+        }
+    }
+
+    /**
+     * 재시도 스케줄러가 다음에 전송을 시도할 시각
+     * OPEN 이면 시험 전송이 가능해지는 시각, 시험 전송 중(HALF_OPEN)이면 잠시 뒤, 정상이면 지금
+     */
+    public synchronized long nextAttemptAtEpochMs() {
+        long now = System.currentTimeMillis();
+        if (!enabled || state == State.CLOSED) return now;
+        if (state == State.OPEN) return Math.max(now, openedAtMs + openDurationMs);
+        return now + HALF_OPEN_RECHECK_MS;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    // 모니터링용
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("enabled", enabled);
+        res.put("state", state.name());
+        res.put("consecutiveFailures", consecutiveFailures);
+        res.put("failureThreshold", failureThreshold);
+        if (state != State.CLOSED) {
+            res.put("openedAtEpochMs", openedAtMs);
+            res.put("nextProbeAtEpochMs", openedAtMs + openDurationMs);
+        }
+        if (lastError != null) {
+            res.put("lastError", lastError);
+            res.put("lastFailureAtEpochMs", lastFailureAtMs);
+        }
+        return res;
+    }
+}
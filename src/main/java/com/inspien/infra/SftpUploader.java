@@ -1,20 +1,58 @@
 package com.inspien.infra;
 
-import com.jcraft.jsch.Channel;
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * SFTP 업로드
+ *
+ * 업로드마다 SSH 접속/인증을 새로 하지 않고, 접속된 session + sftp channel 을 pool 에 보관해서 재사용
+ * - 동시에 사용할 수 있는 연결 수는 pool.max-size 로 제한 (빌려갈 연결이 없으면 borrow-timeout-ms 동안 대기)
+ * - 빌려줄 때 연결 상태 확인, 일정 시간 이상 쉬었던 연결은 서버에 한 번 요청을 보내서 확인
+ * - keepalive 로 유휴 연결이 서버/방화벽에 의해 끊기지 않도록 유지, idle-timeout-ms 이상 사용되지 않은 연결은 정리
+ * - 재사용한 연결로 업로드하다 실패하면 새 연결로 한 번 더 시도
+ * - 전송 결과는 SftpCircuitBreaker 에 기록
+ *
+ * 전송 방식 (받는 쪽에서 덜 올라간 파일을 보지 않도록)
+ * - <파일명>.part 로 업로드, 시작 전에 로컬 파일의 SHA-256 을 <파일명>.part.sha256 에 기록
+ * - RESUME: 이전 시도에서 일부 올라간 .part 가 있고 .part.sha256 이 지금 로컬 파일과 같을 때만 이어서 전송
+ *   (영수증이 다시 만들어져 내용이 달라졌으면 처음부터 전송, 크기가 같아도 앞부분이 섞이지 않도록)
+ * - 원격 파일 크기(verify-checksum=true 이거나 이어서 전송한 경우 SHA-256 까지)를 로컬 파일과 비교한 뒤 최종 이름으로 rename
+ */
 @Slf4j
 @Component
 public class SftpUploader {
 
+    private final SftpCircuitBreaker circuitBreaker;
+
+    public SftpUploader(SftpCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
     @Value("${inspien.sftp.host}")
     private String host;
 
@@ -36,45 +74,420 @@ public class SftpUploader {
     @Value("${inspien.sftp.server-host-key:ssh-rsa}")
     private String serverHostKeyAlgos;
 
+    @Value("${inspien.sftp.connect-timeout-ms:15000}")
+    private int connectTimeoutMs;
+
+    @Value("${inspien.sftp.pool.max-size:4}")
+    private int maxSize;
+
+    @Value("${inspien.sftp.pool.borrow-timeout-ms:15000}")
+    private long borrowTimeoutMs;
+
+    @Value("${inspien.sftp.pool.idle-timeout-ms:60000}")
+    private long idleTimeoutMs;
+
+    // 이 시간 이상 쉬었던 연결은 빌려주기 전에 서버 응답 확인
+    @Value("${inspien.sftp.pool.validate-after-idle-ms:5000}")
+    private long validateAfterIdleMs;
+
+    @Value("${inspien.sftp.pool.keepalive-ms:15000}")
+    private int keepaliveMs;
 
-    public void upload(Path localFile, String remoteFileName) {
-        Session session = null;
-        ChannelSftp sftp = null;
+    // 업로드한 파일을 다시 읽어서 SHA-256 비교 (false 면 크기만 비교)
+    // 켜면 업로드할 때마다 파일 전체를 다시 내려받으므로 전송량/전송 시간이 두 배 가까이 됨, 기본은 끔
+    @Value("${inspien.sftp.verify-checksum:false}")
+    private boolean verifyChecksum;
 
+    // 재전송 전 원격 파일 확인 시 내용(SHA-256)까지 비교 (false 면 크기만 비교)
+    // 켜면 재전송 건마다 원격 파일 전체를 내려받음, 기본은 끔
+    @Value("${inspien.sftp.remote-check.verify-checksum:false}")
+    private boolean remoteCheckVerifyChecksum;
+
+    private static final String PART_SUFFIX = ".part";
+    private static final String PART_HASH_SUFFIX = ".part.sha256";
+
+    private final Deque<Conn> idle = new ArrayDeque<>();
+    private Semaphore permits;
+    private volatile boolean closed;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(maxSize);
+    }
+
+    /**
+     * 검증까지 끝난 업로드 결과
+     * sha256 은 원격 파일 내용까지 비교해서 일치를 확인한 경우에만 값이 있음 (크기만 비교했으면 null)
+     */
+    public record UploadResult(long size, String sha256) {}
+
+    public UploadResult upload(Path localFile, String remoteFileName) {
+        UploadResult local;
         try {
-            JSch jsch = new JSch();
+            local = describe(localFile);
+        } catch (Exception e) {
+            throw new RuntimeException("SFTP upload failed: cannot read local file: " + e.getMessage(), e);
+        }
 
-            session = jsch.getSession(user, host, port);
-            session.setPassword(password);
+        Conn conn;
+        try {
+            conn = borrow();
+        } catch (RuntimeException e) {
+            circuitBreaker.recordFailure(e.getMessage());
+            throw e;
+        }
 
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", strictHostKeyChecking ? "yes" : "no");
-            config.put("server_host_key", serverHostKeyAlgos);
-            session.setConfig(config);
+        try {
+            boolean checksumVerified;
+            try {
+                checksumVerified = put(conn, localFile, remoteFileName, local);
+            } catch (Exception e) {
+                destroy(conn);
+                conn = null;
+                if (!(e instanceof RetryableOnFreshConnection)) throw e;
 
-            // 서버 접속
-            log.info("SFTP connecting... host={}, port={}, user={}, remoteDir={}", host, port, user, remoteDir);
-            session.connect(15_000);
+                // 재사용한 연결이 끊겨 있었던 경우: 새 연결로 한 번 더
+                log.warn("SFTP pooled connection failed. Reconnecting. msg={}", e.getMessage());
+                conn = connect();
+                checksumVerified = put(conn, localFile, remoteFileName, local);
+            }
+            giveBack(conn);
+            conn = null;
+            circuitBreaker.recordSuccess();
+            return new UploadResult(local.size(), checksumVerified ? local.sha256() : null);
 
-            Channel channel = session.openChannel("sftp");
-            channel.connect(15_000);
-            sftp = (ChannelSftp) channel;
+        } catch (Exception e) {
+            circuitBreaker.recordFailure(rootMessage(e));
+            throw new RuntimeException("SFTP upload failed: " + rootMessage(e), e);
 
-            sftp.cd(remoteDir);
+        } finally {
+            if (conn != null) destroy(conn);
+            permits.release();
+        }
+    }
 
-            // 파일 업로드
-            log.info("SFTP uploading... localFile={}, remoteFileName={}", localFile, remoteFileName);
-            sftp.put(localFile.toString(), remoteFileName);
+    /**
+     * 재전송 전에 원격에 같은 파일이 이미 올라가 있는지 확인
+     * (업로드 성공 후 sent 이동 전에 프로세스가 죽은 경우 등)
+     *
+     * 최종 이름의 원격 파일 크기가 같고, remote-check.verify-checksum=true 면 내용까지 같을 때 결과 반환
+     * 없거나 다르거나 확인 중 오류가 나면 null (평소처럼 업로드)
+     */
+    public UploadResult findDelivered(Path localFile, String remoteFileName) {
+        Conn conn = null;
+        boolean borrowed = false;
+        try {
+            UploadResult local = describe(localFile);
+            conn = borrow();
+            borrowed = true;
+
+            long remoteSize = remoteSize(conn.sftp, remoteFileName);
+            boolean same = remoteSize == local.size();
+            if (same && remoteCheckVerifyChecksum) {
+                try (InputStream in = conn.sftp.get(remoteFileName)) {
+                    same = sha256Hex(in).equals(local.sha256());
+                }
+            }
+
+            giveBack(conn);
+            conn = null;
+            // 조회만으로는 circuit breaker 에 성공을 기록하지 않음 (stat 은 되는데 쓰기가 안 되는 장애도 있으므로 업로드 결과만 반영)
 
-            log.info("SFTP upload success. remote={}/{}", remoteDir, remoteFileName);
+            if (!same) {
+                if (remoteSize >= 0) {
+                    log.warn("Remote file exists but differs. Will upload again. remote={}, remoteSize={}, localSize={}",
+                            remoteFileName, remoteSize, local.size());
+                }
+                return null;
+            }
+            log.info("Remote file already delivered. remote={}/{}, size={}", remoteDir, remoteFileName, local.size());
+            return new UploadResult(local.size(), remoteCheckVerifyChecksum ? local.sha256() : null);
 
         } catch (Exception e) {
-            throw new RuntimeException("SFTP upload failed: " + e.getMessage(), e);
+            log.warn("Remote file check failed. Will upload. remote={}, msg={}", remoteFileName, rootMessage(e));
+            return null;
 
         } finally {
-            // 리소스 정리
-            if (sftp != null) sftp.disconnect();
-            if (session != null) session.disconnect();
+            if (conn != null) destroy(conn);
+            if (borrowed) permits.release();
+        }
+    }
+
+    // 업로드 후 원격 파일 SHA-256 까지 비교했으면 true
+    private boolean put(Conn conn, Path localFile, String remoteFileName, UploadResult local) throws Exception {
+        try {
+            String partName = remoteFileName + PART_SUFFIX;
+            String hashName = remoteFileName + PART_HASH_SUFFIX;
+            log.info("SFTP uploading... localFile={}, remoteFileName={}", localFile, remoteFileName);
+
+            boolean resumed = transfer(conn.sftp, localFile, partName, hashName, local);
+            // 이어서 전송한 파일은 앞부분이 다른 시도에서 올라간 것이므로 설정과 관계없이 내용까지 비교
+            boolean checksum = verifyChecksum || resumed;
+            verify(conn.sftp, partName, local, checksum);
+            publish(conn.sftp, partName, remoteFileName);
+            removeQuietly(conn.sftp, hashName);
+
+            log.info("SFTP upload success. remote={}/{}, size={}, resumed={}, checksumVerified={}",
+                    remoteDir, remoteFileName, local.size(), resumed, checksum);
+            return checksum;
+        } catch (Exception e) {
+            if (conn.reused) throw new RetryableOnFreshConnection(e);
+            throw e;
+        }
+    }
+
+    /**
+     * .part 로 전송, 이어서 전송했으면 true
+     * 이전에 일부만 올라간 .part 는 같은 내용의 로컬 파일에서 시작된 것이 확인될 때만(.part.sha256) 이어서 전송
+     * 처음부터 보낼 때는 .part 를 지운 뒤 .part.sha256 을 먼저 기록 (기록 후 중단되어도 .part 는 항상 이 내용에서 시작된 것)
+     */
+    private boolean transfer(ChannelSftp sftp, Path localFile, String partName, String hashName,
+                             UploadResult local) throws Exception {
+        long remoteSize = remoteSize(sftp, partName);
+
+        if (remoteSize > 0 && remoteSize < local.size() && local.sha256().equals(readPartHash(sftp, hashName))) {
+            log.info("SFTP resuming partial upload. remote={}, offset={}/{}", partName, remoteSize, local.size());
+            sftp.put(localFile.toString(), partName, ChannelSftp.RESUME);
+            return true;
+        }
+
+        if (remoteSize >= 0) {
+            // 로컬 파일이 다시 만들어졌거나 시작 내용을 알 수 없는 경우: 처음부터 전송
+            log.info("SFTP discarding partial upload. remote={}, size={}/{}", partName, remoteSize, local.size());
+            sftp.rm(partName);
+        }
+        sftp.put(new ByteArrayInputStream(local.sha256().getBytes(StandardCharsets.US_ASCII)), hashName,
+                ChannelSftp.OVERWRITE);
+        sftp.put(localFile.toString(), partName, ChannelSftp.OVERWRITE);
+        return false;
+    }
+
+    // .part 를 시작할 때 기록한 SHA-256, 없거나 읽을 수 없으면 null
+    private String readPartHash(ChannelSftp sftp, String hashName) {
+        try (InputStream in = sftp.get(hashName)) {
+            return new String(in.readNBytes(128), StandardCharsets.US_ASCII).trim();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void removeQuietly(ChannelSftp sftp, String name) {
+        try {
+            sftp.rm(name);
+        } catch (Exception e) {
+            log.debug("SFTP cleanup failed. remote={}, msg={}", name, e.getMessage());
+        }
+    }
+
+    private void verify(ChannelSftp sftp, String partName, UploadResult local, boolean checksum) throws Exception {
+        long remoteSize = remoteSize(sftp, partName);
+        if (remoteSize != local.size()) {
+            sftp.rm(partName);
+            throw new IllegalStateException("Remote size mismatch. expected=" + local.size() + ", actual=" + remoteSize);
+        }
+
+        if (checksum) {
+            String remoteHash;
+            try (InputStream in = sftp.get(partName)) {
+                remoteHash = sha256Hex(in);
+            }
+            if (!remoteHash.equals(local.sha256())) {
+                sftp.rm(partName);
+                throw new IllegalStateException("Remote checksum mismatch. expected=" + local.sha256() + ", actual=" + remoteHash);
+            }
+        }
+    }
+
+    /**
+     * 최종 이름으로 rename
+     * 서버가 posix-rename 확장을 지원하면 JSch 가 이를 사용해서 기존 파일을 원자적으로 교체,
+     * 지원하지 않는 서버에서 같은 이름이 이미 있으면(이전 전송 완료 후 sent 이동만 실패한 경우 등) 지우고 rename
+     */
+    private void publish(ChannelSftp sftp, String partName, String remoteFileName) throws SftpException {
+        try {
+            sftp.rename(partName, remoteFileName);
+        } catch (SftpException e) {
+            if (remoteSize(sftp, remoteFileName) < 0) throw e;
+            sftp.rm(remoteFileName);
+            sftp.rename(partName, remoteFileName);
+        }
+    }
+
+    // 원격 파일 크기, 없으면 -1
+    private long remoteSize(ChannelSftp sftp, String name) throws SftpException {
+        try {
+            return sftp.stat(name).getSize();
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) return -1;
+            throw e;
+        }
+    }
+
+    private static UploadResult describe(Path localFile) throws Exception {
+        return new UploadResult(Files.size(localFile), sha256Hex(Files.newInputStream(localFile)));
+    }
+
+    static String sha256Hex(InputStream in) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        try (in) {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) > 0) md.update(buf, 0, n);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    // 연결 한 개 확보 (pool 에 있으면 재사용, 없으면 새로 접속)
+    private Conn borrow() {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("SFTP upload failed: no connection available within " + borrowTimeoutMs + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("SFTP upload failed: interrupted while waiting for connection", e);
+        }
+
+        try {
+            while (true) {
+                Conn conn;
+                synchronized (idle) {
+                    conn = idle.pollFirst();
+                }
+                if (conn == null) break;
+
+                if (isUsable(conn)) {
+                    conn.reused = true;
+                    return conn;
+                }
+                destroy(conn);
+            }
+            return connect();
+
+        } catch (Exception e) {
+            permits.release();
+            throw new RuntimeException("SFTP upload failed: " + rootMessage(e), e);
+        }
+    }
+
+    private boolean isUsable(Conn conn) {
+        if (!conn.session.isConnected() || conn.sftp.isClosed()) return false;
+        if (System.currentTimeMillis() - conn.lastUsedMs < validateAfterIdleMs) return true;
+
+        try {
+            conn.sftp.stat(".");
+            return true;
+        } catch (Exception e) {
+            log.info("SFTP pooled connection invalid. Dropping. msg={}", e.getMessage());
+            return false;
+        }
+    }
+
+    private Conn connect() throws Exception {
+        JSch jsch = new JSch();
+
+        Session session = jsch.getSession(user, host, port);
+        session.setPassword(password);
+
+        Properties config = new Properties();
+        config.put("StrictHostKeyChecking", strictHostKeyChecking ? "yes" : "no");
+        config.put("server_host_key", serverHostKeyAlgos);
+        session.setConfig(config);
+        session.setServerAliveInterval(keepaliveMs);
+        session.setServerAliveCountMax(3);
+
+        // 서버 접속
+        log.info("SFTP connecting... host={}, port={}, user={}, remoteDir={}", host, port, user, remoteDir);
+        try {
+            session.connect(connectTimeoutMs);
+
+            ChannelSftp sftp = (ChannelSftp) session.openChannel("sftp");
+            sftp.connect(connectTimeoutMs);
+            sftp.cd(remoteDir);
+
+            return new Conn(session, sftp);
+        } catch (Exception e) {
+            session.disconnect();
+            throw e;
+        }
+    }
+
+    private void giveBack(Conn conn) {
+        conn.lastUsedMs = System.currentTimeMillis();
+        conn.reused = false;
+        synchronized (idle) {
+            if (!closed) {
+                idle.addFirst(conn);
+                return;
+            }
+        }
+        destroy(conn);
+    }
+
+    private void destroy(Conn conn) {
+        try {
+            conn.sftp.disconnect();
+        } catch (Exception ignored) {
+        }
+        conn.session.disconnect();
+    }
+
+    // 오래 사용되지 않은 연결 정리
+    @Scheduled(fixedDelayString = "${inspien.sftp.pool.evict-interval-ms:30000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        List<Conn> evicted = new ArrayList<>();
+
+        synchronized (idle) {
+            Iterator<Conn> it = idle.descendingIterator(); // 오래된 것부터
+            while (it.hasNext()) {
+                Conn conn = it.next();
+                if (now - conn.lastUsedMs >= idleTimeoutMs || !conn.session.isConnected()) {
+                    it.remove();
+                    evicted.add(conn);
+                }
+            }
+        }
+
+        for (Conn conn : evicted) destroy(conn);
+        if (!evicted.isEmpty()) {
+            log.debug("SFTP idle connections evicted. count={}", evicted.size());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        List<Conn> all;
+        synchronized (idle) {
+            closed = true;
+            all = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (Conn conn : all) destroy(conn);
+    }
+
+    private String rootMessage(Exception e) {
+        return e instanceof RetryableOnFreshConnection && e.getCause() != null
+                ? e.getCause().getMessage()
+                : e.getMessage();
+    }
+
+    private static class Conn {
+        final Session session;
+        final ChannelSftp sftp;
+        long lastUsedMs = System.currentTimeMillis();
+        boolean reused;
+
+        Conn(Session session, ChannelSftp sftp) {
+            this.session = session;
+            this.sftp = sftp;
+        }
+    }
+
+    // 재사용한 연결에서 난 오류 표시용
+    private static class RetryableOnFreshConnection extends Exception {
+        RetryableOnFreshConnection(Exception cause) {
+            super(cause.getMessage(), cause);
         }
     }
 }
@@ -0,0 +1,33 @@
+package com.inspien.infra;
+
+import java.util.List;
+
+/**
+ * 여러 서버가 함께 쓰는 영수증 meta 저장소 (database backend)
+ *
+ * 서버마다 자기 영수증만 아는 로컬 저장소와 달리, 위치 / 재시도 대상 / 전송 선점을 저장소에서 직접 확인
+ * ReceiptOutbox 는 이 인터페이스를 구현한 저장소면 메모리 색인 대신 저장소를 조회함
+ */
+public interface SharedReceiptMetaStore extends ReceiptMetaStore {
+
+    record Stored(String location, ReceiptMetaDTO meta) {}
+
+    // 현재 위치, 없으면 null
+    String locationOf(String fileName);
+
+    // 없으면 null
+    Stored findByTraceId(String traceId);
+
+    int countPending();
+
+    /**
+     * 재전송할 pending 영수증을 최대 limit 건 선점해서 반환 (다른 서버가 선점한 것은 제외)
+     * 선점은 releaseLease 로 반납하거나, 반납하지 못하면 임대 만료 후 다른 서버가 가져감
+     */
+    List<String> claimDue(int limit);
+
+    // 전송 선점 (이 서버가 이미 가진 것도 true)
+    boolean tryLease(String fileName);
+
+    void releaseLease(String fileName);
+}
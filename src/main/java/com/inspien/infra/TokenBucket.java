@@ -0,0 +1,48 @@
+package com.inspien.infra;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 초당 처리량 제한 (token bucket)
+ * permitsPerSecond 만큼 token 이 채워지고, 최대 burst 개까지 모아둘 수 있음
+ * permitsPerSecond <= 0 이면 제한 없음
+ */
+public class TokenBucket {
+
+    private final double permitsPerSecond;
+    private final double burst;
+
+    private double tokens;
+    private long lastRefillNs;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.lastRefillNs = System.nanoTime();
+    }
+
+    // token 한 개를 얻을 때까지 대기
+    public void acquire() throws InterruptedException {
+        if (permitsPerSecond <= 0) return;
+
+        while (true) {
+            long waitNs;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                waitNs = (long) ((1 - tokens) / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(waitNs, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNs) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNs = now;
+    }
+}
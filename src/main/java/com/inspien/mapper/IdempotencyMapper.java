@@ -0,0 +1,15 @@
+package com.inspien.mapper;
+
+import com.inspien.dto.IdempotencyRecordDTO;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+@Mapper
+public interface IdempotencyMapper {
+
+    int insertRecord(IdempotencyRecordDTO record);
+
+    IdempotencyRecordDTO selectByTraceId(@Param("traceId") String traceId);
+
+    int deleteOlderThan(@Param("retentionDays") int retentionDays);
+}
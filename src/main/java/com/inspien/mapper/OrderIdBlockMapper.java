@@ -0,0 +1,72 @@
+package com.inspien.mapper;
+
+import com.inspien.dto.OrderIdBlockDTO;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.List;
+
+@Mapper
+public interface OrderIdBlockMapper {
+
+    Integer selectNextIndexForUpdate(@Param("applicantKey") String applicantKey);
+
+    int insertNextIndex(
+      @Param("applicantKey") String applicantKey,
+      @Param("nextIndex") int nextIndex
+    );
+
+    int updateNextIndex(
+      @Param("applicantKey") String applicantKey,
+      @Param("nextIndex") int nextIndex
+    );
+
+    List<OrderIdBlockDTO> selectReclaimableBlockForUpdate(
+      @Param("applicantKey") String applicantKey,
+      @Param("minSize") int minSize,
+      RowBounds rowBounds
+    );
+
+    String selectMaxOrderIdBetween(
+      @Param("applicantKey") String applicantKey,
+      @Param("fromId") String fromId,
+      @Param("toId") String toId
+    );
+
+    int insertBlock(
+      @Param("block") OrderIdBlockDTO block,
+      @Param("leaseSeconds") int leaseSeconds
+    );
+
+    int claimBlock(
+      @Param("block") OrderIdBlockDTO block,
+      @Param("leaseSeconds") int leaseSeconds
+    );
+
+    int renewLease(
+      @Param("applicantKey") String applicantKey,
+      @Param("blockEnd") int blockEnd,
+      @Param("owner") String owner,
+      @Param("leaseSeconds") int leaseSeconds
+    );
+
+    int releaseBlock(
+      @Param("applicantKey") String applicantKey,
+      @Param("blockEnd") int blockEnd,
+      @Param("blockStart") int blockStart,
+      @Param("owner") String owner
+    );
+
+    int trimBlock(
+      @Param("applicantKey") String applicantKey,
+      @Param("blockEnd") int blockEnd,
+      @Param("blockStart") int blockStart
+    );
+
+    int deleteBlock(
+      @Param("applicantKey") String applicantKey,
+      @Param("blockEnd") int blockEnd,
+      @Param("owner") String owner
+    );
+}
@@ -1,8 +1,10 @@
 package com.inspien.mapper;
 
+import com.inspien.dto.OrderBatch;
 import com.inspien.dto.OrderDTO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
 import java.util.List;
 
@@ -11,9 +13,10 @@ public interface OrderMapper {
 
     String selectMaxOrderId(@Param("applicantKey") String applicantKey);
 
-    int insertOrders(@Param("rows") List<OrderDTO> rows);
+    int insertOrder(OrderBatch.Row row);
 
-    List<OrderDTO> selectOrdersByIds(
+    // orderIds 는 InListChunks 로 나눈 한 조각 (10/100/1000개), 트랜잭션 안에서 끝까지 읽을 것
+    Cursor<OrderDTO> selectOrdersByIds(
       @Param("applicantKey") String applicantKey,
       @Param("orderIds") List<String> orderIds
     );
@@ -0,0 +1,62 @@
+package com.inspien.mapper;
+
+import com.inspien.dto.ReceiptOutboxRowDTO;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.List;
+
+@Mapper
+public interface ReceiptOutboxMapper {
+
+    int upsert(ReceiptOutboxRowDTO row);
+
+    ReceiptOutboxRowDTO selectByFileName(@Param("fileName") String fileName);
+
+    ReceiptOutboxRowDTO selectByTraceId(@Param("traceId") String traceId);
+
+    List<ReceiptOutboxRowDTO> selectByLocation(@Param("location") String location);
+
+    int countByLocation(@Param("location") String location);
+
+    int updateLocation(
+      @Param("fileName") String fileName,
+      @Param("fromLocation") String fromLocation,
+      @Param("toLocation") String toLocation
+    );
+
+    int updateFileName(
+      @Param("oldFileName") String oldFileName,
+      @Param("newFileName") String newFileName
+    );
+
+    int deleteByFileName(
+      @Param("fileName") String fileName,
+      @Param("location") String location
+    );
+
+    // 재시도 시각 순, 건수 제한은 RowBounds 로
+    List<ReceiptOutboxRowDTO> selectDueForUpdate(
+      @Param("now") long now,
+      @Param("staleSeconds") int staleSeconds,
+      RowBounds rowBounds
+    );
+
+    int tryLease(
+      @Param("fileName") String fileName,
+      @Param("owner") String owner,
+      @Param("leaseSeconds") int leaseSeconds
+    );
+
+    int renewLease(
+      @Param("fileName") String fileName,
+      @Param("owner") String owner,
+      @Param("leaseSeconds") int leaseSeconds
+    );
+
+    int releaseLease(
+      @Param("fileName") String fileName,
+      @Param("owner") String owner
+    );
+}
@@ -15,8 +15,9 @@ public interface ShipmentMapper {
       @Param("limit") int limit
     );
 
-    int insertShipments(@Param("rows") List<ShipmentDTO> rows);
+    int insertShipment(ShipmentDTO row);
 
+    // orderIds 는 InListChunks 로 나눈 한 조각 (10/100/1000개)
     int updateOrderStatusY(
       @Param("applicantKey") String applicantKey,
       @Param("orderIds") List<String> orderIds
@@ -0,0 +1,34 @@
+package com.inspien.scheduler;
+
+import com.inspien.infra.ReceiptArchive;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReceiptArchiveScheduler {
+
+    private final ReceiptArchive receiptArchive;
+
+    @Value("${inspien.receipt.archive.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 매일 새벽(기본 03:30) sent 영수증을 날짜별 zip 으로 보관하고 보관 기간이 지난 zip 삭제
+     */
+    @Scheduled(cron = "${inspien.receipt.archive.cron:0 30 3 * * *}")
+    public void run() {
+        if (!enabled) return;
+        try {
+            int archived = receiptArchive.archiveSent();
+            int pruned = receiptArchive.pruneExpired();
+            log.info("Receipt archive run finished. archived={}, prunedArchives={}", archived, pruned);
+        } catch (Exception e) {
+            log.error("Receipt archive run failed: {}", e.getMessage(), e);
+        }
+    }
+}
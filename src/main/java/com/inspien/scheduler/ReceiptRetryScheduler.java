@@ -1,20 +1,25 @@
 package com.inspien.scheduler;
 
-import com.inspien.dto.OrderDTO;
 import com.inspien.infra.*;
-import com.inspien.mapper.OrderMapper;
+import com.inspien.service.ReceiptRegenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 import java.nio.file.*;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Component
@@ -23,80 +28,239 @@ public class ReceiptRetryScheduler {
 
     private final ReceiptOutbox outbox;
     private final SftpUploader sftpUploader;
-    private final OrderMapper orderMapper;
+    private final SftpCircuitBreaker circuitBreaker;
+    private final ReceiptRegenerator receiptRegenerator;
 
     @Value("${inspien.sftp.retry.maxAttempts:10}")
     private int maxAttempts;
 
-    @Value("${inspien.sftp.retry.initialDelayMs:90000}")
-    private long initialRetryDelayMs;
+    // 동시에 재전송할 건수 (SFTP pool.max-size 보다 크면 연결을 기다리게 됨)
+    @Value("${inspien.sftp.retry.parallelism:1}")
+    private int parallelism;
 
-    private final ReentrantLock lock = new ReentrantLock();
+    // 초당 최대 재전송 건수 (0 이면 제한 없음), 장애 복구 직후 SFTP 서버에 한꺼번에 몰리지 않도록 제한
+    @Value("${inspien.sftp.retry.rate-per-sec:0}")
+    private double ratePerSec;
 
-    @Scheduled(fixedDelayString = "${inspien.sftp.retry.fixedDelayMs:60000}")
-    public void retryPending() {
-        if (!lock.tryLock()) return;
+    // 한 번 실행에서 처리할 최대 건수 (재시도 시각이 오래된 순)
+    @Value("${inspien.sftp.retry.batch-size:1000}")
+    private int batchSize;
+
+    // 같은 대상이 처리되지 않고 계속 남아 있을 때 다시 시도하기 전 대기 시간
+    @Value("${inspien.sftp.retry.no-progress-delay-ms:1000}")
+    private long noProgressDelayMs;
+
+    // 대기열이 비어 있을 때도 이 간격으로 한 번씩 깨어남 (종료 확인용)
+    private static final long IDLE_WAIT_MS = 60_000;
+
+    private ExecutorService workers;
+    private TokenBucket rateLimit;
+    private Thread dispatcher;
+
+    @PostConstruct
+    void init() {
+        rateLimit = new TokenBucket(ratePerSec, Math.max(1, parallelism));
+        if (parallelism <= 1) return;
+
+        AtomicInteger seq = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "receipt-retry-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (dispatcher != null) dispatcher.interrupt();
+        if (workers != null) workers.shutdownNow();
+    }
+
+    /**
+     * 시작 시 복구: 이전 프로세스가 전송 중에 종료되어 pending 에 남은 영수증을 재전송 대상으로 표시
+     *
+     * 실패 이력이 없는 meta(attempts=0, lastError 없음)는 전송 중인 것으로 보고 retryPending 에서 건너뛰므로,
+     * 이번 프로세스 시작 시 이미 pending 에 있던 것은 lastError 를 남기고 바로 due 로 바꿈
+     * 재전송 시 원격 파일을 먼저 확인하므로 이미 올라간 영수증은 sent 로만 이동됨
+     * 복구가 끝나면 재전송 dispatcher 시작
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterrupted() {
+        int recovered = 0;
+        for (String fileName : outbox.pendingAtStartup()) {
+            try {
+                ReceiptMetaDTO meta = outbox.isPending(fileName) ? outbox.readMeta(fileName) : null;
+                if (meta == null || meta.getAttempts() != 0 || (meta.getLastError() != null && !meta.getLastError().isBlank())) {
+                    continue;
+                }
+
+                meta.setLastError("INTERRUPTED_BEFORE_DELIVERY");
+                meta.setNextAttemptAtEpochMs(System.currentTimeMillis());
+                outbox.updateMeta(meta);
+                recovered++;
+            } catch (Exception e) {
+                log.error("Startup recovery failed. fileName={}, msg={}", fileName, e.getMessage());
+            }
+        }
+
+        if (recovered > 0) {
+            log.warn("Interrupted receipts marked for retry. count={}", recovered);
+        }
+
+        dispatcher = new Thread(this::dispatchLoop, "receipt-retry-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * 재전송 dispatcher 스레드 (주기적으로 폴더를 확인하지 않고 재시도 시각에 맞춰 동작)
+     *
+     * outbox 색인의 재시도 대기열에서 가장 이른 재시도 시각까지 잠들었다가, 시각이 된 영수증을 꺼내서 전송
+     * 새 meta 가 기록되거나 재시도 시각이 바뀌면 바로 깨어나서 다시 계산
+     */
+    private void dispatchLoop() {
+        List<String> lastRound = List.of();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<String> due = outbox.awaitDue(batchSize, IDLE_WAIT_MS);
+                if (due.isEmpty()) {
+                    lastRound = due;
+                    continue;
+                }
+
+                // 직전과 같은 대상이 그대로 남아 있으면(읽기 실패 등으로 상태가 바뀌지 않음) 잠시 쉬었다가 다시 시도
+                if (due.equals(lastRound)) Thread.sleep(noProgressDelayMs);
+                lastRound = due;
+
+                retryPending(due);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("ReceiptRetryScheduler failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 재시도 시각이 된 영수증을 parallelism 개의 스레드로 나눠서 전송
+     * 파일 단위로 선점(tryClaim)하므로 같은 영수증이 동시에 두 번 올라가지 않음
+     * 이번에 꺼낸 대상이 모두 끝난 뒤에 다음 대상을 꺼냄
+     */
+    private void retryPending(List<String> fileNames) throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (String fileName : fileNames) {
+            tasks.add(() -> {
+                retryOne(fileName);
+                return null;
+            });
+        }
+
+        if (workers == null) {
+            for (Callable<Void> task : tasks) task.call();
+        } else {
+            workers.invokeAll(tasks);
+        }
+    }
+
+    /**
+     * 영수증 한 건 재전송
+     * 공유 저장소면 awaitDue 가 이미 저장소 임대를 걸어 두었으므로, 선점 전에 끝나는 경우를 포함해 어느 경로로 끝나든 반납
+     */
+    private void retryOne(String fileName) {
+        boolean claimed = false;
         try {
-            outbox.ensureDirs();
-
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(outbox.pendingDir(), "*.meta.json")) {
-                for (Path metaPath : stream) {
-                    ReceiptMetaDTO meta = outbox.readMeta(metaPath);
-
-                    // 재시도 로그에도 아까 실패했던 요청의 traceId를 적용해서 추적을 용이하게 함
-                    MDC.put("traceId", meta.getTraceId());
-                    try {
-                        if (meta.getAttempts() == 0 && (meta.getLastError() == null || meta.getLastError().isBlank())) {
-                            continue; // 실패 이력 없는 영수증이면 혹시 모를 작업 충돌 방지를 위해서 스킵
-                        }
-
-                        long now = Instant.now().toEpochMilli();
-                        if (meta.getNextAttemptAtEpochMs() > now) continue;
-
-                        // 영수증 파일이 없으면 DB에서 재생성 시도
-                        Path receiptFile = outbox.receiptPathInPending(meta.getFileName());
-                        if (!Files.exists(receiptFile)) {
-                            log.warn("Receipt file missing. Will recreate from DB. fileName={}", meta.getFileName());
-
-                            List<OrderDTO> rows = orderMapper.selectOrdersByIds(meta.getApplicantKey(), meta.getOrderIds());
-                            if (rows == null || rows.isEmpty()) {
-                                // DB에서도 못 찾으면 사실상 재전송 불가능, failed로 이동
-                                log.error("Cannot recreate receipt: DB rows not found. orderIds={}", meta.getOrderIds());
-                                outbox.markFailed(meta.getFileName());
-                                continue;
-                            }
-
-                            String content = buildReceiptContent(rows);
-                            outbox.writeReceiptToPending(meta.getFileName(), content);
-                            log.info("Receipt file recreated. fileName={}", meta.getFileName());
-                        }
-
-                        // SFTP 재전송
-                        try {
-                            log.info("SFTP RETRY start. fileName={}, attempts={}", meta.getFileName(), meta.getAttempts());
-                            sftpUploader.upload(receiptFile, meta.getFileName());
-                            log.info("SFTP RETRY success. fileName={}", meta.getFileName());
-
-                            outbox.markSent(meta.getFileName());
-                        } catch (Exception e) {
-                            handleRetryFail(meta, metaPath, e);
-                        }
-
-                    } finally {
-                        MDC.remove("traceId");
-                    }
+            ReceiptMetaDTO meta;
+            try {
+                // 다른 스레드가 이미 sent / failed 로 옮긴 경우
+                if (!outbox.isPending(fileName)) return;
+                meta = outbox.readMeta(fileName);
+                if (meta == null) return;
+            } catch (Exception e) {
+                log.error("Read meta failed. fileName={}, msg={}", fileName, e.getMessage());
+                return;
+            }
+
+            // 재시도 로그에도 아까 실패했던 요청의 traceId를 적용해서 추적을 용이하게 함
+            MDC.put("traceId", meta.getTraceId());
+
+            if (meta.getAttempts() == 0 && (meta.getLastError() == null || meta.getLastError().isBlank())) {
+                return; // 실패 이력 없는 영수증이면 혹시 모를 작업 충돌 방지를 위해서 스킵
+            }
+
+            long now = Instant.now().toEpochMilli();
+            if (meta.getNextAttemptAtEpochMs() > now) return;
+
+            if (!outbox.tryClaim(fileName)) return; // 다른 스레드가 전송 중
+            claimed = true;
+
+            rateLimit.acquire();
+
+            // 선점하는 사이에 다른 곳에서 처리가 끝났을 수 있음
+            if (!outbox.isPending(meta.getFileName())) return;
+
+            // 영수증 파일이 없으면 DB에서 재생성 시도
+            Path receiptFile = outbox.receiptPathInPending(meta.getFileName());
+            if (!Files.exists(receiptFile)) {
+                log.warn("Receipt file missing. Will recreate from DB. fileName={}", meta.getFileName());
+
+                int rows = receiptRegenerator.regenerate(meta, receiptFile);
+                if (rows == 0) {
+                    // DB에서도 못 찾으면 사실상 재전송 불가능, failed로 이동
+                    log.error("Cannot recreate receipt: DB rows not found. fileName={}, orderIds={}",
+                            meta.getFileName(), meta.getOrderIds() == null ? 0 : meta.getOrderIds().size());
+                    outbox.markFailed(meta.getFileName());
+                    return;
                 }
+
+                log.info("Receipt file recreated. fileName={}, rows={}", meta.getFileName(), rows);
             }
 
+            // SFTP 장애 중이면 시험 전송 한 건만 허용, 나머지는 시험 전송이 가능해지는 시각으로 미룸 (attempts 는 그대로)
+            if (!circuitBreaker.tryAcquire()) {
+                meta.setNextAttemptAtEpochMs(circuitBreaker.nextAttemptAtEpochMs());
+                outbox.updateMeta(meta);
+                return;
+            }
+
+            // SFTP 재전송
+            try {
+                // 이전 시도에서 업로드는 끝났는데 sent 이동 전에 실패/중단된 경우 다시 올리지 않음
+                SftpUploader.UploadResult delivered = sftpUploader.findDelivered(receiptFile, meta.getFileName());
+                if (delivered != null) {
+                    log.info("SFTP RETRY skipped: already delivered. fileName={}", meta.getFileName());
+                    outbox.markSent(meta, delivered);
+                    return;
+                }
+
+                log.info("SFTP RETRY start. fileName={}, attempts={}", meta.getFileName(), meta.getAttempts());
+                SftpUploader.UploadResult result = sftpUploader.upload(receiptFile, meta.getFileName());
+                log.info("SFTP RETRY success. fileName={}", meta.getFileName());
+
+                outbox.markSent(meta, result);
+            } catch (Exception e) {
+                handleRetryFail(meta, e);
+            } finally {
+                // 업로드 결과 없이 끝난 경우(이미 전송됨, 로컬 파일 오류 등) 시험 전송 권한이 남지 않도록 반납
+                circuitBreaker.releaseProbe();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            log.error("ReceiptRetryScheduler failed: {}", e.getMessage(), e);
+            log.error("Receipt retry failed. fileName={}, msg={}", fileName, e.getMessage(), e);
         } finally {
-            lock.unlock();
+            if (claimed) {
+                outbox.releaseClaim(fileName);
+            } else {
+                outbox.releaseUnclaimed(fileName);
+            }
+            MDC.remove("traceId");
         }
     }
 
     // maxAttempts 만큼 전송 재시도, 최대 횟수 도달 시 failed로 이동
-    private void handleRetryFail(ReceiptMetaDTO meta, Path metaPath, Exception e) {
+    private void handleRetryFail(ReceiptMetaDTO meta, Exception e) {
         int nextAttempts = meta.getAttempts() + 1;
         meta.setAttempts(nextAttempts);
         meta.setLastError(e.getMessage());
@@ -104,29 +268,13 @@ public class ReceiptRetryScheduler {
         if (nextAttempts >= maxAttempts) {
             log.error("SFTP RETRY final-fail. fileName={}, attempts={}, msg={}",
                     meta.getFileName(), nextAttempts, e.getMessage());
-            outbox.updateMeta(metaPath, meta);
+            outbox.updateMeta(meta);
             outbox.markFailed(meta.getFileName());
         } else {
-            meta.setNextAttemptAtEpochMs(System.currentTimeMillis());
-            outbox.updateMeta(metaPath, meta);
+            meta.setNextAttemptAtEpochMs(outbox.calcNextAttemptAt(nextAttempts));
+            outbox.updateMeta(meta);
             log.warn("SFTP RETRY fail (will retry). fileName={}, attempts={}, nextAt={}, msg={}",
                     meta.getFileName(), nextAttempts, meta.getNextAttemptAtEpochMs(), e.getMessage());
         }
     }
-
-    // DB 조회 결과를 기반으로 아까 생성에 실패했던 영수증을 재생성
-    private String buildReceiptContent(List<OrderDTO> rows) {
-        return rows.stream()
-                .map(r -> String.join("^",
-                        r.getOrderId(),
-                        r.getUserId(),
-                        r.getItemId(),
-                        r.getApplicantKey(),
-                        r.getName(),
-                        r.getAddress(),
-                        r.getItemName(),
-                        r.getPrice()
-                ))
-                .collect(Collectors.joining("\n")) + "\n";
-    }
 }
@@ -1,11 +1,15 @@
 package com.inspien.scheduler;
 
+import com.inspien.service.ApplicantRegistry;
 import com.inspien.service.ShipmentBatchService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 
 @Slf4j
@@ -14,6 +18,17 @@ import java.util.concurrent.locks.ReentrantLock;
 public class ShipmentBatchScheduler {
 
     private final ShipmentBatchService shipmentBatchService;
+    private final ApplicantRegistry applicantRegistry;
+
+    @Value("${inspien.shipment.batch.fetchLimit:200}")
+    private int fetchLimit;
+
+    // 한 번 실행할 때 applicant 별 최대 배치 횟수 (applicant 당 최대 fetchLimit x maxRounds 건)
+    @Value("${inspien.shipment.batch.max-rounds:1}")
+    private int maxRounds;
+
+    // 매 실행마다 시작 applicant 를 바꿔서 항상 같은 applicant 가 먼저 처리되지 않도록 함
+    private int startOffset;
 
     /**
      * 동일 배치가 겹쳐 실행되는 것을 방지, pool.size=2 로 설정했기 때문에 충돌 X
@@ -34,12 +49,39 @@ public class ShipmentBatchScheduler {
             return;
         }
         try {
-            shipmentBatchService.runOnce();
-        } catch (Exception e) {
-            // 예외가 나면 @Transactional로 롤백되어 STATUS=N 그대로 남아 다음 배치에서 재처리 가능
-            log.error("Shipment batch failed: {}", e.getMessage(), e);
+            runRoundRobin();
         } finally {
             lock.unlock();
         }
     }
+
+    /**
+     * applicant 별로 한 번씩(최대 fetchLimit 건) 돌아가면서 처리
+     * 처리할 건이 남은 applicant 만 다음 라운드에 다시 참여 -> 건수가 많은 applicant 가 다른 applicant 를 밀어내지 않음
+     */
+    private void runRoundRobin() {
+        List<String> keys = applicantRegistry.keys();
+        int start = Math.floorMod(startOffset++, keys.size()); // int 가 넘쳐서 음수가 되어도 0 이상
+
+        List<String> active = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            active.add(keys.get((start + i) % keys.size()));
+        }
+
+        for (int round = 0; round < maxRounds && !active.isEmpty(); round++) {
+            List<String> next = new ArrayList<>(active.size());
+            for (String applicantKey : active) {
+                try {
+                    if (shipmentBatchService.runOnce(applicantKey) >= fetchLimit) {
+                        next.add(applicantKey);
+                    }
+                } catch (Exception e) {
+                    // 예외가 나면 @Transactional로 롤백되어 STATUS=N 그대로 남아 다음 배치에서 재처리 가능
+                    // 다른 applicant 는 계속 진행
+                    log.error("Shipment batch failed. applicantKey={}, msg={}", applicantKey, e.getMessage(), e);
+                }
+            }
+            active = next;
+        }
+    }
 }
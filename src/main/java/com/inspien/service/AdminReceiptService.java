@@ -1,10 +1,12 @@
 package com.inspien.service;
 
-import com.inspien.dto.OrderDTO;
+import com.inspien.infra.ReceiptArchive;
 import com.inspien.infra.ReceiptMetaDTO;
 import com.inspien.infra.ReceiptOutbox;
+import com.inspien.infra.SftpCircuitBreaker;
 import com.inspien.infra.SftpUploader;
-import com.inspien.mapper.OrderMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
@@ -18,9 +20,13 @@ import java.nio.file.*;
 import java.security.MessageDigest;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -29,7 +35,9 @@ public class AdminReceiptService {
 
     private final ReceiptOutbox outbox;
     private final SftpUploader sftpUploader;
-    private final OrderMapper orderMapper;
+    private final ReceiptRegenerator receiptRegenerator;
+    private final SftpCircuitBreaker circuitBreaker;
+    private final ReceiptArchive receiptArchive;
 
     // fileName: INSPIEN_<name>_<yyyyMMddHHmmss>.txt
     private static final Pattern RECEIPT_NAME_PATTERN =
@@ -38,73 +46,194 @@ public class AdminReceiptService {
     @Value("${inspien.admin.key}")
     private String expectedAdminKey;
 
+    // 일괄 재전송 시 동시에 처리할 건수 (모든 일괄 작업이 이 풀을 함께 사용, SFTP pool.max-size 이하 권장)
+    @Value("${inspien.admin.bulk-retry.parallelism:4}")
+    private int bulkParallelism;
+
+    // 한 번에 요청할 수 있는 최대 건수
+    @Value("${inspien.admin.bulk-retry.max-items:10000}")
+    private int bulkMaxItems;
+
+    private ExecutorService bulkWorkers;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger seq = new AtomicInteger();
+        bulkWorkers = Executors.newFixedThreadPool(Math.max(1, bulkParallelism), r -> {
+            Thread t = new Thread(r, "admin-bulk-retry-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (bulkWorkers != null) bulkWorkers.shutdownNow();
+    }
+
     public Map<String, Object> retryByTraceId(String requestXml, String adminKey) {
 
         String adminTraceId = MDC.get("traceId"); // 관리자 호출 자체의 traceId
+
+        Map<String, Object> denied = checkAdminKey(adminTraceId, adminKey);
+        if (denied != null) return denied;
+
+        AdminReq req = parseAdminXml(requestXml);
+
         
-        // 헤더 존재 여부 검사
-        if (adminKey == null || adminKey.isBlank()) {
+        if (req.traceId == null || req.traceId.isBlank()) {
             return Map.of(
                     "traceId", adminTraceId,
                     "success", false,
-                    "message", "ADMİNKEY header is required"
+                    "message", "TRACE_ID is required"
             );
         }
 
-        // 관리자 키 일치 검사
-        if (!safeEquals(expectedAdminKey, adminKey)) {
-            return Map.of(
+        return retryReceipt(req.traceId, req.newParticipantName);
+    }
+
+    /**
+     * 일괄 재전송: 대상(traceId 목록 / 파일명 시각 범위 / failed 전체)을 골라 bulk-retry.parallelism 만큼 동시에 재전송
+     * 결과는 한 건 끝날 때마다 out 으로 한 줄씩 전달 (NDJSON 으로 바로 내려보내서 큰 작업도 응답 대기 시간 초과 없이 진행 상황 확인)
+     * - 첫 줄 type=start (total), 이후 type=result (완료 순서), 마지막 줄 type=summary
+     * - 관리자 키 / 요청 오류면 success=false 한 줄만
+     *
+     * 요청 XML
+     * <BULK_RETRY>
+     *     <ITEM><TRACE_ID>..</TRACE_ID><PARTICIPANT_NAME>..</PARTICIPANT_NAME></ITEM>  (PARTICIPANT_NAME 은 선택, 여러 개 가능)
+     *     <FROM>yyyyMMddHHmmss</FROM><TO>yyyyMMddHHmmss</TO>                         (pending/failed 중 파일명 시각이 범위 안인 것)
+     *     <ALL_FAILED>Y</ALL_FAILED>                                                  (failed 전체)
+     * </BULK_RETRY>
+     */
+    public void bulkRetry(String requestXml, String adminKey, Consumer<Map<String, Object>> out) {
+        String adminTraceId = MDC.get("traceId");
+
+        Map<String, Object> denied = checkAdminKey(adminTraceId, adminKey);
+        if (denied != null) {
+            out.accept(denied);
+            return;
+        }
+
+        List<BulkItem> items;
+        try {
+            items = resolveBulkTargets(parseBulkXml(requestXml));
+        } catch (IllegalArgumentException e) {
+            out.accept(Map.of(
                     "traceId", adminTraceId,
                     "success", false,
-                    "message", "Unauthorized admin key"
-            );
+                    "message", e.getMessage()
+            ));
+            return;
         }
 
-        AdminReq req = parseAdminXml(requestXml);
+        Map<String, Object> start = new LinkedHashMap<>();
+        start.put("type", "start");
+        start.put("traceId", adminTraceId);
+        start.put("total", items.size());
+        out.accept(start);
+
+        // 동시에 풀에 넣는 건수를 parallelism 으로 제한 (다른 일괄 작업과 풀을 나눠 쓰고, 연결이 끊기면 바로 멈출 수 있도록)
+        ExecutorCompletionService<Map<String, Object>> completion = new ExecutorCompletionService<>(bulkWorkers);
+        int parallelism = Math.max(1, bulkParallelism);
+        Iterator<BulkItem> it = items.iterator();
+        int submitted = 0;
+        int done = 0;
+        int succeeded = 0;
+        try {
+            while (done < items.size()) {
+                while (submitted - done < parallelism && it.hasNext()) {
+                    BulkItem item = it.next();
+                    completion.submit(() -> retryReceipt(item.traceId(), item.newParticipantName()));
+                    submitted++;
+                }
 
-        
-        if (req.traceId == null || req.traceId.isBlank()) {
-            return Map.of(
-                    "traceId", adminTraceId,
-                    "success", false,
-                    "message", "TRACE_ID is required"
-            );
+                Map<String, Object> r = completion.take().get();
+                done++;
+                if (Boolean.TRUE.equals(r.get("success"))) succeeded++;
+
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("type", "result");
+                line.put("seq", done);
+                line.putAll(r);
+                out.accept(line);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("ADMIN bulk retry interrupted. done={}, total={}", done, items.size());
+            return;
+        } catch (Exception e) {
+            // 대부분 클라이언트 연결 끊김, 이미 시작한 건은 끝까지 진행되고 남은 건은 시작하지 않음
+            log.warn("ADMIN bulk retry stopped. done={}, submitted={}, total={}, msg={}",
+                    done, submitted, items.size(), e.getMessage());
+            return;
         }
 
+        log.info("ADMIN bulk retry finished. total={}, succeeded={}", items.size(), succeeded);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("type", "summary");
+        summary.put("traceId", adminTraceId);
+        summary.put("success", true);
+        summary.put("total", items.size());
+        summary.put("succeeded", succeeded);
+        summary.put("failed", items.size() - succeeded);
+        out.accept(summary);
+    }
+
+    /**
+     * 영수증 한 건 재전송 (단건 / 일괄 재전송 공통)
+     * newParticipantName 이 있으면 파일명의 참여자 이름을 바꾼 뒤 전송
+     */
+    private Map<String, Object> retryReceipt(String traceId, String newParticipantName) {
         // 현재 처리하려는 traceId(요청자에게 전달받은 값)를 이 작업의 traceId에 덮어씀 (추적/관리 용이)
-        MDC.put("traceId", req.traceId);
+        MDC.put("traceId", traceId);
 
+        String claimedFileName = null;
+        boolean probeAcquired = false;
         try {
             outbox.ensureDirs();
 
-            Found found = findMetaByTraceId(req.traceId);
+            // outbox 색인으로 조회, sent 로 끝난 영수증은 대상 아님
+            ReceiptOutbox.Located found = outbox.findByTraceId(traceId);
+            if (found != null && ReceiptOutbox.SENT.equals(found.location())) found = null;
 
             // meta 파일이 없으면 사실상 처리가 불가능함. app 오류보다는 인프라 이슈 가능성 점검 필요
             if (found == null) {
-                log.warn("No receipt meta found for traceId={}", req.traceId);
+                log.warn("No receipt meta found for traceId={}", traceId);
                 return Map.of(
-                        "traceId", req.traceId,
+                        "traceId", traceId,
                         "success", false,
                         "message", "No receipt(meta) found in pending/failed for this traceId."
                 );
             }
 
-            ReceiptMetaDTO meta = found.meta;
+            ReceiptMetaDTO meta = found.meta();
             String oldFileName = meta.getFileName();
             String newFileName = oldFileName;
 
+            // 재시도 스케줄러 등에서 같은 영수증을 전송 중이면 중복 전송하지 않음
+            if (!outbox.tryClaim(oldFileName)) {
+                return Map.of(
+                        "traceId", traceId,
+                        "success", false,
+                        "message", "Receipt delivery is already in progress. Try again later."
+                );
+            }
+            claimedFileName = oldFileName;
+
             // 1) 이름 변경 요청이 있으면 fileName 변경 + 파일 및 meta rename + meta 내용 업데이트
-            if (req.newParticipantName != null && !req.newParticipantName.isBlank()) {
-                String renamed = buildRenamedFileName(oldFileName, req.newParticipantName);
+            if (newParticipantName != null && !newParticipantName.isBlank()) {
+                String renamed = buildRenamedFileName(oldFileName, newParticipantName);
 
                 if (renamed != null && !renamed.equals(oldFileName)) {
                     newFileName = renamed;
-                    renameReceiptAndMeta(found, oldFileName, newFileName);
+                    outbox.rename(found.location(), oldFileName, newFileName);
+                    // 선점도 새 이름으로 옮겨졌으므로 반납도 새 이름으로
+                    claimedFileName = newFileName;
                     meta.setFileName(newFileName);
 
-                    // meta 파일 위치가 바뀌었으니 metaPath도 갱신
-                    found.metaPath = found.dir.resolve(newFileName + ".meta.json");
-                    outbox.updateMeta(found.metaPath, meta);
+                    // 바뀐 이름의 meta 에 내용 반영
+                    outbox.updateMeta(meta);
 
                     log.info("Receipt rename applied. oldFileName={} newFileName={}", oldFileName, newFileName);
                 } else {
@@ -113,115 +242,150 @@ public class AdminReceiptService {
             }
 
             // 2) 영수증 파일이 없으면 DB에서 재생성 (영수증 생성 실패 케이스까지 커버)
-            Path receiptPath = found.dir.resolve(newFileName);
+            Path receiptPath = found.dir().resolve(newFileName);
             if (!Files.exists(receiptPath)) {
                 log.warn("Receipt file missing. Will recreate from DB. fileName={}", newFileName);
 
-                List<OrderDTO> rows = orderMapper.selectOrdersByIds(meta.getApplicantKey(), meta.getOrderIds());
-                if (rows == null || rows.isEmpty()) {
-                    log.error("Cannot recreate receipt: DB rows not found. orderIds={}", meta.getOrderIds());
+                int rows = receiptRegenerator.regenerate(meta, receiptPath);
+                if (rows == 0) {
+                    log.error("Cannot recreate receipt: DB rows not found. fileName={}, orderIds={}",
+                            newFileName, meta.getOrderIds() == null ? 0 : meta.getOrderIds().size());
                     return Map.of(
-                            "traceId", req.traceId,
+                            "traceId", traceId,
                             "success", false,
                             "message", "Receipt file missing and DB rows not found. Cannot resend."
                     );
                 }
 
-                String content = buildReceiptContent(rows);
-
-                Files.writeString(receiptPath, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-                log.info("Receipt recreated. fileName={} path={}", newFileName, receiptPath);
+                log.info("Receipt recreated. fileName={} path={} rows={}", newFileName, receiptPath, rows);
             }
 
             // 3) SFTP 전송 시도
-            log.info("ADMIN SFTP retry start. fileName={} path={}", newFileName, receiptPath);
-            sftpUploader.upload(receiptPath, newFileName);
-            log.info("ADMIN SFTP retry success. fileName={}", newFileName);
+            // SFTP 장애 중이면 재시도 스케줄러와 같이 시험 전송 한 건만 허용, 나머지는 바로 실패 응답
+            if (!circuitBreaker.tryAcquire()) {
+                log.warn("ADMIN SFTP retry skipped: circuit open. fileName={}", newFileName);
+                return Map.of(
+                        "traceId", traceId,
+                        "success", false,
+                        "message", "SFTP circuit is open. Try again later."
+                );
+            }
+            probeAcquired = true;
+
+            // 같은 이름으로 이미 올라가 있으면(업로드 후 sent 이동만 실패한 경우 등) 다시 올리지 않음
+            SftpUploader.UploadResult result = sftpUploader.findDelivered(receiptPath, newFileName);
+            boolean alreadyDelivered = result != null;
+            if (alreadyDelivered) {
+                log.info("ADMIN SFTP retry skipped: already delivered. fileName={}", newFileName);
+            } else {
+                log.info("ADMIN SFTP retry start. fileName={} path={}", newFileName, receiptPath);
+                result = sftpUploader.upload(receiptPath, newFileName);
+                log.info("ADMIN SFTP retry success. fileName={}", newFileName);
+            }
 
-            // 4) 성공 시 sent로 이동
-            moveToSent(found.dir, newFileName);
+            // 4) 성공 시 전송 결과 기록 후 sent로 이동
+            outbox.markSent(meta, result);
 
             return Map.of(
-                    "traceId", req.traceId,
+                    "traceId", traceId,
                     "success", true,
-                    "message", "SFTP resend success.",
+                    "message", alreadyDelivered ? "Already delivered. Marked as sent." : "SFTP resend success.",
                     "oldFileName", oldFileName,
                     "newFileName", newFileName,
-                    "foundIn", found.location
+                    "foundIn", found.location()
             );
 
         } catch (Exception e) {
-            log.error("ADMIN retry failed. traceId={}, msg={}", req.traceId, e.getMessage(), e);
+            log.error("ADMIN retry failed. traceId={}, msg={}", traceId, e.getMessage(), e);
             return Map.of(
-                    "traceId", req.traceId,
+                    "traceId", traceId,
                     "success", false,
                     "message", "Retry failed: " + e.getMessage()
             );
         } finally {
+            // 업로드 결과 없이 끝난 경우 시험 전송 권한 반납
+            if (probeAcquired) circuitBreaker.releaseProbe();
+            if (claimedFileName != null) outbox.releaseClaim(claimedFileName);
             MDC.remove("traceId");
         }
     }
 
 
-    private Found findMetaByTraceId(String traceId) {
-        // pending 부터 찾아보고 없으면 failed 에서 찾아보기
-        Found f = scanDirForTraceId(outbox.pendingDir(), "pending", traceId);
-        if (f != null) return f;
-        return scanDirForTraceId(outbox.failedDir(), "failed", traceId);
-    }
+    // SFTP circuit breaker 상태 조회 (모니터링용)
+    public Map<String, Object> sftpCircuitStatus(String adminKey) {
+        String adminTraceId = MDC.get("traceId");
 
-    private Found scanDirForTraceId(Path dir, String location, String traceId) {
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.meta.json")) {
-            for (Path metaPath : stream) {
-                ReceiptMetaDTO meta = outbox.readMeta(metaPath);
-                if (traceId.equals(meta.getTraceId())) {
-                    String fileName = meta.getFileName();
-                    return new Found(dir, location, metaPath, meta, fileName);
-                }
-            }
-        } catch (NoSuchFileException e) {
-            return null;
-        } catch (Exception e) {
-            log.error("scanDirForTraceId failed. dir={}, msg={}", dir, e.getMessage(), e);
-        }
-        return null;
+        Map<String, Object> denied = checkAdminKey(adminTraceId, adminKey);
+        if (denied != null) return denied;
+
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("traceId", adminTraceId);
+        res.put("success", true);
+        res.putAll(circuitBreaker.snapshot());
+        return res;
     }
 
-    // 파일 이름 변경
-    private void renameReceiptAndMeta(Found found, String oldFileName, String newFileName) throws Exception {
-        Path oldReceipt = found.dir.resolve(oldFileName);
-        Path newReceipt = found.dir.resolve(newFileName);
+    /**
+     * 보관(archive)된 영수증 조회 (traceId 또는 fileName)
+     * 영수증 원문과 meta 를 함께 반환
+     */
+    public Map<String, Object> findArchived(String traceId, String fileName, String adminKey) {
+        String adminTraceId = MDC.get("traceId");
 
-        Path oldMeta = found.dir.resolve(oldFileName + ".meta.json");
-        Path newMeta = found.dir.resolve(newFileName + ".meta.json");
+        Map<String, Object> denied = checkAdminKey(adminTraceId, adminKey);
+        if (denied != null) return denied;
 
-        // 이미 존재하면 덮어쓰지 않도록 처리
-        if (Files.exists(newReceipt) || Files.exists(newMeta)) {
-            throw new IllegalStateException("Target filename already exists: " + newFileName);
+        if ((traceId == null || traceId.isBlank()) && (fileName == null || fileName.isBlank())) {
+            return Map.of(
+                    "traceId", adminTraceId,
+                    "success", false,
+                    "message", "traceId or fileName is required"
+            );
         }
 
-        if (Files.exists(oldReceipt)) {
-            Files.move(oldReceipt, newReceipt);
-        }
-        if (Files.exists(oldMeta)) {
-            Files.move(oldMeta, newMeta);
+        ReceiptArchive.Entry entry = receiptArchive.findByTraceId(traceId);
+        if (entry == null) entry = receiptArchive.findByFileName(fileName);
+        if (entry == null) {
+            return Map.of(
+                    "traceId", adminTraceId,
+                    "success", false,
+                    "message", "No archived receipt found."
+            );
         }
-    }
 
-    // outbox.sentDir로 이동
-    private void moveToSent(Path sourceDir, String fileName) throws Exception {
-        Path sentDir = outbox.sentDir();
-        Files.createDirectories(sentDir);
-
-        Path receipt = sourceDir.resolve(fileName);
-        Path meta = sourceDir.resolve(fileName + ".meta.json");
+        ReceiptArchive.Archived archived = receiptArchive.read(entry);
+
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("traceId", adminTraceId);
+        res.put("success", true);
+        res.put("archive", entry.archive());
+        res.put("fileName", entry.fileName());
+        res.put("receiptTraceId", entry.traceId());
+        res.put("meta", archived.meta());
+        res.put("receipt", archived.receipt());
+        return res;
+    }
 
-        if (Files.exists(receipt)) {
-            Files.move(receipt, sentDir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+    // 관리자 키 검사, 통과하면 null
+    private Map<String, Object> checkAdminKey(String adminTraceId, String adminKey) {
+        // 헤더 존재 여부 검사
+        if (adminKey == null || adminKey.isBlank()) {
+            return Map.of(
+                    "traceId", adminTraceId,
+                    "success", false,
+                    "message", "ADMİNKEY header is required"
+            );
         }
-        if (Files.exists(meta)) {
-            Files.move(meta, sentDir.resolve(fileName + ".meta.json"), StandardCopyOption.REPLACE_EXISTING);
+
+        // 관리자 키 일치 검사
+        if (!safeEquals(expectedAdminKey, adminKey)) {
+            return Map.of(
+                    "traceId", adminTraceId,
+                    "success", false,
+                    "message", "Unauthorized admin key"
+            );
         }
+        return null;
     }
 
     // 변경할 파일 이름 생성
@@ -233,25 +397,6 @@ public class AdminReceiptService {
         return "INSPIEN_" + newName + "_" + ts + ".txt";
     }
 
-    /**
-     * 요구사항 포맷
-     * ORDER_ID^USER_ID^ITEM_ID^APPLICANT_KEY^NAME^ADDRESS^ITEM_NAME^PRICE\n
-     */
-    private String buildReceiptContent(List<OrderDTO> rows) {
-        return rows.stream()
-                .map(r -> String.join("^",
-                        r.getOrderId(),
-                        r.getUserId(),
-                        r.getItemId(),
-                        r.getApplicantKey(),
-                        r.getName(),
-                        r.getAddress(),
-                        r.getItemName(),
-                        r.getPrice()
-                ))
-                .collect(Collectors.joining("\n")) + "\n";
-    }
-
 
     // 관리자 요청 XML 파싱 (OrderXmlParser와 같은 역할)
     private AdminReq parseAdminXml(String rawXml) {
@@ -297,25 +442,119 @@ public class AdminReceiptService {
         return null;
     }
 
-    private static class AdminReq {
-        String traceId;
-        String newParticipantName;
+    private record BulkItem(String traceId, String newParticipantName) {}
+
+    private static class BulkReq {
+        List<BulkItem> items = new ArrayList<>();
+        String from;
+        String to;
+        boolean allFailed;
+    }
+
+    // 지정한 traceId 먼저, 이어서 범위 / failed 전체 (traceId 기준 중복 제거)
+    private List<BulkItem> resolveBulkTargets(BulkReq req) {
+        Map<String, BulkItem> targets = new LinkedHashMap<>();
+        for (BulkItem item : req.items) {
+            targets.putIfAbsent(item.traceId(), item);
+        }
+
+        if (req.from != null || req.to != null) {
+            for (String location : List.of(ReceiptOutbox.PENDING, ReceiptOutbox.FAILED)) {
+                for (ReceiptOutbox.Located found : outbox.list(location)) {
+                    Matcher m = RECEIPT_NAME_PATTERN.matcher(found.meta().getFileName());
+                    if (!m.matches()) continue;
+                    String ts = m.group(2);
+                    if (req.from != null && ts.compareTo(req.from) < 0) continue;
+                    if (req.to != null && ts.compareTo(req.to) > 0) continue;
+                    addTarget(targets, found.meta());
+                }
+            }
+        }
+
+        if (req.allFailed) {
+            for (ReceiptOutbox.Located found : outbox.list(ReceiptOutbox.FAILED)) {
+                addTarget(targets, found.meta());
+            }
+        }
+
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("No target. Specify ITEM/TRACE_ID, FROM/TO or ALL_FAILED.");
+        }
+        if (targets.size() > bulkMaxItems) {
+            throw new IllegalArgumentException("Too many targets: " + targets.size() + " (max " + bulkMaxItems + ")");
+        }
+        return new ArrayList<>(targets.values());
     }
 
-    private static class Found {
-        final Path dir;        // pending 또는 failed (경로)
-        final String location; // "pending" 또는 "failed" (String값)
-        Path metaPath;
-        final ReceiptMetaDTO meta;
-        final String fileName;
-
-        Found(Path dir, String location, Path metaPath, ReceiptMetaDTO meta, String fileName) {
-            this.dir = dir;
-            this.location = location;
-            this.metaPath = metaPath;
-            this.meta = meta;
-            this.fileName = fileName;
+    private void addTarget(Map<String, BulkItem> targets, ReceiptMetaDTO meta) {
+        if (meta.getTraceId() == null || meta.getTraceId().isBlank()) return;
+        targets.putIfAbsent(meta.getTraceId(), new BulkItem(meta.getTraceId(), null));
+    }
+
+    // 일괄 재전송 요청 XML 파싱
+    private BulkReq parseBulkXml(String rawXml) {
+        if (rawXml == null || rawXml.isBlank()) {
+            throw new IllegalArgumentException("XML body is empty.");
         }
+
+        Document doc;
+        try {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            // XXE 방지
+            dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            dbf.setExpandEntityReferences(false);
+
+            doc = dbf.newDocumentBuilder()
+                    .parse(new java.io.ByteArrayInputStream(rawXml.trim().getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Admin XML parsing failed: " + e.getMessage(), e);
+        }
+
+        BulkReq req = new BulkReq();
+        NodeList itemNodes = doc.getElementsByTagName("ITEM");
+        for (int i = 0; i < itemNodes.getLength(); i++) {
+            Element item = (Element) itemNodes.item(i);
+            String traceId = childText(item, "TRACE_ID");
+            if (traceId == null) throw new IllegalArgumentException("ITEM without TRACE_ID");
+            req.items.add(new BulkItem(traceId, childText(item, "PARTICIPANT_NAME")));
+        }
+
+        // ITEM 없이 TRACE_ID 만 나열한 경우
+        Element root = doc.getDocumentElement();
+        for (Node n = root.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element e && "TRACE_ID".equals(e.getTagName())) {
+                String v = e.getTextContent() == null ? "" : e.getTextContent().trim();
+                if (!v.isEmpty()) req.items.add(new BulkItem(v, null));
+            }
+        }
+
+        req.from = receiptTime(childText(root, "FROM"), "FROM");
+        req.to = receiptTime(childText(root, "TO"), "TO");
+        String allFailed = childText(root, "ALL_FAILED");
+        req.allFailed = allFailed != null && (allFailed.equalsIgnoreCase("Y") || allFailed.equalsIgnoreCase("true"));
+        return req;
+    }
+
+    private String childText(Element parent, String tag) {
+        NodeList list = parent.getElementsByTagName(tag);
+        if (list.getLength() == 0) return null;
+        String v = list.item(0).getTextContent();
+        return v == null || v.trim().isEmpty() ? null : v.trim();
+    }
+
+    private String receiptTime(String v, String tag) {
+        if (v == null) return null;
+        if (!v.matches("^\\d{14}$")) {
+            throw new IllegalArgumentException(tag + " must be yyyyMMddHHmmss: " + v);
+        }
+        return v;
+    }
+
+    private static class AdminReq {
+        String traceId;
+        String newParticipantName;
     }
 
     private boolean safeEquals(String a, String b) {
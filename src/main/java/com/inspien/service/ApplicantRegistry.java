@@ -0,0 +1,116 @@
+package com.inspien.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 한 서버에서 여러 applicantKey 를 처리하기 위한 등록 정보
+ *
+ * - inspien.applicant-keys (쉼표 구분) 에 등록된 key 만 허용, 없으면 기존처럼 inspien.applicant-key 하나만 사용
+ * - 요청의 X-Applicant-Key 헤더로 key 를 결정하고, 헤더가 없으면 inspien.applicant-key (기본 key) 사용
+ * - key 별로 동시에 처리할 수 있는 주문 요청 수를 제한해서 한 applicant 가 DB 커넥션을 독점하지 못하게 함
+ */
+@Slf4j
+@Component
+public class ApplicantRegistry {
+
+    public static final String APPLICANT_KEY_HEADER = "X-Applicant-Key";
+
+    private final String defaultKey;
+    private final List<String> keys;
+    private final Map<String, Semaphore> bulkheads = new LinkedHashMap<>();
+
+    @Value("${inspien.tenant.acquire-timeout-ms:100}")
+    private long acquireTimeoutMs;
+
+    public ApplicantRegistry(@Value("${inspien.applicant-key:}") String defaultKey,
+                             @Value("${inspien.applicant-keys:}") String applicantKeys,
+                             @Value("${inspien.tenant.max-concurrent:8}") int maxConcurrent) {
+        List<String> list = new ArrayList<>();
+        for (String k : applicantKeys.split(",")) {
+            if (!k.isBlank() && !list.contains(k.trim())) list.add(k.trim());
+        }
+        if (!defaultKey.isBlank() && !list.contains(defaultKey.trim())) list.add(0, defaultKey.trim());
+        if (list.isEmpty()) {
+            throw new IllegalStateException("inspien.applicant-key or inspien.applicant-keys must be configured.");
+        }
+
+        this.defaultKey = defaultKey.isBlank() ? null : defaultKey.trim();
+        this.keys = Collections.unmodifiableList(list);
+        for (String k : list) {
+            bulkheads.put(k, new Semaphore(maxConcurrent));
+        }
+        log.info("Applicant keys registered. count={}, default={}", list.size(), this.defaultKey);
+    }
+
+    public List<String> keys() {
+        return keys;
+    }
+
+    /**
+     * 요청 헤더 값으로 applicantKey 결정
+     * 헤더가 없으면 기본 key, 등록되지 않은 key 면 예외
+     */
+    public String resolve(String headerValue) {
+        if (headerValue == null || headerValue.isBlank()) {
+            if (defaultKey == null) {
+                throw new IllegalArgumentException(APPLICANT_KEY_HEADER + " header is required.");
+            }
+            return defaultKey;
+        }
+
+        String key = headerValue.trim();
+        if (!bulkheads.containsKey(key)) {
+            throw new IllegalArgumentException("Unknown applicant key.");
+        }
+        return key;
+    }
+
+    /**
+     * applicantKey 별 동시 처리 자리 확보 (try-with-resources 로 반환)
+     * acquire-timeout-ms 안에 자리가 나지 않으면 TenantBusyException
+     */
+    public Permit enter(String applicantKey) {
+        Semaphore s = bulkheads.get(applicantKey);
+        try {
+            if (!s.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new TenantBusyException(applicantKey);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TenantBusyException(applicantKey);
+        }
+        return new Permit(s);
+    }
+
+    public static final class Permit implements AutoCloseable {
+        private final Semaphore semaphore;
+        private boolean released;
+
+        private Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            semaphore.release();
+        }
+    }
+
+    public static class TenantBusyException extends RuntimeException {
+        public TenantBusyException(String applicantKey) {
+            super("Too many concurrent requests for this applicant. Retry later.");
+        }
+    }
+}
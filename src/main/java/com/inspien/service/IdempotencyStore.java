@@ -0,0 +1,91 @@
+package com.inspien.service;
+
+import com.inspien.dto.IdempotencyRecordDTO;
+import com.inspien.dto.OrderBatch;
+import com.inspien.mapper.IdempotencyMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * X-Trace-Id 기준 주문 중복 처리 방지
+ *
+ * - 최근 요청은 메모리 LRU 에서 바로 확인 (DB 조회 없음)
+ * - LRU 에 없으면 ORDER_IDEMPOTENCY_TB 조회 (재기동 이후에도 유지)
+ * - 기록은 주문 insert 와 같은 트랜잭션에서 저장되므로 동시에 들어온 같은 요청은 PK 충돌로 걸러짐
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    private final IdempotencyMapper idempotencyMapper;
+    private final Map<String, IdempotencyRecordDTO> cache;
+
+    @Value("${inspien.idempotency.retention-days:7}")
+    private int retentionDays;
+
+    public IdempotencyStore(IdempotencyMapper idempotencyMapper,
+                            @Value("${inspien.idempotency.cache-size:10000}") int cacheSize) {
+        this.idempotencyMapper = idempotencyMapper;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecordDTO> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    // 이미 처리된 traceId 면 기록 반환, 없으면 null
+    public IdempotencyRecordDTO find(String traceId) {
+        synchronized (cache) {
+            IdempotencyRecordDTO hit = cache.get(traceId);
+            if (hit != null) return hit;
+        }
+
+        IdempotencyRecordDTO stored = idempotencyMapper.selectByTraceId(traceId);
+        if (stored != null) remember(stored);
+        return stored;
+    }
+
+    // insert 직전에 호출 (orderId 가 채워진 rows 기준)
+    public IdempotencyRecordDTO newRecord(String traceId, String applicantKey, String receiptFileName) {
+        IdempotencyRecordDTO record = new IdempotencyRecordDTO();
+        record.setTraceId(traceId);
+        record.setApplicantKey(applicantKey);
+        record.setReceiptFileName(receiptFileName);
+        return record;
+    }
+
+    public void remember(IdempotencyRecordDTO record) {
+        synchronized (cache) {
+            cache.put(record.getTraceId(), record);
+        }
+    }
+
+    public static String joinOrderIds(OrderBatch batch) {
+        return batch.joinOrderIds();
+    }
+
+    public static List<String> splitOrderIds(IdempotencyRecordDTO record) {
+        return Arrays.asList(record.getOrderIds().split(","));
+    }
+
+    // 보관 기간이 지난 기록 정리
+    @Scheduled(fixedDelayString = "${inspien.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        try {
+            int deleted = idempotencyMapper.deleteOlderThan(retentionDays);
+            if (deleted > 0) {
+                log.info("Idempotency records purged. deleted={}, retentionDays={}", deleted, retentionDays);
+            }
+        } catch (Exception e) {
+            log.error("Idempotency purge failed: {}", e.getMessage(), e);
+        }
+    }
+}
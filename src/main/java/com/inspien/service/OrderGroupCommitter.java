@@ -0,0 +1,319 @@
+package com.inspien.service;
+
+import com.inspien.dto.IdempotencyRecordDTO;
+import com.inspien.dto.OrderBatch;
+import com.inspien.infra.BatchSqlSession;
+import com.inspien.mapper.IdempotencyMapper;
+import com.inspien.mapper.OrderMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 주문 insert 그룹 커밋 (inspien.order.group-commit.enabled=true 일 때만 동작)
+ *
+ * 짧은 시간(window) 안에 들어온 여러 주문 요청을 모아서 ORDER_ID 할당 1회 + 트랜잭션 1개로 처리
+ * 요청 스레드는 자기 주문이 커밋될 때까지 대기하다가 각자의 orderId 가 채워진 채로 돌아감
+ *
+ * - 요청마다 savepoint 를 두고 insert 하므로, 특정 요청의 데이터가 잘못되었으면 그 요청만 실패 처리하고 나머지는 커밋
+ * - 실패한 요청 몫으로 할당했던 ID 는 다음 요청이 이어서 사용 (그룹 끝에서 남은 ID 만 버려짐)
+ *   단, ORDER_ID 충돌이면 블록을 버리고 같은 applicantKey 의 남은 요청은 새로 할당받은 ID 사용
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderGroupCommitter {
+
+    private static final int FLUSH_SIZE = 200;
+
+    private final OrderIdAllocator orderIdAllocator;
+    private final BatchSqlSession batchSqlSession;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${inspien.order.group-commit.enabled:false}")
+    private boolean enabled;
+
+    // 첫 요청 이후 다른 요청을 기다리는 최대 시간
+    @Value("${inspien.order.group-commit.window-ms:3}")
+    private long windowMs;
+
+    @Value("${inspien.order.group-commit.max-docs:32}")
+    private int maxDocs;
+
+    @Value("${inspien.order.group-commit.max-rows:2000}")
+    private int maxRows;
+
+    // 요청 스레드가 커밋 결과를 기다리는 최대 시간 (DB 장애 등으로 worker 가 멈춰도 요청 스레드는 돌아오도록)
+    @Value("${inspien.order.group-commit.wait-timeout-ms:30000}")
+    private long waitTimeoutMs;
+
+    private final BlockingQueue<Member> queue = new LinkedBlockingQueue<>();
+    // running 확인 + queue 추가와 종료 시 running 변경을 묶음 (종료 후 queue 에 들어가서 아무도 처리하지 않는 요청 방지)
+    private final Object lifecycle = new Object();
+    private volatile boolean running;
+    private Thread worker;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) return;
+
+        synchronized (lifecycle) {
+            running = true;
+        }
+        worker = new Thread(this::runLoop, "order-group-commit");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (worker == null) return;
+
+        synchronized (lifecycle) {
+            running = false;
+        }
+        worker.interrupt();
+        try {
+            worker.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Member m;
+        while ((m = queue.poll()) != null) {
+            m.future.completeExceptionally(new IllegalStateException("Order group commit is shutting down."));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 그룹 커밋에 참여하고 커밋될 때까지 대기
+     * 성공하면 batch 의 orderId 가 채워져 있고, 실패하면 해당 요청의 예외가 그대로 던져짐
+     * record 가 있으면 같은 savepoint 안에서 중복 방지 기록도 저장
+     *
+     * wait-timeout-ms 안에 결과가 없으면 예외
+     * 아직 worker 가 가져가지 않은 요청이면 queue 에서 빼므로 커밋되지 않은 것이 확실하고,
+     * 이미 처리 중이었다면 커밋 여부를 알 수 없음 (X-Trace-Id 로 다시 요청하면 중복 없이 결과 확인 가능)
+     */
+    public void commit(String applicantKey, OrderBatch batch, IdempotencyRecordDTO record) {
+        Member m = new Member(applicantKey, batch, record);
+        synchronized (lifecycle) {
+            if (!running) {
+                throw new IllegalStateException("Order group commit is not running.");
+            }
+            queue.add(m);
+        }
+
+        try {
+            m.future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(queue.remove(m)
+                    ? "Order group commit timed out before the order was written."
+                    : "Order group commit timed out. The order may still be committed.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queue.remove(m);
+            throw new IllegalStateException("Interrupted while waiting for order group commit.", e);
+        }
+    }
+
+    private void runLoop() {
+        while (running) {
+            List<Member> group = new ArrayList<>();
+            try {
+                Member first = queue.take();
+                group.add(first);
+                int rowCount = first.batch.size();
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (group.size() < maxDocs && rowCount < maxRows) {
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0) break;
+
+                    Member next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    group.add(next);
+                    rowCount += next.batch.size();
+                }
+            } catch (InterruptedException e) {
+                // 종료 중: 이미 꺼낸 요청은 마저 처리
+                Thread.currentThread().interrupt();
+            }
+
+            if (!group.isEmpty()) {
+                try {
+                    commitGroup(group);
+                } catch (Exception e) {
+                    log.error("Order group commit failed. members={}, msg={}", group.size(), e.getMessage(), e);
+                    for (Member m : group) m.future.completeExceptionally(e);
+                }
+            }
+            if (Thread.currentThread().isInterrupted()) break;
+        }
+    }
+
+    private void commitGroup(List<Member> group) {
+        // applicantKey 별로 필요한 ID 를 한 번에 할당
+        Map<String, Integer> counts = new HashMap<>();
+        for (Member m : group) {
+            counts.merge(m.applicantKey, m.batch.size(), Integer::sum);
+        }
+
+        Map<String, IdCursor> cursors = new HashMap<>();
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            try {
+                cursors.put(e.getKey(), new IdCursor(orderIdAllocator.allocate(e.getKey(), e.getValue())));
+            } catch (RuntimeException ex) {
+                // ID 할당 실패한 applicantKey 의 요청들만 실패
+                for (Member m : group) {
+                    if (m.applicantKey.equals(e.getKey())) m.future.completeExceptionally(ex);
+                }
+            }
+        }
+
+        List<Member> committed = new ArrayList<>();
+        Map<Member, RuntimeException> rejected = new HashMap<>();
+        Map<String, RuntimeException> reallocFailures = new HashMap<>();
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+
+        try {
+            tx.executeWithoutResult(status -> {
+                OrderMapper batchMapper = batchSqlSession.getMapper(OrderMapper.class);
+
+                for (int idx = 0; idx < group.size(); idx++) {
+                    Member m = group.get(idx);
+                    IdCursor cursor = cursors.get(m.applicantKey);
+                    if (cursor == null) {
+                        // 그룹 도중 ID 재할당에 실패한 applicantKey
+                        RuntimeException allocFail = reallocFailures.get(m.applicantKey);
+                        if (allocFail != null) rejected.put(m, allocFail);
+                        continue;
+                    }
+
+                    Object savepoint = status.createSavepoint();
+                    boolean ordersFlushed = false;
+                    try {
+                        for (int i = 0; i < m.batch.size(); i++) {
+                            m.batch.setOrderId(i, cursor.ids.get(cursor.pos + i));
+                            batchMapper.insertOrder(m.batch.row(i));
+                            if ((i + 1) % FLUSH_SIZE == 0) {
+                                batchSqlSession.flush();
+                            }
+                        }
+                        // 주문 insert 를 먼저 보내서, 중복 키 오류가 ORDER_TB / ORDER_IDEMPOTENCY_TB 중 어느 쪽인지 구분
+                        batchSqlSession.flush();
+                        ordersFlushed = true;
+
+                        if (m.record != null) {
+                            m.record.setOrderIds(IdempotencyStore.joinOrderIds(m.batch));
+                            batchSqlSession.getMapper(IdempotencyMapper.class).insertRecord(m.record);
+                        }
+                        batchSqlSession.flush();
+                        status.releaseSavepoint(savepoint);
+
+                        cursor.pos += m.batch.size();
+                        committed.add(m);
+
+                    } catch (RuntimeException e) {
+                        // 이 요청만 분리해서 실패 처리
+                        status.rollbackToSavepoint(savepoint);
+                        if (e instanceof DuplicateKeyException && !ordersFlushed) {
+                            // ORDER_ID 충돌: 블록이 다른 노드에 회수되었거나 수동 데이터와 겹친 것
+                            // 같은 블록의 남은 ID 도 충돌할 수 있으므로 블록을 버리고 남은 요청은 새로 할당받은 ID 로 처리
+                            log.error("ORDER_ID collision detected. Discarding current block. applicantKey={}", m.applicantKey);
+                            orderIdAllocator.discard(m.applicantKey);
+                            reallocate(group, idx, m.applicantKey, cursors, reallocFailures);
+                        }
+                        // 데이터 오류(또는 중복 요청)면 사용하려던 ID 는 다음 요청이 이어서 사용
+                        log.warn("Order group member rejected. applicantKey={}, rows={}, msg={}",
+                                m.applicantKey, m.batch.size(), e.getMessage());
+                        rejected.put(m, e);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // 커밋 자체가 실패하면 savepoint 까지 통과했던 요청도 모두 실패, 할당받은 ID 는 모두 반환
+            cursors.forEach((key, cursor) -> orderIdAllocator.release(key, cursor.ids));
+            for (Member m : committed) m.future.completeExceptionally(e);
+            rejected.forEach((m, ex) -> m.future.completeExceptionally(ex));
+            throw e;
+        }
+
+        // 뒤쪽 요청들이 실패해서 남은 ID 반환 (다음 그룹이 이어서 사용)
+        cursors.forEach((key, cursor) -> {
+            if (cursor.pos < cursor.ids.size()) {
+                orderIdAllocator.release(key, cursor.ids.subList(cursor.pos, cursor.ids.size()));
+            }
+        });
+
+        // 실패한 요청도 커밋 이후에 알림 (같은 traceId 로 먼저 커밋된 요청을 조회할 수 있도록)
+        for (Member m : committed) m.future.complete(null);
+        rejected.forEach((m, e) -> m.future.completeExceptionally(e));
+
+        log.debug("Order group committed. members={}, committed={}", group.size(), committed.size());
+    }
+
+    // group[failedIdx] 이후 같은 applicantKey 요청들이 쓸 ID 를 새 블록에서 다시 할당
+    private void reallocate(List<Member> group, int failedIdx, String applicantKey,
+                            Map<String, IdCursor> cursors, Map<String, RuntimeException> reallocFailures) {
+        int remaining = 0;
+        for (int j = failedIdx + 1; j < group.size(); j++) {
+            Member next = group.get(j);
+            if (next.applicantKey.equals(applicantKey)) remaining += next.batch.size();
+        }
+
+        cursors.remove(applicantKey);
+        if (remaining == 0) return;
+        try {
+            cursors.put(applicantKey, new IdCursor(orderIdAllocator.allocate(applicantKey, remaining)));
+        } catch (RuntimeException ex) {
+            reallocFailures.put(applicantKey, ex);
+        }
+    }
+
+    private static class Member {
+        final String applicantKey;
+        final OrderBatch batch;
+        final IdempotencyRecordDTO record;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Member(String applicantKey, OrderBatch batch, IdempotencyRecordDTO record) {
+            this.applicantKey = applicantKey;
+            this.batch = batch;
+            this.record = record;
+        }
+    }
+
+    private static class IdCursor {
+        final List<String> ids;
+        int pos;
+
+        IdCursor(List<String> ids) {
+            this.ids = ids;
+        }
+    }
+}
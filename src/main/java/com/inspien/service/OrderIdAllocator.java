@@ -0,0 +1,331 @@
+package com.inspien.service;
+
+import com.inspien.dto.OrderIdBlockDTO;
+import com.inspien.mapper.OrderIdBlockMapper;
+import com.inspien.mapper.OrderMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ORDER_ID 블록 할당기
+ *
+ * 요청마다 MAX(ORDER_ID)를 조회하고 PK 충돌 시 재시도하던 방식 대신,
+ * 노드별로 연속된 ID 범위(블록)를 DB에서 임대받아 메모리에서 나눠줌 -> 동시 요청끼리 충돌/재시도 없음
+ *
+ * - 블록 임대 정보는 ORDER_ID_BLOCK_TB 에 저장하고 LEASE_UNTIL 로 주기적으로 연장
+ * - 정상 종료 시 남은 범위를 반납(OWNER = NULL), 비정상 종료 시 임대 만료 후 다른 노드가 회수
+ * - 회수할 때는 해당 범위에서 실제로 사용된 최대 ORDER_ID 이후부터만 다시 사용
+ * - 문서 하나의 ID 는 항상 한 블록에서 연속으로 할당 (영수증 재생성 시 ORDER_ID 순서 = 원래 행 순서)
+ *   현재 블록에 남은 범위가 모자라면 남은 범위는 DB 에 반납해서 더 작은 문서가 나중에 사용
+ * - 트랜잭션이 롤백되어 쓰지 않은 ID 는 release 로 돌려받음 (블록 끝에서 할당한 범위면 그대로 다시 사용)
+ *   applicantKey 마다 ID 가 26,000개뿐이므로 돌려받지 못한 ID 는 경고 로그에 누적 개수를 남김
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderIdAllocator {
+
+    // A000 ~ Z999
+    public static final int ID_SPACE = 26 * 1000;
+
+    private final OrderIdBlockMapper blockMapper;
+    private final OrderMapper orderMapper;
+    private final PlatformTransactionManager txManager;
+
+    @Value("${inspien.order-id.block-size:100}")
+    private int blockSize;
+
+    @Value("${inspien.order-id.lease-seconds:300}")
+    private int leaseSeconds;
+
+    @Value("${inspien.order-id.node-id:}")
+    private String nodeId;
+
+    // applicantKey 별로 현재 사용 중인 블록
+    private final Map<String, Holder> holders = new ConcurrentHashMap<>();
+    private final AtomicLong burned = new AtomicLong();
+
+    /**
+     * count 개의 연속된 ORDER_ID 할당 (항상 한 블록 안에서, 오름차순)
+     * 현재 블록에 남은 범위가 모자라면 남은 범위를 반납하고 count 이상 남은 블록을 임대
+     */
+    public List<String> allocate(String applicantKey, int count) {
+        Holder holder = holders.computeIfAbsent(applicantKey, k -> new Holder());
+        List<String> ids = new ArrayList<>(count);
+
+        synchronized (holder) {
+            Block b = holder.block;
+            if (b == null || b.end - b.next < count) {
+                if (b != null) retire(applicantKey, b);
+                holder.block = null;
+                b = lease(applicantKey, count);
+                holder.block = b;
+            }
+            while (ids.size() < count) {
+                ids.add(indexToId(b.next++));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 할당받았지만 사용하지 않은 ID 반환 (트랜잭션 롤백 등)
+     * ids 는 allocate 결과의 연속된 일부, 현재 블록의 마지막 할당분이면 다음 할당에서 그대로 다시 사용
+     * 그 사이 다른 요청이 뒤의 ID 를 이미 가져갔거나 블록이 바뀌었으면 돌려받을 수 없음 (버려진 개수만 기록)
+     */
+    public void release(String applicantKey, List<String> ids) {
+        if (ids == null || ids.isEmpty()) return;
+
+        int first = toIndex(ids.get(0));
+        int last = toIndex(ids.get(ids.size() - 1));
+        Holder holder = holders.get(applicantKey);
+        if (holder != null) {
+            synchronized (holder) {
+                Block b = holder.block;
+                if (b != null && b.next == last + 1 && first >= b.start) {
+                    b.next = first;
+                    return;
+                }
+            }
+        }
+
+        long total = burned.addAndGet(ids.size());
+        log.warn("ORDER_ID range could not be reused. applicantKey={}, range={}~{}, burnedTotal={}",
+                applicantKey, ids.get(0), ids.get(ids.size() - 1), total);
+    }
+
+    // 시작 이후 돌려받지 못하고 버려진 ID 개수 (모니터링용)
+    public long burnedCount() {
+        return burned.get();
+    }
+
+    /**
+     * 현재 블록을 더 이상 쓰지 않음 (임대를 잃었거나 PK 충돌이 난 경우)
+     * 다음 allocate 에서 새 블록을 임대받음
+     */
+    public void discard(String applicantKey) {
+        Holder holder = holders.get(applicantKey);
+        if (holder == null) return;
+        synchronized (holder) {
+            if (holder.block != null) {
+                log.warn("ORDER_ID block discarded. applicantKey={}, next={}, end={}",
+                        applicantKey, holder.block.next, holder.block.end);
+            }
+            holder.block = null;
+        }
+    }
+
+    // 임대 연장, 연장이 안 되면(만료되어 다른 노드가 회수) 블록을 버림
+    @Scheduled(fixedDelayString = "${inspien.order-id.renew-interval-ms:60000}")
+    public void renewLeases() {
+        holders.forEach((applicantKey, holder) -> {
+            synchronized (holder) {
+                Block b = holder.block;
+                if (b == null) return;
+                try {
+                    Integer renewed = newTx().execute(status ->
+                            blockMapper.renewLease(applicantKey, b.end, owner(), leaseSeconds));
+                    if (renewed == null || renewed == 0) {
+                        log.warn("ORDER_ID block lease lost. applicantKey={}, end={}", applicantKey, b.end);
+                        holder.block = null;
+                    }
+                } catch (Exception e) {
+                    log.error("ORDER_ID block lease renew failed. applicantKey={}, msg={}", applicantKey, e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    // 정상 종료 시 남은 범위 반납
+    @PreDestroy
+    public void releaseAll() {
+        holders.forEach((applicantKey, holder) -> {
+            synchronized (holder) {
+                Block b = holder.block;
+                if (b == null) return;
+                try {
+                    newTx().executeWithoutResult(status -> {
+                        if (b.next >= b.end) {
+                            blockMapper.deleteBlock(applicantKey, b.end, owner());
+                        } else {
+                            blockMapper.releaseBlock(applicantKey, b.end, b.next, owner());
+                        }
+                    });
+                    log.info("ORDER_ID block released. applicantKey={}, next={}, end={}", applicantKey, b.next, b.end);
+                } catch (Exception e) {
+                    log.error("ORDER_ID block release failed. applicantKey={}, msg={}", applicantKey, e.getMessage(), e);
+                }
+                holder.block = null;
+            }
+        });
+    }
+
+    /**
+     * 남은 범위가 minSize 이상인 새 블록 임대 (주문 insert 트랜잭션과 별개로 즉시 커밋)
+     * 1) 반납/만료된 블록이 있으면 회수
+     * 2) 없으면 ORDER_ID_SEQ_TB 에서 다음 범위를 잘라서 새 블록 생성 (block-size 보다 큰 문서면 문서 크기만큼)
+     */
+    private Block lease(String applicantKey, int minSize) {
+        Block b = newTx().execute(status -> {
+            while (true) {
+                List<OrderIdBlockDTO> stale = blockMapper.selectReclaimableBlockForUpdate(
+                        applicantKey, minSize, new RowBounds(0, 1));
+                if (!stale.isEmpty()) {
+                    Block reclaimed = reclaim(applicantKey, stale.get(0), minSize);
+                    if (reclaimed != null) return reclaimed;
+                    continue;
+                }
+
+                Integer next = blockMapper.selectNextIndexForUpdate(applicantKey);
+                if (next == null) {
+                    // 최초 1회: 기존 데이터의 MAX(ORDER_ID) 이후부터 시작
+                    next = nextIndexOf(orderMapper.selectMaxOrderId(applicantKey));
+                    try {
+                        blockMapper.insertNextIndex(applicantKey, next);
+                    } catch (DuplicateKeyException dup) {
+                        continue; // 다른 노드가 먼저 생성함, 다시 조회
+                    }
+                }
+
+                if (next + minSize > ID_SPACE) {
+                    throw new IllegalStateException("ORDER_ID range exceeded (A000~Z999).");
+                }
+
+                int end = Math.min(ID_SPACE, next + Math.max(blockSize, minSize));
+                blockMapper.updateNextIndex(applicantKey, end);
+
+                OrderIdBlockDTO block = new OrderIdBlockDTO();
+                block.setApplicantKey(applicantKey);
+                block.setBlockStart(next);
+                block.setBlockEnd(end);
+                block.setOwner(owner());
+                blockMapper.insertBlock(block, leaseSeconds);
+
+                return new Block(next, end);
+            }
+        });
+
+        log.info("ORDER_ID block leased. applicantKey={}, range={}~{}", applicantKey, indexToId(b.next), indexToId(b.end - 1));
+        return b;
+    }
+
+    /**
+     * 회수한 블록에서 실제로 사용된 ID 이후만 다시 사용
+     * 남은 게 없으면 삭제, minSize 보다 적게 남았으면 사용된 앞부분만 잘라두고 null (다음 후보 조회)
+     */
+    private Block reclaim(String applicantKey, OrderIdBlockDTO stale, int minSize) {
+        String usedMax = blockMapper.selectMaxOrderIdBetween(applicantKey,
+                indexToId(stale.getBlockStart()), indexToId(stale.getBlockEnd() - 1));
+        int start = Math.max(stale.getBlockStart(), nextIndexOf(usedMax));
+
+        if (start >= stale.getBlockEnd()) {
+            blockMapper.deleteBlock(applicantKey, stale.getBlockEnd(), null);
+            return null;
+        }
+        if (stale.getBlockEnd() - start < minSize) {
+            blockMapper.trimBlock(applicantKey, stale.getBlockEnd(), start);
+            return null;
+        }
+
+        String previousOwner = stale.getOwner();
+        stale.setBlockStart(start);
+        stale.setOwner(owner());
+        blockMapper.claimBlock(stale, leaseSeconds);
+
+        log.info("ORDER_ID block reclaimed. applicantKey={}, previousOwner={}, range={}~{}",
+                applicantKey, previousOwner, indexToId(start), indexToId(stale.getBlockEnd() - 1));
+        return new Block(start, stale.getBlockEnd());
+    }
+
+    /**
+     * 더 쓰지 않는 블록 정리 (실패해도 임대 만료 후 회수 단계에서 정리됨)
+     * 다 썼으면 삭제, 남은 범위가 있으면 반납해서 다른 요청(다른 노드 포함)이 회수해서 사용
+     */
+    private void retire(String applicantKey, Block b) {
+        try {
+            newTx().executeWithoutResult(status -> {
+                if (b.next >= b.end) {
+                    blockMapper.deleteBlock(applicantKey, b.end, owner());
+                } else {
+                    blockMapper.releaseBlock(applicantKey, b.end, b.next, owner());
+                }
+            });
+        } catch (Exception e) {
+            log.warn("ORDER_ID block retire failed. applicantKey={}, end={}, msg={}", applicantKey, b.end, e.getMessage());
+        }
+    }
+
+    private TransactionTemplate newTx() {
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return tx;
+    }
+
+    private String owner() {
+        if (nodeId == null || nodeId.isBlank()) {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                host = "unknown";
+            }
+            // 재기동 시 이전 프로세스의 블록과 구분되도록 pid 포함
+            nodeId = host + "-" + ProcessHandle.current().pid();
+        }
+        return nodeId;
+    }
+
+    private int nextIndexOf(String orderId) {
+        if (orderId == null || orderId.isBlank()) return 0;
+        return toIndex(orderId.trim()) + 1;
+    }
+
+    // 총 26,000가지의 ID 중 해당 orderId가 몇 번째(index기준) ID인지 판별 (숫자로 계산해야 쉬움)
+    static int toIndex(String orderId) {
+        if (!orderId.matches("^[A-Z]\\d{3}$")) {
+            throw new IllegalStateException("Invalid ORDER_ID format: " + orderId);
+        }
+        char letter = orderId.charAt(0);
+        int num = Integer.parseInt(orderId.substring(1));
+        return (letter - 'A') * 1000 + num;
+    }
+
+    // 0~25999의 index값을 id로 바꿔줌
+    static String indexToId(int idx) {
+        char letter = (char) ('A' + (idx / 1000));
+        int num = idx % 1000;
+        return String.format("%c%03d", letter, num);
+    }
+
+    private static class Holder {
+        Block block;
+    }
+
+    private static class Block {
+        final int start;
+        int next;
+        final int end;
+
+        Block(int next, int end) {
+            this.start = next;
+            this.next = next;
+            this.end = end;
+        }
+    }
+}
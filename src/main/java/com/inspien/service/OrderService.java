@@ -1,9 +1,14 @@
 package com.inspien.service;
 
-import com.inspien.dto.OrderDTO;
+import com.inspien.dto.IdempotencyRecordDTO;
+import com.inspien.dto.OrderBatch;
+import com.inspien.dto.OrderHeaderDTO;
+import com.inspien.dto.OrderItemDTO;
+import com.inspien.infra.BatchSqlSession;
 import com.inspien.infra.ReceiptMetaDTO;
 import com.inspien.infra.ReceiptOutbox;
-import com.inspien.infra.SftpUploader;
+import com.inspien.infra.ReceiptWriter;
+import com.inspien.mapper.IdempotencyMapper;
 import com.inspien.mapper.OrderMapper;
 import com.inspien.util.OrderPreviewMapper;
 import com.inspien.util.OrderXmlParser;
@@ -16,34 +21,31 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.io.Reader;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class OrderService {
 
-    private final OrderMapper orderMapper;
+    private final OrderIdAllocator orderIdAllocator;
+    private final BatchSqlSession batchSqlSession;
+    private final OrderGroupCommitter groupCommitter;
     private final PlatformTransactionManager txManager;
 
     private final OrderXmlParser xmlParser = new OrderXmlParser();
     private final OrderPreviewMapper previewMapper = new OrderPreviewMapper();
 
-    @Value("${inspien.applicant-key}")
-    private String applicantKey;
 
-    private static final int MAX_RETRY = 5;
     private static final int CHUNK_SIZE = 200;
 
 
-    private final SftpUploader sftpUploader;
+    private final ReceiptDeliveryService receiptDeliveryService;
+    private final IdempotencyStore idempotencyStore;
+    private final PreviewTokenCache previewTokenCache;
 
     @Value("${inspien.receipt.participant-name}")
     private String participantName;
@@ -54,28 +56,58 @@ public class OrderService {
 
     private final ReceiptOutbox receiptOutbox;
 
-    @Value("${inspien.sftp.retry.maxAttempts:10}")
-    private int maxAttempts;
 
 
-
-    public Map<String, Object> create(String xml) {
+    /**
+     * applicantKey : 요청 헤더(X-Applicant-Key)로 결정된 key (ApplicantRegistry.resolve)
+     * idempotencyKey : 요청자가 직접 보낸 X-Trace-Id (없으면 null)
+     * 같은 key 로 이미 처리된 주문이 있으면 ORDER_TB / SFTP 를 건드리지 않고 처음 응답을 다시 돌려줌
+     * previewToken : preview 응답으로 받은 token (없으면 null)
+     * 같은 XML 에 대해 발급된 token 이면 파싱/검증 없이 preview 때 만든 batch 사용
+     */
+    public Map<String, Object> create(String applicantKey, String xml, String idempotencyKey, String previewToken) {
         String traceId = MDC.get("traceId");
 
-        var parsed = xmlParser.parse(xml);
+        if (idempotencyKey != null) {
+            IdempotencyRecordDTO prev = idempotencyStore.find(idempotencyKey);
+            if (prev != null) return replayResponse(prev, applicantKey);
+        }
+
+        OrderBatch batch = previewToken == null
+                ? null
+                : previewTokenCache.take(previewToken, xml, applicantKey);
 
-        // 테스트에서 사용했던 toOrderRows 재사용
-        List<OrderDTO> rows = previewMapper.toOrderRows(parsed.headers(), parsed.items(), applicantKey);
+        if (batch == null) {
+            var parsed = xmlParser.parse(xml);
 
-        insertWithId(rows);
+            // preview 와 같은 검증/변환 사용
+            batch = previewMapper.toBatch(parsed.headers(), parsed.items(), applicantKey);
+        }
 
         String receiptFileName = buildReceiptFileName();
 
+        IdempotencyRecordDTO record = idempotencyKey == null
+                ? null
+                : idempotencyStore.newRecord(idempotencyKey, applicantKey, receiptFileName);
+
+        try {
+            insertWithId(batch, record);
+        } catch (DuplicateKeyException dup) {
+            // 같은 key 의 요청이 동시에 들어와 먼저 커밋된 경우
+            if (record != null) {
+                IdempotencyRecordDTO prev = idempotencyStore.find(idempotencyKey);
+                if (prev != null) return replayResponse(prev, applicantKey);
+            }
+            throw dup;
+        }
+
+        if (record != null) idempotencyStore.remember(record);
+
         ReceiptMetaDTO meta = new ReceiptMetaDTO();
         meta.setTraceId(traceId);
         meta.setApplicantKey(applicantKey);
         meta.setFileName(receiptFileName);
-        meta.setOrderIds(rows.stream().map(OrderDTO::getOrderId).collect(Collectors.toList()));
+        meta.setOrderIds(batch.orderIds());
         meta.setAttempts(0);
         meta.setNextAttemptAtEpochMs(Long.MAX_VALUE); 
         // 처음에는 재시도 시간을 크게 잡아서 재시도 스케줄러가 작동하지 않게 설정
@@ -87,167 +119,306 @@ public class OrderService {
         boolean isReceiptCreated = false;
 
         try {
-            String content = buildReceiptContent(rows);
-            receiptOutbox.writeReceiptToPending(receiptFileName, content);
+            receiptOutbox.writeReceiptToPending(receiptFileName, batch);
             isReceiptCreated = true;
         } catch (Exception e) {
             // 파일 생성 실패해도 meta가 있으므로 스케줄러가 DB로 재생성 가능
             meta.setAttempts(1);
             meta.setLastError("RECEIPT_CREATE_FAIL: " + e.getMessage());
             meta.setNextAttemptAtEpochMs(System.currentTimeMillis());
-            receiptOutbox.updateMeta(receiptOutbox.metaPathInPending(receiptFileName), meta);
+            receiptOutbox.updateMeta(meta);
 
             log.error("Receipt create failed. Will retry via scheduler. traceId={}, fileName={}, msg={}",
                     traceId, receiptFileName, e.getMessage(), e);
         }
 
-        boolean sftpUploaded = false;
+        if (isReceiptCreated && receiptDeliveryService.isAsync()) {
+            receiptDeliveryService.deliverAsync(traceId, meta);
+            log.info("Receipt prepared. traceId={}, fileName={}, delivery=async", traceId, receiptFileName);
+            return acceptedResponse(traceId, receiptFileName, meta.getOrderIds(), null);
+        }
 
-        if (isReceiptCreated) {
-            Path pendingFile = receiptOutbox.receiptPathInPending(receiptFileName);
+        boolean sftpUploaded = isReceiptCreated && receiptDeliveryService.deliver(traceId, meta);
 
-            try {
-                sftpUploader.upload(pendingFile, receiptFileName);
-                sftpUploaded = true;
+        log.info("Receipt prepared. traceId={}, fileName={}, isReceiptCreated={}, sftpUploaded={}",
+                traceId, receiptFileName, isReceiptCreated, sftpUploaded);
+
+        return response(traceId, receiptFileName, meta.getOrderIds(), sftpUploaded, null);
+    }
 
-                // 성공하면 sent로 이동
-                receiptOutbox.markSent(receiptFileName);
+    /**
+     * 대용량 문서용 스트리밍 입력
+     * 요청 본문을 읽는 동안 ITEM 을 하나씩 검증/변환하고, CHUNK_SIZE 건이 모일 때마다 ORDER_TB 에 insert(커밋)
+     * 커밋된 chunk 는 곧바로 영수증 .tmp 파일에 이어서 기록되므로 문서 크기와 관계없이 메모리 사용량이 일정함
+     *
+     * - HEADER 는 해당 HEADER 를 참조하는 ITEM 보다 먼저 나와야 함
+     * - 중간에 검증 오류가 나면 이미 커밋된 chunk 는 유지되고, 해당 건들에 대해서만 영수증을 전송함
+     */
+    public Map<String, Object> createStreaming(String applicantKey, Reader body) {
+        String traceId = MDC.get("traceId");
+        String receiptFileName = buildReceiptFileName();
 
-            } catch (Exception e) {
-                // SFTP 업로드 실패하면 pending에 남기고 스케줄러가 재시도
-                int nextAttempts = meta.getAttempts() + 1;
-                meta.setAttempts(nextAttempts);
-                meta.setLastError("SFTP_FAIL: " + e.getMessage());
+        // meta 를 먼저 만들어두고 chunk 가 커밋될 때마다 orderIds 갱신 (중간에 죽어도 스케줄러가 DB로 재생성 가능)
+        ReceiptMetaDTO meta = new ReceiptMetaDTO();
+        meta.setTraceId(traceId);
+        meta.setApplicantKey(applicantKey);
+        meta.setFileName(receiptFileName);
+        meta.setOrderIds(new ArrayList<>());
+        meta.setAttempts(0);
+        meta.setNextAttemptAtEpochMs(Long.MAX_VALUE);
+        meta.setLastError(null);
 
-                if (nextAttempts >= maxAttempts) {
-                    receiptOutbox.updateMeta(receiptOutbox.metaPathInPending(receiptFileName), meta);
-                    receiptOutbox.markFailed(receiptFileName);
+        receiptOutbox.writeMetaToPending(meta);
 
-                    log.error("SFTP final-fail. moved to failed. traceId={}, fileName={}, attempts={}, msg={}",
-                            traceId, receiptFileName, nextAttempts, e.getMessage(), e);
+        StreamingIngest ingest = new StreamingIngest(applicantKey, meta);
+        RuntimeException failure = null;
 
-                } else {
-                    meta.setNextAttemptAtEpochMs(System.currentTimeMillis());
-                    receiptOutbox.updateMeta(receiptOutbox.metaPathInPending(receiptFileName), meta);
+        try {
+            xmlParser.parse(body, ingest);
+            ingest.flush();
+            ingest.checkComplete();
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            ingest.closeReceipt();
+        }
 
-                    log.error("SFTP upload failed. Will retry via scheduler. traceId={}, fileName={}, attempts={}, msg={}",
-                            traceId, receiptFileName, nextAttempts, e.getMessage(), e);
-                }
-            }
+        if (meta.getOrderIds().isEmpty()) {
+            // 저장된 주문이 없으면 영수증도 필요 없음
+            receiptOutbox.discardPending(receiptFileName);
+            throw failure != null ? failure : new IllegalArgumentException("No ITEM elements found.");
         }
 
-        log.info("Receipt prepared. traceId={}, fileName={}, isReceiptCreated={}, sftpUploaded={}",
-                traceId, receiptFileName, isReceiptCreated, sftpUploaded);
+        boolean isReceiptCreated = ingest.receiptFailure == null;
+
+        if (isReceiptCreated) {
+            receiptOutbox.commitReceiptInPending(receiptFileName);
+        } else {
+            meta.setAttempts(1);
+            meta.setLastError("RECEIPT_CREATE_FAIL: " + ingest.receiptFailure.getMessage());
+            meta.setNextAttemptAtEpochMs(System.currentTimeMillis());
+            receiptOutbox.updateMeta(meta);
+
+            log.error("Receipt create failed. Will retry via scheduler. traceId={}, fileName={}, msg={}",
+                    traceId, receiptFileName, ingest.receiptFailure.getMessage(), ingest.receiptFailure);
+        }
 
+        String errorMessage = failure == null ? null : failure.getMessage();
+        if (failure != null) {
+            log.warn("Streaming ingest stopped early. traceId={}, committed={}, msg={}",
+                    traceId, meta.getOrderIds().size(), errorMessage);
+        }
 
-        // 요청자에게 응답
-        if (!sftpUploaded) {
-            return Map.of(
-                    "traceId", traceId,
-                    "success", false,
-                    "dbInserted", true,
-                    "sftpUploaded", false,
-                    "receiptFileName", receiptFileName,
-                    "recordCount", rows.size(),
-                    "orderIds", rows.stream().map(OrderDTO::getOrderId).collect(Collectors.toList()),
-                    "message", "DB insert succeeded but SFTP upload failed. Receipt kept locally for retry."
-            );
+        if (isReceiptCreated && receiptDeliveryService.isAsync()) {
+            receiptDeliveryService.deliverAsync(traceId, meta);
+            log.info("Streaming receipt prepared. traceId={}, fileName={}, recordCount={}, delivery=async",
+                    traceId, receiptFileName, meta.getOrderIds().size());
+            return acceptedResponse(traceId, receiptFileName, meta.getOrderIds(), errorMessage);
         }
 
-        return Map.of(
-                "traceId", traceId,
-                "success", true,
-                "dbInserted", true,
-                "sftpUploaded", true,
-                "receiptFileName", receiptFileName,
-                "recordCount", rows.size(),
-                "orderIds", rows.stream().map(OrderDTO::getOrderId).collect(Collectors.toList())
-        );
+        boolean sftpUploaded = isReceiptCreated && receiptDeliveryService.deliver(traceId, meta);
+
+        log.info("Streaming receipt prepared. traceId={}, fileName={}, recordCount={}, isReceiptCreated={}, sftpUploaded={}",
+                traceId, receiptFileName, meta.getOrderIds().size(), isReceiptCreated, sftpUploaded);
+
+        return response(traceId, receiptFileName, meta.getOrderIds(), sftpUploaded, errorMessage);
     }
 
     /**
-     * Oracle sequence를 사용하지 않고 service에서 동시성 이슈 해결
-     * MAX(사전순) ORDER_ID 조회 -> 연속 ID 할당 -> insert
-     * PK 충돌(동시에 같은 MAX ORDER_ID를 조회한 케이스) 시 재시도
+     * 스트리밍 입력 처리 상태
+     * HEADER 는 USER_ID 기준으로 보관(개수가 적음), ITEM 은 CHUNK_SIZE 만큼만 들고 있다가 flush
      */
-    private void insertWithId(List<OrderDTO> rows) {
+    private class StreamingIngest implements OrderXmlParser.Handler {
 
-        // 재시도 기능 구현을 위해 @Transaction 대신 TransactionTemplate 사용
-        TransactionTemplate tx = new TransactionTemplate(txManager);
+        private final ReceiptMetaDTO meta;
+        private final Map<String, Integer> headerRefs = new HashMap<>();
+        private final OrderBatch chunk;
+
+        private ReceiptWriter receipt;
+        private Exception receiptFailure;
 
-        for (int attempt = 1; attempt <= MAX_RETRY; attempt++) {
+        StreamingIngest(String applicantKey, ReceiptMetaDTO meta) {
+            this.meta = meta;
+            this.chunk = new OrderBatch(applicantKey, CHUNK_SIZE);
             try {
-                tx.execute(status -> {
-                    String maxId = orderMapper.selectMaxOrderId(applicantKey);
-                    List<String> ids = nextIds(maxId, rows.size());
+                this.receipt = receiptOutbox.openReceiptTmpInPending(meta.getFileName());
+            } catch (Exception e) {
+                this.receiptFailure = e;
+            }
+        }
 
-                    // 원래 테스트에 있던 기능을 가져다 써서 테스트 ID가 들어있으므로 실제 사용할 ID로 교체
-                    for (int i = 0; i < rows.size(); i++) {
-                        rows.get(i).setOrderId(ids.get(i));
-                    }
+        @Override
+        public void onHeader(OrderHeaderDTO header) {
+            previewMapper.addHeader(chunk, header, headerRefs);
+        }
 
-                    // CHUNK_SIZE 단위로 끊어서 insert 실행 (DB 안정화)
-                    for (int i = 0; i < rows.size(); i += CHUNK_SIZE) {
-                        List<OrderDTO> chunk = rows.subList(i, Math.min(i + CHUNK_SIZE, rows.size()));
-                        orderMapper.insertOrders(chunk);
-                    }
-                    return null;
-                });
-                return;
-
-            } catch (DuplicateKeyException dup) {
-                // 동시성 이슈 해결
-                log.warn("ORDER_ID collision detected. retry={}/{}", attempt, MAX_RETRY);
-                jitter(attempt);
-                if (attempt == MAX_RETRY) throw dup;
+        @Override
+        public void onItem(OrderItemDTO item) {
+            previewMapper.addItem(chunk, item, headerRefs);
+            if (chunk.size() >= CHUNK_SIZE) {
+                flush();
             }
         }
-    }
 
-    /**  
-     * 읽어온 최대(사전순) ORDER_ID값 이후로 count개만큼 ID를 만들어 냄
-     * ex) 최대 ORDER_ID가 B997, 현재 insert되는 row가 4개라면 B998,B999,C000,C001를 List로 생성
-     */
-    private List<String> nextIds(String maxId, int count) {
-        int startIndex = -1;
-        if (maxId != null && !maxId.isBlank()) {
-            startIndex = toIndex(maxId.trim());
+        void checkComplete() {
+            if (headerRefs.isEmpty()) {
+                throw new IllegalArgumentException("No HEADER elements found.");
+            }
+        }
+
+        // chunk 단위로 커밋 -> meta 갱신 -> 영수증 이어쓰기
+        void flush() {
+            if (chunk.isEmpty()) return;
+
+            insertWithId(chunk);
+
+            for (int i = 0; i < chunk.size(); i++) {
+                meta.getOrderIds().add(chunk.orderId(i));
+            }
+            receiptOutbox.updateMeta(meta);
+
+            if (receiptFailure == null) {
+                try {
+                    receipt.writeAll(chunk);
+                } catch (Exception e) {
+                    receiptFailure = e;
+                }
+            }
+            chunk.clearItems();
         }
 
-        List<String> ids = new ArrayList<>(count);
-        for (int i = 1; i <= count; i++) {
-            int idx = startIndex + i;
-            if (idx >= 26 * 1000) {
-                throw new IllegalStateException("ORDER_ID range exceeded (A000~Z999).");
+        void closeReceipt() {
+            if (receipt == null) return;
+            try {
+                receipt.close();
+            } catch (Exception e) {
+                if (receiptFailure == null) receiptFailure = e;
             }
-            ids.add(indexToId(idx));
         }
-        return ids;
     }
 
-    // 총 26,000가지의 ID 중 해당 orderId가 몇 번째(index기준) ID인지 판별 (숫자로 계산해야 쉬움)
-    private int toIndex(String orderId) {
-        if (!orderId.matches("^[A-Z]\\d{3}$")) {
-            throw new IllegalStateException("Invalid ORDER_ID format: " + orderId);
+    // 요청자에게 응답 (errorMessage 는 스트리밍 입력이 중간에 멈췄을 때만 존재)
+    private Map<String, Object> response(String traceId, String receiptFileName, List<String> orderIds,
+                                         boolean sftpUploaded, String errorMessage) {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("traceId", traceId);
+        res.put("success", sftpUploaded && errorMessage == null);
+        res.put("dbInserted", true);
+        res.put("sftpUploaded", sftpUploaded);
+        res.put("receiptFileName", receiptFileName);
+        res.put("recordCount", orderIds.size());
+        res.put("orderIds", orderIds);
+
+        if (errorMessage != null) {
+            res.put("message", "Input stopped after " + orderIds.size() + " committed rows: " + errorMessage);
+        } else if (!sftpUploaded) {
+            res.put("message", "DB insert succeeded but SFTP upload failed. Receipt kept locally for retry.");
         }
-        char letter = orderId.charAt(0);
-        int num = Integer.parseInt(orderId.substring(1));
-        return (letter - 'A') * 1000 + num;
+        return res;
     }
 
-    // 0~25999의 index값을 id로 바꿔줌
-    private String indexToId(int idx) {
-        char letter = (char) ('A' + (idx / 1000));
-        int num = idx % 1000;
-        return String.format("%c%03d", letter, num);
+    /**
+     * Oracle sequence를 사용하지 않고 service에서 동시성 이슈 해결
+     * 노드별로 임대받은 ORDER_ID 블록에서 연속 ID 할당 -> insert (요청끼리 충돌하지 않으므로 재시도 없음)
+     * ORDER_ID 공간(A000~Z999)과 블록은 applicantKey 별로 따로 관리됨
+     * 그룹 커밋이 켜져 있으면 동시에 들어온 다른 요청들과 한 트랜잭션으로 묶어서 처리
+     */
+    private void insertWithId(OrderBatch batch) {
+        insertWithId(batch, null);
     }
 
-    private void jitter(int attempt) {
+    // record 가 있으면 주문과 같은 트랜잭션에서 중복 방지 기록도 저장
+    private void insertWithId(OrderBatch batch, IdempotencyRecordDTO record) {
+        String applicantKey = batch.getApplicantKey();
+
+        if (groupCommitter.isEnabled()) {
+            groupCommitter.commit(applicantKey, batch, record);
+            return;
+        }
+
+        List<String> ids = orderIdAllocator.allocate(applicantKey, batch.size());
+
+        // preview 와 같은 변환을 거쳐 테스트 ID가 들어있으므로 실제 사용할 ID로 교체
+        for (int i = 0; i < batch.size(); i++) {
+            batch.setOrderId(i, ids.get(i));
+        }
+
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+
         try {
-            Thread.sleep(Math.min(50L, 10L * attempt));
-        } catch (InterruptedException ignored) {
-            Thread.currentThread().interrupt();
+            tx.executeWithoutResult(status -> {
+                OrderMapper batchMapper = batchSqlSession.getMapper(OrderMapper.class);
+
+                // 고정된 형태의 INSERT 를 addBatch 로 모아서 CHUNK_SIZE 단위로 전송 (DB 안정화)
+                for (int i = 0; i < batch.size(); i++) {
+                    batchMapper.insertOrder(batch.row(i));
+                    if ((i + 1) % CHUNK_SIZE == 0) {
+                        batchSqlSession.flush();
+                    }
+                }
+
+                if (record != null) {
+                    record.setOrderIds(IdempotencyStore.joinOrderIds(batch));
+                    batchSqlSession.getMapper(IdempotencyMapper.class).insertRecord(record);
+                }
+                batchSqlSession.flush();
+            });
+        } catch (DuplicateKeyException dup) {
+            if (record != null && idempotencyStore.find(record.getTraceId()) != null) {
+                // 주문 ID 충돌이 아니라 같은 요청이 먼저 처리된 경우: 롤백되었으므로 ID 반환
+                orderIdAllocator.release(applicantKey, ids);
+                throw dup;
+            }
+            // 블록 임대가 만료되어 다른 노드가 회수했거나, 수동으로 넣은 데이터와 겹친 경우에만 발생
+            // 현재 블록을 버려서 다음 요청은 새 블록을 받도록 함
+            log.error("ORDER_ID collision detected. Discarding current block. applicantKey={}", applicantKey);
+            orderIdAllocator.discard(applicantKey);
+            throw dup;
+        } catch (RuntimeException e) {
+            // 데이터 오류 등으로 롤백: 사용하지 않은 ID 반환
+            orderIdAllocator.release(applicantKey, ids);
+            throw e;
+        }
+    }
+
+    // 이미 처리된 요청의 응답 재전송 (전송 상태는 outbox 기준으로 현재 값)
+    private Map<String, Object> replayResponse(IdempotencyRecordDTO prev, String applicantKey) {
+        if (!applicantKey.equals(prev.getApplicantKey())) {
+            throw new IllegalArgumentException("X-Trace-Id already used by another applicant.");
         }
+
+        List<String> orderIds = IdempotencyStore.splitOrderIds(prev);
+        Map<String, Object> status = receiptDeliveryService.status(prev.getTraceId());
+
+        log.info("Duplicate order request replayed. traceId={}, fileName={}", prev.getTraceId(), prev.getReceiptFileName());
+
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("traceId", prev.getTraceId());
+        res.put("success", true);
+        res.put("dbInserted", true);
+        res.put("replayed", true);
+        res.put("deliveryStatus", status == null ? "UNKNOWN" : status.get("status"));
+        res.put("receiptFileName", prev.getReceiptFileName());
+        res.put("recordCount", orderIds.size());
+        res.put("orderIds", orderIds);
+        return res;
+    }
+
+    // 비동기 전송 모드 응답: 전송 결과는 GET /api/orders/receipts/{traceId} 로 확인
+    private Map<String, Object> acceptedResponse(String traceId, String receiptFileName, List<String> orderIds,
+                                                 String errorMessage) {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("traceId", traceId);
+        res.put("success", errorMessage == null);
+        res.put("dbInserted", true);
+        res.put("deliveryStatus", "PENDING");
+        res.put("receiptFileName", receiptFileName);
+        res.put("recordCount", orderIds.size());
+        res.put("orderIds", orderIds);
+        res.put("message", errorMessage != null
+                ? "Input stopped after " + orderIds.size() + " committed rows: " + errorMessage
+                : "DB insert succeeded. Receipt delivery is in progress.");
+        return res;
     }
 
     private String buildReceiptFileName() {
@@ -256,23 +427,4 @@ public class OrderService {
         return "INSPIEN_" + participantName + "_" + ts + ".txt";
     }
 
-
-    // 요구사항 포맷으로 영수증 내용 생성
-    private String buildReceiptContent(List<OrderDTO> rows) {
-        // ORDER_ID^USER_ID^ITEM_ID^APPLICANT_KEY^NAME^ADDRESS^ITEM_NAME^PRICE\n
-        StringBuilder sb = new StringBuilder(rows.size() * 96);
-        for (OrderDTO r : rows) {
-            sb.append(r.getOrderId()).append('^')
-              .append(r.getUserId()).append('^')
-              .append(r.getItemId()).append('^')
-              .append(r.getApplicantKey()).append('^')
-              .append(r.getName()).append('^')
-              .append(r.getAddress()).append('^')
-              .append(r.getItemName()).append('^')
-              .append(r.getPrice())
-              .append('\n');
-        }
-        return sb.toString();
-    }
-
 }
@@ -0,0 +1,103 @@
+package com.inspien.service;
+
+import com.inspien.dto.OrderBatch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * preview 에서 검증이 끝난 주문 데이터를 잠깐 보관해 두는 캐시
+ *
+ * preview 응답으로 token 을 돌려주고, 같은 XML 로 /api/orders 를 호출하면서 token 을 함께 보내면
+ * XML 파싱/검증을 다시 하지 않고 보관해 둔 데이터를 그대로 사용
+ *
+ * - token 은 XML 내용의 해시와 applicantKey 에 묶여 있으므로 내용이 바뀌면 사용되지 않음
+ * - 한 번 사용하면 삭제, TTL / 최대 건수 / 최대 행 수를 넘으면 오래된 것부터 삭제
+ */
+@Slf4j
+@Component
+public class PreviewTokenCache {
+
+    @Value("${inspien.preview-token.ttl-ms:300000}")
+    private long ttlMs;
+
+    @Value("${inspien.preview-token.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${inspien.preview-token.max-rows:200000}")
+    private int maxRows;
+
+    // 삽입 순서 = 만료 순서
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private int totalRows;
+
+    /**
+     * 검증이 끝난 batch 를 보관하고 token 발급 (preview 응답은 batch 에서 따로 만든 OrderDTO 를 사용하므로 공유되지 않음)
+     * 한 문서가 최대 행 수보다 크면 보관하지 않고 null 반환
+     */
+    public String issue(String xml, String applicantKey, OrderBatch batch) {
+        if (batch.size() > maxRows) return null;
+
+        String token = UUID.randomUUID().toString().replace("-", "");
+        Entry entry = new Entry(hash(xml), applicantKey, batch, System.currentTimeMillis() + ttlMs);
+
+        synchronized (entries) {
+            evict(System.currentTimeMillis(), batch.size());
+            entries.put(token, entry);
+            totalRows += batch.size();
+        }
+        return token;
+    }
+
+    /**
+     * token 에 해당하는 batch 반환 (1회용)
+     * 만료되었거나 XML 내용 / applicantKey 가 다르면 null -> 호출자는 기존처럼 파싱부터 진행
+     */
+    public OrderBatch take(String token, String xml, String applicantKey) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(token);
+            if (entry != null) totalRows -= entry.batch.size();
+        }
+
+        if (entry == null || entry.expiresAt < System.currentTimeMillis()) return null;
+
+        if (!entry.applicantKey.equals(applicantKey) || !Arrays.equals(entry.hash, hash(xml))) {
+            log.warn("Preview token does not match request body. Falling back to full parse.");
+            return null;
+        }
+        return entry.batch;
+    }
+
+    // 만료된 것 정리 후, 새로 넣을 공간이 생길 때까지 오래된 것부터 삭제
+    private void evict(long now, int incomingRows) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry e = it.next().getValue();
+            boolean expired = e.expiresAt < now;
+            boolean full = entries.size() >= maxEntries || totalRows + incomingRows > maxRows;
+            if (!expired && !full) break;
+
+            it.remove();
+            totalRows -= e.batch.size();
+        }
+    }
+
+    private byte[] hash(String xml) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(xml.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Entry(byte[] hash, String applicantKey, OrderBatch batch, long expiresAt) {}
+}
@@ -0,0 +1,236 @@
+package com.inspien.service;
+
+import com.inspien.infra.ReceiptArchive;
+import com.inspien.infra.ReceiptMetaDTO;
+import com.inspien.infra.ReceiptOutbox;
+import com.inspien.infra.SftpCircuitBreaker;
+import com.inspien.infra.SftpUploader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * pending 에 만들어진 영수증의 SFTP 전송 담당
+ *
+ * - 동기 모드(기본): 주문 요청 스레드에서 바로 전송
+ * - 비동기 모드(inspien.receipt.delivery.async=true): DB 커밋과 meta 기록까지만 요청 스레드에서 처리하고
+ *   전송은 전용 스레드풀에서 진행 (SFTP 서버 상태가 주문 응답 시간에 영향을 주지 않음)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReceiptDeliveryService {
+
+    private final ReceiptOutbox receiptOutbox;
+    private final SftpUploader sftpUploader;
+    private final SftpCircuitBreaker circuitBreaker;
+    private final ReceiptArchive receiptArchive;
+
+    @Value("${inspien.sftp.retry.maxAttempts:10}")
+    private int maxAttempts;
+
+    @Value("${inspien.sftp.retry.initialDelayMs:90000}")
+    private long initialRetryDelayMs;
+
+    @Value("${inspien.receipt.delivery.async:false}")
+    private boolean async;
+
+    @Value("${inspien.receipt.delivery.threads:4}")
+    private int threads;
+
+    @Value("${inspien.receipt.delivery.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        if (!async) return;
+
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "receipt-delivery-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // 종료 시 대기 중인 전송은 pending 에 남아 있으므로 재시도 스케줄러가 이어서 처리
+    @PreDestroy
+    void shutdown() {
+        if (executor == null) return;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * 전송 작업을 스레드풀에 등록
+     * 등록 전 meta 에 재시도 시각을 기록해 두므로, 전송 전에 서버가 죽더라도 재시도 스케줄러가 처리함
+     */
+    public void deliverAsync(String traceId, ReceiptMetaDTO meta) {
+        if (!circuitBreaker.allowInline()) {
+            handOverOnOpenCircuit(traceId, meta);
+            return;
+        }
+
+        meta.setLastError("ASYNC_PENDING");
+        meta.setNextAttemptAtEpochMs(System.currentTimeMillis() + initialRetryDelayMs);
+        receiptOutbox.updateMeta(meta);
+
+        try {
+            executor.execute(() -> {
+                MDC.put("traceId", traceId);
+                try {
+                    deliver(traceId, meta);
+                } finally {
+                    MDC.remove("traceId");
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 큐가 가득 찬 경우 바로 재시도 스케줄러에게 넘김
+            meta.setLastError("ASYNC_REJECTED");
+            meta.setNextAttemptAtEpochMs(System.currentTimeMillis());
+            receiptOutbox.updateMeta(meta);
+
+            log.warn("Receipt delivery queue full. Handing over to retry scheduler. traceId={}, fileName={}",
+                    traceId, meta.getFileName());
+        }
+    }
+
+    /**
+     * SFTP 전송 시도
+     * 실패하면 pending 에 남기고 스케줄러가 재시도, 최대 횟수 도달 시 failed 로 이동
+     */
+    public boolean deliver(String traceId, ReceiptMetaDTO meta) {
+        String receiptFileName = meta.getFileName();
+        Path pendingFile = receiptOutbox.receiptPathInPending(receiptFileName);
+
+        // SFTP 서버 장애 중이면 접속을 시도하지 않고 재시도 스케줄러에게 넘김
+        if (!circuitBreaker.allowInline()) {
+            handOverOnOpenCircuit(traceId, meta);
+            return false;
+        }
+
+        // 재시도 스케줄러가 이미 전송 중이면 그쪽 결과를 따름
+        if (!receiptOutbox.tryClaim(receiptFileName)) {
+            log.info("Receipt delivery already in progress. traceId={}, fileName={}", traceId, receiptFileName);
+            return false;
+        }
+
+        try {
+            // 선점하는 사이에 스케줄러/관리자 재전송이 끝냈을 수 있음
+            if (!receiptOutbox.isPending(receiptFileName)) {
+                log.info("Receipt already handled elsewhere. traceId={}, fileName={}", traceId, receiptFileName);
+                return false;
+            }
+
+            SftpUploader.UploadResult result = sftpUploader.upload(pendingFile, receiptFileName);
+
+            // 성공하면 sent로 이동
+            receiptOutbox.markSent(meta, result);
+            return true;
+
+        } catch (Exception e) {
+            // SFTP 업로드 실패하면 pending에 남기고 스케줄러가 재시도
+            int nextAttempts = meta.getAttempts() + 1;
+            meta.setAttempts(nextAttempts);
+            meta.setLastError("SFTP_FAIL: " + e.getMessage());
+
+            if (nextAttempts >= maxAttempts) {
+                receiptOutbox.updateMeta(meta);
+                receiptOutbox.markFailed(receiptFileName);
+
+                log.error("SFTP final-fail. moved to failed. traceId={}, fileName={}, attempts={}, msg={}",
+                        traceId, receiptFileName, nextAttempts, e.getMessage(), e);
+
+            } else {
+                meta.setNextAttemptAtEpochMs(receiptOutbox.calcNextAttemptAt(nextAttempts));
+                receiptOutbox.updateMeta(meta);
+
+                log.error("SFTP upload failed. Will retry via scheduler. traceId={}, fileName={}, attempts={}, msg={}",
+                        traceId, receiptFileName, nextAttempts, e.getMessage(), e);
+            }
+            return false;
+
+        } finally {
+            receiptOutbox.releaseClaim(receiptFileName);
+        }
+    }
+
+    // 전송을 시도하지 않았으므로 attempts 는 그대로 두고 바로 재시도 대상으로 표시
+    private void handOverOnOpenCircuit(String traceId, ReceiptMetaDTO meta) {
+        meta.setLastError("CIRCUIT_OPEN");
+        meta.setNextAttemptAtEpochMs(System.currentTimeMillis());
+        receiptOutbox.updateMeta(meta);
+
+        log.warn("SFTP circuit open. Skipping inline upload. traceId={}, fileName={}", traceId, meta.getFileName());
+    }
+
+    /**
+     * 영수증 전송 상태 조회 (outbox 폴더 위치 기준)
+     * pending -> PENDING, sent -> SENT, failed -> FAILED, 없으면 null
+     * sent 에서 보관(archive)으로 옮겨진 영수증도 SENT
+     */
+    public Map<String, Object> status(String traceId) {
+        ReceiptOutbox.Located found = receiptOutbox.findByTraceId(traceId);
+        if (found == null) return archivedStatus(traceId);
+
+        ReceiptMetaDTO meta = found.meta();
+
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("traceId", traceId);
+        res.put("status", found.location().toUpperCase());
+        res.put("receiptFileName", meta.getFileName());
+        res.put("recordCount", meta.getOrderIds() == null ? 0 : meta.getOrderIds().size());
+        res.put("attempts", meta.getAttempts());
+        if (meta.getLastError() != null && !"sent".equals(found.location())) {
+            res.put("lastError", meta.getLastError());
+        }
+        return res;
+    }
+
+    private Map<String, Object> archivedStatus(String traceId) {
+        ReceiptArchive.Entry entry = receiptArchive.findByTraceId(traceId);
+        if (entry == null) return null;
+
+        ReceiptMetaDTO meta = receiptArchive.read(entry).meta();
+
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("traceId", traceId);
+        res.put("status", "SENT");
+        res.put("receiptFileName", entry.fileName());
+        if (meta != null) {
+            res.put("recordCount", meta.getOrderIds() == null ? 0 : meta.getOrderIds().size());
+            res.put("attempts", meta.getAttempts());
+        }
+        res.put("archived", true);
+        return res;
+    }
+}
@@ -0,0 +1,79 @@
+package com.inspien.service;
+
+import com.inspien.dto.OrderDTO;
+import com.inspien.infra.ReceiptMetaDTO;
+import com.inspien.infra.ReceiptOutbox;
+import com.inspien.infra.ReceiptWriter;
+import com.inspien.mapper.OrderMapper;
+import com.inspien.util.InListChunks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 영수증 파일이 없을 때 meta 의 orderIds 로 ORDER_TB 에서 다시 만듦 (재시도 스케줄러 / 관리자 재전송 공통)
+ *
+ * orderIds 를 1000개씩 나눠 조회하고(ORA-01795), 결과는 Cursor 로 한 행씩 읽어 바로 영수증 .tmp 에 씀
+ * 주문 건수와 관계없이 메모리에는 fetchSize 만큼의 행만 올라옴
+ * 다 쓴 뒤 한 번에 확정하므로 중간에 실패하면 기존 상태(영수증 없음) 그대로
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReceiptRegenerator {
+
+    private final OrderMapper orderMapper;
+    private final ReceiptOutbox outbox;
+    private final PlatformTransactionManager txManager;
+
+    /**
+     * target 위치에 영수증 재생성, 작성한 행 수 반환
+     * DB 에서 한 행도 찾지 못하면 0 (파일은 만들지 않음)
+     */
+    public int regenerate(ReceiptMetaDTO meta, Path target) {
+        List<String> orderIds = meta.getOrderIds();
+        if (orderIds == null || orderIds.isEmpty()) return 0;
+
+        // Cursor 는 세션이 열려 있는 동안만 읽을 수 있으므로 트랜잭션 안에서 끝까지 읽음
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        tx.setReadOnly(true);
+
+        Integer written = tx.execute(status -> {
+            int count = 0;
+            try (ReceiptWriter w = outbox.openReceiptTmp(target)) {
+                // 조각은 정렬된 순서이므로 ORDER_ID 순서 그대로 이어서 씀
+                for (List<String> chunk : InListChunks.of(orderIds)) {
+                    try (Cursor<OrderDTO> rows = orderMapper.selectOrdersByIds(meta.getApplicantKey(), chunk)) {
+                        for (OrderDTO row : rows) {
+                            w.write(row);
+                            count++;
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                outbox.discardReceiptTmp(target);
+                throw new RuntimeException("Receipt recreate failed: " + e.getMessage(), e);
+            }
+            return count;
+        });
+
+        int count = written == null ? 0 : written;
+        if (count == 0) {
+            outbox.discardReceiptTmp(target);
+            return 0;
+        }
+
+        outbox.commitReceipt(target);
+        if (count < orderIds.size()) {
+            log.warn("Receipt recreated with missing rows. fileName={}, expected={}, written={}",
+                    meta.getFileName(), orderIds.size(), count);
+        }
+        return count;
+    }
+}
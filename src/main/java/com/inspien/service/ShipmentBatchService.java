@@ -2,7 +2,9 @@ package com.inspien.service;
 
 import com.inspien.dto.OrderDTO;
 import com.inspien.dto.ShipmentDTO;
+import com.inspien.infra.BatchSqlSession;
 import com.inspien.mapper.ShipmentMapper;
+import com.inspien.util.InListChunks;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
@@ -19,10 +21,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ShipmentBatchService {
 
-    private final ShipmentMapper shipmentMapper;
-
-    @Value("${inspien.applicant-key}")
-    private String applicantKey;
+    private final BatchSqlSession batchSqlSession;
 
     @Value("${inspien.shipment.batch.fetchLimit:200}")
     private int fetchLimit;
@@ -31,16 +30,21 @@ public class ShipmentBatchService {
      * 1회 배치 실행 단위 :
      *  ORDER_TB select(행 잠금) -> SHIPMENT_TB insert -> ORDER_TB update를 하나의 트랜잭션으로 묶음
      *  중간에 실패 시 롤백되어 재처리 가능(STATUS가 N인 채로 남음)
+     *  INSERT 를 addBatch 로 모아서 보내기 위해 트랜잭션 안의 모든 쿼리를 batch 세션의 mapper 로 실행
+     *  applicantKey 한 개 기준으로 최대 fetchLimit 건 처리 (여러 applicant 의 순서는 스케줄러가 결정)
      */
     @Transactional
-    public int runOnce() {
+    public int runOnce(String applicantKey) {
         // 배치 실행도 로그 추적이 쉽도록 traceId 형태로 MDC에 넣어줌
-        String batchTraceId = "SHIPBATCH-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+        String batchTraceId = "SHIPBATCH-" + applicantKey + "-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
         MDC.put("traceId", batchTraceId);
 
         try {
             log.info("Shipment batch start. applicantKey={}, fetchLimit={}", applicantKey, fetchLimit);
 
+            ShipmentMapper shipmentMapper = batchSqlSession.getMapper(ShipmentMapper.class);
+
             // 1) 미전송 주문 조회 + lock
             List<OrderDTO> orders = shipmentMapper.selectUnsentOrdersForUpdate(applicantKey, fetchLimit);
 
@@ -60,11 +64,18 @@ public class ShipmentBatchService {
                 return s;
             }).toList();
 
-            shipmentMapper.insertShipments(shipments);
+            for (ShipmentDTO s : shipments) {
+                shipmentMapper.insertShipment(s);
+            }
+            batchSqlSession.flush();
 
             // 3) ORDER_TB STATUS를 'Y'로 update
+            //    IN 목록은 1000개 단위로 나눠서 addBatch (마지막 조각만 크기가 달라서 문장은 최대 2개, fetchLimit 이 커도 한 번에 전송)
             List<String> orderIds = orders.stream().map(OrderDTO::getOrderId).toList();
-            int updated = shipmentMapper.updateOrderStatusY(applicantKey, orderIds);
+            for (List<String> chunk : InListChunks.of(orderIds)) {
+                shipmentMapper.updateOrderStatusY(applicantKey, chunk);
+            }
+            int updated = BatchSqlSession.affectedRows(batchSqlSession.flush());
 
             log.info("Shipment batch success. inserted={}, updated={}", shipments.size(), updated);
             return shipments.size();
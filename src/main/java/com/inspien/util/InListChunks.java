@@ -0,0 +1,46 @@
+package com.inspien.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Oracle IN (...) 목록 분할 (한 IN 목록에 1000개까지만 허용, ORA-01795)
+ *
+ * - 중복 제거 + 정렬 후 SIZE 개씩 나눔 (조각 순서대로 읽으면 전체가 정렬된 순서)
+ * - 마지막 조각은 마지막 값을 반복해서 BUCKETS 중 들어가는 가장 작은 크기로 채움
+ *   SQL 문장이 BUCKETS 개수(3가지)로 고정되므로 hard parse / cursor 가 건수마다 생기지 않고,
+ *   주문 몇 건짜리 영수증이 1000개 bind 를 보내지도 않음
+ *   (IN 안의 중복 값은 결과 / 갱신 건수에 영향 없음)
+ */
+public final class InListChunks {
+
+    public static final int SIZE = 1000;
+
+    // 조각 크기 (오름차순, 마지막이 SIZE)
+    static final int[] BUCKETS = {10, 100, SIZE};
+
+    private InListChunks() {}
+
+    public static List<List<String>> of(Collection<String> values) {
+        List<String> sorted = new ArrayList<>(new TreeSet<>(values));
+        List<List<String>> chunks = new ArrayList<>((sorted.size() + SIZE - 1) / SIZE);
+
+        for (int from = 0; from < sorted.size(); from += SIZE) {
+            List<String> chunk = new ArrayList<>(sorted.subList(from, Math.min(from + SIZE, sorted.size())));
+            String last = chunk.get(chunk.size() - 1);
+            int size = bucketOf(chunk.size());
+            while (chunk.size() < size) chunk.add(last);
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static int bucketOf(int n) {
+        for (int b : BUCKETS) {
+            if (n <= b) return b;
+        }
+        return SIZE;
+    }
+}
@@ -3,17 +3,34 @@ package com.inspien.util;
 import com.inspien.dto.*;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.springframework.stereotype.Component;
 
 @Component
 public class OrderPreviewMapper {
 
+    // 이 건수 이상이면 ITEM 검증을 병렬로 처리
+    private static final int PARALLEL_THRESHOLD = 5000;
+    private static final int PARALLEL_LEAF_SIZE = 1024;
+
+    private static final long INVALID_PRICE = Long.MIN_VALUE;
+
+    // preview 응답용 (JSON)
     public List<OrderDTO> toOrderRows(
         List<OrderHeaderDTO> headers,
         List<OrderItemDTO> items,
         String applicantKey
       ) {
+        return toBatch(headers, items, applicantKey).toOrderRows();
+    }
+
+    public OrderBatch toBatch(
+        List<OrderHeaderDTO> headers,
+        List<OrderItemDTO> items,
+        String applicantKey
+      ) {
 
         if (headers == null || headers.isEmpty()) {
             throw new IllegalArgumentException("No HEADER elements found.");
@@ -25,42 +42,193 @@ public class OrderPreviewMapper {
             throw new IllegalArgumentException("applicantKey is not configured.");
         }
 
-        Map<String, OrderHeaderDTO> headerMap = new HashMap<>();
-        
+        OrderBatch batch = new OrderBatch(applicantKey, items.size());
+        Map<String, Integer> headerRefs = new HashMap<>();
+
         for (OrderHeaderDTO h : headers) {
-            if (isBlank(h.getUserId())) throw new IllegalArgumentException("HEADER.USER_ID is required.");
-            headerMap.put(h.getUserId(), h);
+            addHeader(batch, h, headerRefs);
+        }
+
+        if (items.size() < PARALLEL_THRESHOLD) {
+            addItemsSequential(batch, items, headerRefs);
+        } else {
+            addItemsParallel(batch, items, headerRefs);
+        }
+
+        return batch;
+    }
+
+    /**
+     * 작은 문서: 한 스레드에서 검증하면서 바로 batch 에 추가
+     * 오류가 나온 이후로는 추가하지 않고 검증만 계속해서 전체 오류를 모음
+     */
+    private void addItemsSequential(OrderBatch batch, List<OrderItemDTO> items, Map<String, Integer> headerRefs) {
+        ErrorList errors = new ErrorList();
+        long[] price = new long[1];
+        int[] ref = new int[1];
+
+        for (int i = 0; i < items.size(); i++) {
+            OrderItemDTO it = items.get(i);
+            if (checkItem(i, it, headerRefs, price, ref, 0, errors) && errors.count == 0) {
+                batch.add(ref[0], it.getUserId(), it.getItemId(), it.getItemName(), price[0], it.getPrice());
+            }
+        }
+        errors.throwIfAny();
+    }
+
+    /**
+     * 큰 문서: ITEM 목록을 나눠서 ForkJoin common pool 에서 병렬 검증 (PRICE 변환 / HEADER 매칭 결과는 배열에 보관)
+     * 오류가 없을 때만 순서대로 batch 에 추가
+     */
+    private void addItemsParallel(OrderBatch batch, List<OrderItemDTO> items, Map<String, Integer> headerRefs) {
+        long[] prices = new long[items.size()];
+        int[] refs = new int[items.size()];
+
+        ErrorList errors = ForkJoinPool.commonPool()
+                .invoke(new ValidateTask(items, headerRefs, prices, refs, 0, items.size()));
+        errors.throwIfAny();
+
+        for (int i = 0; i < items.size(); i++) {
+            OrderItemDTO it = items.get(i);
+            batch.add(refs[i], it.getUserId(), it.getItemId(), it.getItemName(), prices[i], it.getPrice());
+        }
+    }
+
+    private class ValidateTask extends RecursiveTask<ErrorList> {
+        private final List<OrderItemDTO> items;
+        private final Map<String, Integer> headerRefs;
+        private final long[] prices;
+        private final int[] refs;
+        private final int from;
+        private final int to;
+
+        ValidateTask(List<OrderItemDTO> items, Map<String, Integer> headerRefs, long[] prices, int[] refs,
+                     int from, int to) {
+            this.items = items;
+            this.headerRefs = headerRefs;
+            this.prices = prices;
+            this.refs = refs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ErrorList compute() {
+            if (to - from <= PARALLEL_LEAF_SIZE) {
+                ErrorList errors = new ErrorList();
+                for (int i = from; i < to; i++) {
+                    checkItem(i, items.get(i), headerRefs, prices, refs, i, errors);
+                }
+                return errors;
+            }
+
+            int mid = (from + to) >>> 1;
+            ValidateTask left = new ValidateTask(items, headerRefs, prices, refs, from, mid);
+            ValidateTask right = new ValidateTask(items, headerRefs, prices, refs, mid, to);
+            left.fork();
+            ErrorList rightErrors = right.compute();
+            return left.join().merge(rightErrors);
+        }
+    }
+
+    public void validateHeader(OrderHeaderDTO h) {
+        if (isBlank(h.getUserId())) throw new IllegalArgumentException("HEADER.USER_ID is required.");
+    }
+
+    // HEADER 검증 후 batch 에 등록, USER_ID -> HEADER 번호
+    public void addHeader(OrderBatch batch, OrderHeaderDTO h, Map<String, Integer> headerRefs) {
+        validateHeader(h);
+        String status = isBlank(h.getStatus()) ? "N" : h.getStatus().trim();
+        headerRefs.put(h.getUserId(), batch.addHeader(h.getName(), h.getAddress(), status));
+    }
+
+    // ITEM 한 건 검증 후 매칭되는 HEADER 번호와 함께 ORDER_TB 한 행으로 추가 (스트리밍 입력용, 첫 오류에서 중단)
+    public void addItem(OrderBatch batch, OrderItemDTO it, Map<String, Integer> headerRefs) {
+        ErrorList errors = new ErrorList();
+        long[] price = new long[1];
+        int[] ref = new int[1];
+
+        if (!checkItem(batch.size(), it, headerRefs, price, ref, 0, errors)) {
+            throw new IllegalArgumentException(errors.list.get(0).getMessage());
         }
+        batch.add(ref[0], it.getUserId(), it.getItemId(), it.getItemName(), price[0], it.getPrice());
+    }
+
+    /**
+     * USER_ID / ITEM_ID / ITEM_NAME / PRICE / HEADER 매칭 검사
+     * 통과하면 prices[slot], refs[slot] 에 변환 결과를 기록하고 true, 실패하면 errors 에 모두 추가하고 false
+     */
+    private boolean checkItem(int index, OrderItemDTO it, Map<String, Integer> headerRefs,
+                              long[] prices, int[] refs, int slot, ErrorList errors) {
+        int before = errors.count;
+
+        if (isBlank(it.getUserId())) errors.add(index, "USER_ID", "ITEM.USER_ID is required.");
+        if (isBlank(it.getItemId())) errors.add(index, "ITEM_ID", "ITEM.ITEM_ID is required.");
+        if (isBlank(it.getItemName())) errors.add(index, "ITEM_NAME", "ITEM.ITEM_NAME is required.");
 
-        List<OrderDTO> rows = new ArrayList<>();
-        for (OrderItemDTO it : items) {
-            if (isBlank(it.getUserId())) throw new IllegalArgumentException("ITEM.USER_ID is required.");
-            if (isBlank(it.getItemId())) throw new IllegalArgumentException("ITEM.ITEM_ID is required.");
-            if (isBlank(it.getItemName())) throw new IllegalArgumentException("ITEM.ITEM_NAME is required.");
-            if (isBlank(it.getPrice()) || !it.getPrice().matches("\\d+")) {
-                throw new IllegalArgumentException("ITEM.PRICE must be numeric.");
+        long price = parsePrice(it.getPrice());
+        if (price == INVALID_PRICE) errors.add(index, "PRICE", "ITEM.PRICE must be numeric.");
+
+        Integer headerRef = isBlank(it.getUserId()) ? null : headerRefs.get(it.getUserId());
+        if (headerRef == null && !isBlank(it.getUserId())) {
+            errors.add(index, "USER_ID", "No matching HEADER for ITEM.USER_ID=" + it.getUserId());
+        }
+
+        if (errors.count != before) return false;
+
+        prices[slot] = price;
+        refs[slot] = headerRef;
+        return true;
+    }
+
+    /**
+     * PRICE 는 숫자로만 구성 (기존 matches("\\d+") 와 같은 조건)
+     * long 범위를 넘는 값은 -1 (원문 그대로 사용), 숫자가 아니면 INVALID_PRICE
+     */
+    private long parsePrice(String s) {
+        if (s == null || s.isEmpty()) return INVALID_PRICE;
+
+        long v = 0;
+        boolean overflow = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return INVALID_PRICE;
+            if (!overflow) {
+                if (v > (Long.MAX_VALUE - (c - '0')) / 10) {
+                    overflow = true;
+                } else {
+                    v = v * 10 + (c - '0');
+                }
             }
+        }
+        return overflow ? -1 : v;
+    }
+
+    // ITEM 순서대로 쌓이는 오류 목록 (MAX_REPORTED 건까지만 보관, 개수는 전체)
+    private static class ErrorList {
+        final List<OrderItemErrorDTO> list = new ArrayList<>();
+        int count;
 
-            OrderHeaderDTO h = headerMap.get(it.getUserId());
-            if (h == null) {
-                throw new IllegalArgumentException("No matching HEADER for ITEM.USER_ID=" + it.getUserId());
+        void add(int index, String field, String message) {
+            count++;
+            if (list.size() < OrderValidationException.MAX_REPORTED) {
+                list.add(new OrderItemErrorDTO(index, field, message));
             }
+        }
 
-            OrderDTO r = new OrderDTO();
-            r.setOrderId("T000"); // 테스트용 OrderId
-            r.setUserId(it.getUserId());
-            r.setItemId(it.getItemId());
-            r.setApplicantKey(applicantKey);
-            r.setName(h.getName());
-            r.setAddress(h.getAddress());
-            r.setItemName(it.getItemName());
-            r.setPrice(it.getPrice());
-            r.setStatus(isBlank(h.getStatus()) ? "N" : h.getStatus().trim());
-
-            rows.add(r);
+        // this 가 앞쪽 구간
+        ErrorList merge(ErrorList next) {
+            count += next.count;
+            for (OrderItemErrorDTO e : next.list) {
+                if (list.size() >= OrderValidationException.MAX_REPORTED) break;
+                list.add(e);
+            }
+            return this;
         }
 
-        return rows;
+        void throwIfAny() {
+            if (count > 0) throw new OrderValidationException(count, list);
+        }
     }
 
     private boolean isBlank(String s) {
@@ -0,0 +1,31 @@
+package com.inspien.util;
+
+import com.inspien.dto.OrderItemErrorDTO;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * ITEM 검증 실패 (문서 전체를 검사한 결과)
+ * 오류가 한 건이면 메세지는 기존과 동일하고, errors 에 ITEM 순서와 함께 전체 목록(최대 MAX_REPORTED 건)을 담음
+ */
+@Getter
+public class OrderValidationException extends IllegalArgumentException {
+
+    public static final int MAX_REPORTED = 1000;
+
+    private final int errorCount;
+    private final List<OrderItemErrorDTO> errors;
+
+    public OrderValidationException(int errorCount, List<OrderItemErrorDTO> errors) {
+        super(buildMessage(errorCount, errors));
+        this.errorCount = errorCount;
+        this.errors = errors;
+    }
+
+    private static String buildMessage(int errorCount, List<OrderItemErrorDTO> errors) {
+        OrderItemErrorDTO first = errors.get(0);
+        if (errorCount == 1) return first.getMessage();
+        return errorCount + " ITEM errors found. First at ITEM[" + first.getItemIndex() + "]: " + first.getMessage();
+    }
+}
@@ -4,11 +4,14 @@ import com.inspien.dto.OrderHeaderDTO;
 import com.inspien.dto.OrderItemDTO;
 
 import org.springframework.stereotype.Component;
-import org.w3c.dom.*;
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
-import java.nio.charset.StandardCharsets;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,96 +20,228 @@ public class OrderXmlParser {
 
     public record Parsed(List<OrderHeaderDTO> headers, List<OrderItemDTO> items) {}
 
+    /**
+     * HEADER / ITEM 이 하나씩 완성될 때마다 호출되는 콜백
+     * (문서 전체를 메모리에 올리지 않고 순서대로 처리하고 싶을 때 사용)
+     */
+    public interface Handler {
+        void onHeader(OrderHeaderDTO header);
+        void onItem(OrderItemDTO item);
+    }
+
+    /**
+     * XMLInputFactory 는 설정 이후 스레드 간 공유가 보장되지 않으므로 스레드마다 하나씩 만들어 재사용
+     * (매 요청마다 factory 를 새로 만들던 비용 제거)
+     */
+    private static final ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(OrderXmlParser::newFactory);
+
     public Parsed parse(String rawXml) {
         if (rawXml == null || rawXml.isBlank()) {
             throw new IllegalArgumentException("XML body is empty.");
         }
 
-        String trimmed = rawXml.trim();
+        List<OrderHeaderDTO> headers = new ArrayList<>();
+        List<OrderItemDTO> items = new ArrayList<>();
+
+        parse(new StringReader(rawXml), new Handler() {
+            @Override
+            public void onHeader(OrderHeaderDTO header) { headers.add(header); }
+
+            @Override
+            public void onItem(OrderItemDTO item) { items.add(item); }
+        });
+
+        return new Parsed(headers, items);
+    }
+
+    /**
+     * 한 번의 순회(StAX)로 HEADER / ITEM 을 읽어 handler 로 전달
+     * root 가 하나인 문서와 root 없이 HEADER/ITEM 이 나열된 문서 모두 재파싱 없이 처리
+     */
+    public void parse(Reader xml, Handler handler) {
+        XMLStreamReader r = null;
 
         try {
-            Document doc;
+            r = FACTORY.get().createXMLStreamReader(new RootWrappingReader(xml));
+
+            OrderHeaderDTO header = null;
+            OrderItemDTO item = null;
+
+            while (r.hasNext()) {
+                int event = r.next();
+
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String tag = r.getLocalName();
+
+                    if (header == null && item == null) {
+                        if ("HEADER".equals(tag)) {
+                            header = new OrderHeaderDTO();
+                        } else if ("ITEM".equals(tag)) {
+                            item = new OrderItemDTO();
+                        }
+                    } else if (header != null) {
+                        readHeaderField(r, tag, header);
+                    } else {
+                        readItemField(r, tag, item);
+                    }
+
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String tag = r.getLocalName();
+
+                    if (header != null && "HEADER".equals(tag)) {
+                        handler.onHeader(header);
+                        header = null;
+                    } else if (item != null && "ITEM".equals(tag)) {
+                        handler.onItem(item);
+                        item = null;
+                    }
+                }
+            }
 
-            try {
-                doc = parseDocument(trimmed);
-            } catch (Exception first) {
-                String wrapped = wrapXml(trimmed);
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("XML parsing failed: " + e.getMessage(), e);
+        } finally {
+            if (r != null) {
                 try {
-                    doc = parseDocument(wrapped);
-                } catch (Exception second) {
-                    throw new IllegalArgumentException(
-                        "XML parsing failed: " + second.getMessage(),
-                        second
-                    );
+                    r.close();
+                } catch (XMLStreamException ignored) {
+                    // 읽기 전용 reader 이므로 close 실패는 무시
                 }
             }
+        }
+    }
 
-            List<OrderHeaderDTO> headers = new ArrayList<>();
-            NodeList headerNodes = doc.getElementsByTagName("HEADER");
-            for (int i = 0; i < headerNodes.getLength(); i++) {
-                Element e = (Element) headerNodes.item(i);
-                OrderHeaderDTO h = new OrderHeaderDTO();
-                h.setUserId(text(e, "USER_ID"));
-                h.setName(text(e, "NAME"));
-                h.setAddress(text(e, "ADDRESS"));
-                h.setStatus(text(e, "STATUS"));
-                headers.add(h);
-            }
+    // 필드는 처음 등장한 값만 사용 (기존 getElementsByTagName(..).item(0) 과 동일)
+    private void readHeaderField(XMLStreamReader r, String tag, OrderHeaderDTO h) throws XMLStreamException {
+        switch (tag) {
+            case "USER_ID" -> { if (h.getUserId() == null) h.setUserId(text(r)); }
+            case "NAME" -> { if (h.getName() == null) h.setName(text(r)); }
+            case "ADDRESS" -> { if (h.getAddress() == null) h.setAddress(text(r)); }
+            case "STATUS" -> { if (h.getStatus() == null) h.setStatus(text(r)); }
+            default -> { }
+        }
+    }
+
+    private void readItemField(XMLStreamReader r, String tag, OrderItemDTO it) throws XMLStreamException {
+        switch (tag) {
+            case "USER_ID" -> { if (it.getUserId() == null) it.setUserId(text(r)); }
+            case "ITEM_ID" -> { if (it.getItemId() == null) it.setItemId(text(r)); }
+            case "ITEM_NAME" -> { if (it.getItemName() == null) it.setItemName(text(r)); }
+            case "PRICE" -> { if (it.getPrice() == null) it.setPrice(text(r)); }
+            default -> { }
+        }
+    }
 
-            List<OrderItemDTO> items = new ArrayList<>();
-            NodeList itemNodes = doc.getElementsByTagName("ITEM");
-            for (int i = 0; i < itemNodes.getLength(); i++) {
-                Element e = (Element) itemNodes.item(i);
-                OrderItemDTO it = new OrderItemDTO();
-                it.setUserId(text(e, "USER_ID"));
-                it.setItemId(text(e, "ITEM_ID"));
-                it.setItemName(text(e, "ITEM_NAME"));
-                it.setPrice(text(e, "PRICE"));
-                items.add(it);
+    /**
+     * 현재 요소 안의 문자열 (기존 DOM getTextContent() 와 동일하게 하위 요소 안의 문자열까지 이어 붙임)
+     * getElementText() 는 하위 요소가 있으면 예외가 나므로 끝 태그까지 직접 순회, 끝나면 reader 는 끝 태그 위치
+     */
+    private String text(XMLStreamReader r) throws XMLStreamException {
+        StringBuilder sb = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            switch (r.next()) {
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE ->
+                        sb.append(r.getText());
+                case XMLStreamConstants.START_ELEMENT -> depth++;
+                case XMLStreamConstants.END_ELEMENT -> depth--;
+                default -> { } // 주석 / 처리 명령은 DOM 과 같이 제외
             }
+        }
+        return sb.toString().trim();
+    }
 
-            return new Parsed(headers, items);
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory f = XMLInputFactory.newFactory();
 
-        } catch (IllegalArgumentException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new IllegalArgumentException("XML parsing failed: " + e.getMessage(), e);
-        }
+        // XML External Entity Injection 방지 (DTD, 외부 엔티티 비활성화)
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        f.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return f;
     }
 
-    private Document parseDocument(String xml) throws Exception {
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+    /**
+     * 원본 문서를 복사하지 않고 앞뒤에 <ROOT></ROOT> 를 붙여서 읽어주는 Reader
+     * - 맨 앞의 BOM / 공백 / XML 선언(<?xml ... ?>)은 건너뜀 (선언은 반드시 문서 맨 앞이어야 하므로)
+     * - root 가 이미 있는 문서도 한 단계 더 감싸질 뿐이라 HEADER/ITEM 탐색에는 영향 없음
+     */
+    private static final class RootWrappingReader extends Reader {
+
+        private static final String OPEN = "<ROOT>";
+        private static final String CLOSE = "</ROOT>";
+        private static final int PEEK = 5; // "<?xml".length()
+
+        private final PushbackReader in;
+        private String pending = OPEN;
+        private int pendingPos = 0;
+        private boolean started = false;
+        private boolean bodyDone = false;
+
+        RootWrappingReader(Reader in) {
+            this.in = new PushbackReader(in, PEEK);
+        }
 
-        dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!started) {
+                skipPrologue();
+                started = true;
+            }
 
-        // XML External Entity Injection 방지
-        dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-        dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
-        dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-        dbf.setExpandEntityReferences(false);
+            if (pending != null) {
+                int n = Math.min(len, pending.length() - pendingPos);
+                pending.getChars(pendingPos, pendingPos + n, cbuf, off);
+                pendingPos += n;
+                if (pendingPos == pending.length()) pending = null;
+                return n;
+            }
 
-        return dbf.newDocumentBuilder()
-                .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
-    }
+            if (bodyDone) return -1;
 
-    private String wrapXml(String xml) {
-        String trimmed = xml.trim();
-        if (trimmed.startsWith("<?xml")) {
-            int end = trimmed.indexOf("?>");
-            if (end != -1) {
-                String decl = trimmed.substring(0, end + 2);
-                String rest = trimmed.substring(end + 2);
-                return decl + "<ROOT>" + rest + "</ROOT>";
+            int n = in.read(cbuf, off, len);
+            if (n == -1) {
+                bodyDone = true;
+                pending = CLOSE;
+                pendingPos = 0;
+                return read(cbuf, off, len);
             }
+            return n;
         }
-        return "<ROOT>" + xml + "</ROOT>";
-    }
 
-    private String text(Element parent, String tag) {
-        NodeList list = parent.getElementsByTagName(tag);
-        if (list.getLength() == 0) return null;
+        private void skipPrologue() throws IOException {
+            int c;
+            do {
+                c = in.read();
+            } while (c == '\uFEFF' || (c != -1 && Character.isWhitespace(c)));
+
+            if (c == -1) return;
+
+            char[] head = new char[PEEK];
+            head[0] = (char) c;
+            int n = 1;
+            while (n < PEEK) {
+                int x = in.read();
+                if (x == -1) break;
+                head[n++] = (char) x;
+            }
+
+            if (n == PEEK && "<?xml".equals(new String(head))) {
+                // "?>" 까지 XML 선언 소비
+                int prev = -1;
+                while ((c = in.read()) != -1) {
+                    if (prev == '?' && c == '>') return;
+                    prev = c;
+                }
+                return;
+            }
+            in.unread(head, 0, n);
+        }
 
-        String v = list.item(0).getTextContent();
-        return v == null ? null : v.trim();
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
     }
 }
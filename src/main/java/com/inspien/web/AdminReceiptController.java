@@ -1,11 +1,17 @@
 package com.inspien.web;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.inspien.service.AdminReceiptService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 @RestController
@@ -13,7 +19,10 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class AdminReceiptController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final AdminReceiptService adminReceiptService;
+    private final ObjectMapper om = new ObjectMapper();
 
     @PostMapping(
             value = "/receipts/retry",
@@ -25,4 +34,56 @@ public class AdminReceiptController {
     ) {
         return ResponseEntity.ok(adminReceiptService.retryByTraceId(xml, adminKey));
     }
+
+    /**
+     * 일괄 재전송, 한 건 끝날 때마다 결과를 NDJSON 한 줄로 바로 내려보냄
+     * 비동기 응답(StreamingResponseBody)은 async request-timeout 에 걸리므로 요청 스레드에서 직접 씀
+     */
+    @PostMapping(
+            value = "/receipts/retry/bulk",
+            produces = NDJSON
+    )
+    public void bulkRetry(
+        @RequestBody String xml,
+        @RequestHeader(value = "adminkey", required = false) String adminKey,
+        HttpServletResponse response
+    ) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        PrintWriter writer = response.getWriter();
+
+        adminReceiptService.bulkRetry(xml, adminKey, line -> {
+            try {
+                writer.write(om.writeValueAsString(line));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            writer.write('\n');
+            writer.flush();
+            // PrintWriter 는 예외를 삼키므로 연결이 끊겼는지 따로 확인
+            if (writer.checkError()) throw new UncheckedIOException(new IOException("Client disconnected"));
+        });
+    }
+
+    @GetMapping(
+            value = "/receipts/archive",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<Map<String, Object>> archivedReceipt(
+        @RequestParam(value = "traceId", required = false) String traceId,
+        @RequestParam(value = "fileName", required = false) String fileName,
+        @RequestHeader(value = "adminkey", required = false) String adminKey
+    ) {
+        return ResponseEntity.ok(adminReceiptService.findArchived(traceId, fileName, adminKey));
+    }
+
+    @GetMapping(
+            value = "/sftp/circuit",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<Map<String, Object>> sftpCircuit(
+        @RequestHeader(value = "adminkey", required = false) String adminKey
+    ) {
+        return ResponseEntity.ok(adminReceiptService.sftpCircuitStatus(adminKey));
+    }
 }
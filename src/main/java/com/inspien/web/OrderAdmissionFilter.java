@@ -0,0 +1,285 @@
+package com.inspien.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inspien.infra.ReceiptOutbox;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 주문 생성 요청(POST /api/orders, /api/orders/stream) 동시 처리 수 제한
+ * (inspien.admission.enabled=true 일 때만 동작)
+ *
+ * DB / SFTP 가 느려지면 요청 스레드가 OrderService 안에 쌓여서 admin 을 포함한 전체가 멈추므로,
+ * 동시에 처리하는 주문 수를 상황에 맞게 조절하고 넘치는 요청은 잠깐 대기 후 429 로 빠르게 거절
+ *
+ * - 응답 시간이 평소(최소 응답 시간)보다 크게 늘었거나 Hikari 커넥션 대기 스레드가 있으면 한도를 줄임 (x0.9)
+ *   한 번 줄인 뒤에는 줄인 이후에 시작한 요청이 다시 혼잡을 관측해야 또 줄임 (응답 시간 한 번에 최대 1회)
+ *   -> 혼잡 직전에 들어와 있던 요청들이 끝나면서 한도를 연달아 깎아 min-limit 까지 떨어뜨리지 않음
+ * - 그렇지 않고 한도 가까이 사용 중이면 한도를 1씩 늘림
+ * - outbox pending 이 기준치를 넘으면 한도와 별개로 동시 처리 수를 outbox-backlog-limit 으로 제한
+ *   (요청 처리가 느린 게 아니라 영수증 전송이 밀린 것이므로 한도 자체는 그대로 두고, 밀린 게 풀리면 바로 복구)
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class OrderAdmissionFilter extends OncePerRequestFilter {
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    private final DataSource dataSource;
+    private final ReceiptOutbox receiptOutbox;
+
+    @Value("${inspien.admission.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inspien.admission.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${inspien.admission.min-limit:2}")
+    private int minLimit;
+
+    @Value("${inspien.admission.max-limit:200}")
+    private int maxLimit;
+
+    // 한도를 넘었을 때 대기할 수 있는 요청 수 / 최대 대기 시간
+    @Value("${inspien.admission.max-queue:50}")
+    private int maxQueue;
+
+    @Value("${inspien.admission.queue-timeout-ms:100}")
+    private long queueTimeoutMs;
+
+    // 최소 응답 시간 대비 이 배수를 넘으면 혼잡으로 판단
+    @Value("${inspien.admission.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${inspien.admission.outbox-pending-high:1000}")
+    private int outboxPendingHigh;
+
+    // outbox pending 이 기준치를 넘은 동안 허용할 동시 처리 수
+    @Value("${inspien.admission.outbox-backlog-limit:2}")
+    private int outboxBacklogLimit;
+
+    @Value("${inspien.admission.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    // 외부 상태(Hikari, outbox) 확인 주기
+    @Value("${inspien.admission.sample-interval-ms:1000}")
+    private long sampleIntervalMs;
+
+    // 최소 응답 시간을 다시 측정하는 주기 (부하 패턴이 바뀌었을 때 기준이 고정되지 않도록)
+    private static final long MIN_RTT_WINDOW_NS = TimeUnit.SECONDS.toNanos(30);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private double limit = -1;
+    private int inFlight;
+    private int waiting;
+
+    private long minRttNs = Long.MAX_VALUE;
+    private long windowMinRttNs = Long.MAX_VALUE;
+    private long windowStartNs = System.nanoTime();
+
+    // 마지막으로 한도를 줄인 시각, 이보다 먼저 시작한 요청의 혼잡 신호는 이미 반영된 것
+    private long lastDecreaseNs = System.nanoTime();
+
+    private volatile long lastSampleMs;
+    private volatile boolean poolSaturated;
+    private volatile boolean outboxBacklogged;
+    private HikariPoolMXBean hikariPool;
+
+    public OrderAdmissionFilter(DataSource dataSource, ReceiptOutbox receiptOutbox) {
+        this.dataSource = dataSource;
+        this.receiptOutbox = receiptOutbox;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled || !"POST".equals(request.getMethod())) return true;
+        String uri = request.getRequestURI();
+        return !uri.equals("/api/orders") && !uri.equals("/api/orders/stream");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        sample();
+        if (!acquire()) {
+            reject(response);
+            return;
+        }
+
+        long startNs = System.nanoTime();
+        boolean sampleLatency = request.getRequestURI().equals("/api/orders");
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            release(startNs, sampleLatency ? System.nanoTime() - startNs : -1);
+        }
+    }
+
+    private boolean acquire() {
+        lock.lock();
+        try {
+            if (limit < 0) limit = initialLimit;
+
+            if (inFlight < effectiveLimit()) {
+                inFlight++;
+                return true;
+            }
+            if (waiting >= maxQueue) return false;
+
+            waiting++;
+            try {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+                while (inFlight >= effectiveLimit()) {
+                    if (nanos <= 0) return false;
+                    nanos = released.awaitNanos(nanos);
+                }
+                inFlight++;
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 현재 동시 처리 가능 수 (outbox 가 밀린 동안은 별도 상한 적용)
+    private int effectiveLimit() {
+        int l = (int) limit;
+        return outboxBacklogged ? Math.min(l, outboxBacklogLimit) : l;
+    }
+
+    // rttNs < 0 : 응답 시간은 반영하지 않음 (스트리밍 입력은 문서 크기에 따라 시간이 달라짐)
+    private void release(long startNs, long rttNs) {
+        sample();
+
+        lock.lock();
+        try {
+            if (rttNs >= 0) {
+                updateMinRtt(rttNs);
+            }
+
+            boolean congested = poolSaturated
+                    || (rttNs >= 0 && minRttNs != Long.MAX_VALUE && rttNs > minRttNs * latencyTolerance);
+
+            int before = effectiveLimit();
+            if (congested) {
+                // 마지막으로 줄인 뒤에 시작한 요청만 다시 줄일 수 있음
+                if (startNs - lastDecreaseNs > 0) {
+                    limit = Math.max(minLimit, limit * 0.9);
+                    lastDecreaseNs = System.nanoTime();
+                }
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+
+            inFlight--;
+            if (effectiveLimit() > before) {
+                // 자리가 2개 이상 생김
+                released.signalAll();
+            } else {
+                released.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void updateMinRtt(long rttNs) {
+        long now = System.nanoTime();
+        if (now - windowStartNs > MIN_RTT_WINDOW_NS) {
+            // 직전 구간의 최소값을 새 기준으로 사용
+            if (windowMinRttNs != Long.MAX_VALUE) minRttNs = windowMinRttNs;
+            windowMinRttNs = Long.MAX_VALUE;
+            windowStartNs = now;
+        }
+        windowMinRttNs = Math.min(windowMinRttNs, rttNs);
+        minRttNs = Math.min(minRttNs, rttNs);
+    }
+
+    /**
+     * Hikari 커넥션 대기 스레드 / outbox pending 건수 확인
+     * 매 요청마다 폴더를 읽지 않도록 sample-interval-ms 동안은 이전 결과 사용
+     */
+    private void sample() {
+        long now = System.currentTimeMillis();
+        if (now - lastSampleMs < sampleIntervalMs) return;
+        lastSampleMs = now;
+
+        boolean waiters = false;
+        try {
+            HikariPoolMXBean pool = hikariPool();
+            if (pool != null && pool.getThreadsAwaitingConnection() > 0) waiters = true;
+        } catch (Exception e) {
+            log.debug("Hikari pool sample failed: {}", e.getMessage());
+        }
+        poolSaturated = waiters;
+
+        boolean backlogged = receiptOutbox.pendingCount() >= outboxPendingHigh;
+        if (outboxBacklogged && !backlogged) {
+            // 상한이 풀렸으므로 대기 중인 요청을 모두 깨움
+            lock.lock();
+            try {
+                outboxBacklogged = false;
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        outboxBacklogged = backlogged;
+    }
+
+    private HikariPoolMXBean hikariPool() throws Exception {
+        if (hikariPool == null && dataSource.isWrapperFor(HikariDataSource.class)) {
+            // 풀이 아직 시작되지 않았으면 null
+            hikariPool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        }
+        return hikariPool;
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        String traceId = MDC.get("traceId");
+        log.warn("Order request rejected by admission control. traceId={}, limit={}, inFlight={}",
+                traceId, (int) limit, inFlight);
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("traceId", traceId);
+        body.put("success", false);
+        body.put("message", "Server is busy. Retry after " + retryAfterSeconds + " seconds.");
+        response.getWriter().write(om.writeValueAsString(body));
+    }
+}
@@ -1,15 +1,24 @@
 package com.inspien.web;
 
 import com.inspien.dto.OrderPreviewDTO;
+import com.inspien.service.ApplicantRegistry;
 import com.inspien.service.OrderService;
+import com.inspien.service.PreviewTokenCache;
+import com.inspien.service.ReceiptDeliveryService;
 import com.inspien.util.OrderPreviewMapper;
+import com.inspien.util.OrderValidationException;
 import com.inspien.util.OrderXmlParser;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.slf4j.MDC;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,24 +28,27 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class OrderController {
 
-    @Value("${inspien.applicant-key}")
-    private String applicantKey;
-
     private final OrderXmlParser xmlParser;
     private final OrderPreviewMapper previewMapper;
 
     private final OrderService orderService;
+    private final ReceiptDeliveryService receiptDeliveryService;
+    private final PreviewTokenCache previewTokenCache;
+    private final ApplicantRegistry applicantRegistry;
 
     @PostMapping(
             value = "/orders/preview",
             produces = MediaType.APPLICATION_JSON_VALUE
     )   
-    public ResponseEntity<?> preview(@RequestBody String xml) {
+    public ResponseEntity<?> preview(@RequestBody String xml,
+                                     @RequestHeader(value = ApplicantRegistry.APPLICANT_KEY_HEADER, required = false) String applicantHeader) {
         String traceId = MDC.get("traceId");
 
         try {
+            String applicantKey = applicantRegistry.resolve(applicantHeader);
             var parsed = xmlParser.parse(xml);
-            var rows = previewMapper.toOrderRows(parsed.headers(), parsed.items(), applicantKey);
+            var batch = previewMapper.toBatch(parsed.headers(), parsed.items(), applicantKey);
+            var rows = batch.toOrderRows();
 
             return ResponseEntity.ok(
                     OrderPreviewDTO.builder()
@@ -44,10 +56,12 @@ public class OrderController {
                             .success(true)
                             .recordCount(rows.size())
                             .rows(rows)
+                            .previewToken(previewTokenCache.issue(xml, applicantKey, batch))
                             .build()
             );
 
         } catch (IllegalArgumentException e) {
+            OrderValidationException ve = e instanceof OrderValidationException v ? v : null;
 
             return ResponseEntity.badRequest().body(
                     OrderPreviewDTO.builder()
@@ -56,6 +70,8 @@ public class OrderController {
                             .recordCount(0)
                             .rows(null)
                             .message(e.getMessage())
+                            .errorCount(ve == null ? null : ve.getErrorCount())
+                            .errors(ve == null ? null : ve.getErrors())
                             .build()
             );
         }
@@ -65,11 +81,69 @@ public class OrderController {
             value = "/orders",
             produces = MediaType.APPLICATION_JSON_VALUE
     )
-    public ResponseEntity<?> createOrder(@RequestBody String xml) {
+    public ResponseEntity<?> createOrder(@RequestBody String xml,
+                                         @RequestHeader(value = "X-Preview-Token", required = false) String previewToken,
+                                         @RequestHeader(value = ApplicantRegistry.APPLICANT_KEY_HEADER, required = false) String applicantHeader,
+                                         HttpServletRequest request) {
+        String traceId = MDC.get("traceId");
+
+        // 요청자가 X-Trace-Id 를 보낸 경우 같은 traceId 의 재요청은 처음 결과를 그대로 돌려줌
+        String idempotencyKey = Boolean.TRUE.equals(request.getAttribute(TraceIdFilter.TRACE_ID_SUPPLIED_KEY))
+                ? traceId
+                : null;
+
+        try {
+            String applicantKey = applicantRegistry.resolve(applicantHeader);
+
+            // applicant 별 동시 처리 수 제한
+            try (var permit = applicantRegistry.enter(applicantKey)) {
+                return accepted(orderService.create(applicantKey, xml, idempotencyKey, previewToken));
+            }
+        } catch (ApplicantRegistry.TenantBusyException e) {
+            return busy(traceId, e);
+        } catch (OrderValidationException e) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("traceId", traceId);
+            body.put("success", false);
+            body.put("message", e.getMessage());
+            body.put("errorCount", e.getErrorCount());
+            body.put("errors", e.getErrors());
+            return ResponseEntity.badRequest().body(body);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "traceId", traceId,
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * 대용량 문서용 스트리밍 입력
+     * 본문을 String 으로 받지 않고 InputStream 에서 바로 읽으면서 chunk 단위로 저장
+     */
+    @PostMapping(
+            value = "/orders/stream",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<?> createOrderStream(
+            @RequestHeader(value = ApplicantRegistry.APPLICANT_KEY_HEADER, required = false) String applicantHeader,
+            HttpServletRequest request) {
         String traceId = MDC.get("traceId");
 
         try {
-            return ResponseEntity.ok(orderService.create(xml));
+            String applicantKey = applicantRegistry.resolve(applicantHeader);
+
+            Charset charset = request.getCharacterEncoding() == null
+                    ? StandardCharsets.UTF_8
+                    : Charset.forName(request.getCharacterEncoding());
+
+            try (var permit = applicantRegistry.enter(applicantKey)) {
+                return accepted(orderService.createStreaming(applicantKey,
+                        new InputStreamReader(request.getInputStream(), charset)));
+            }
+        } catch (ApplicantRegistry.TenantBusyException e) {
+            return busy(traceId, e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
                     "traceId", traceId,
@@ -78,4 +152,43 @@ public class OrderController {
             ));
         }
     }
+
+    /**
+     * 영수증 전송 상태 조회 (PENDING / SENT / FAILED)
+     * 비동기 전송 모드에서 주문 요청이 202 로 응답된 뒤 결과 확인용
+     */
+    @GetMapping(
+            value = "/orders/receipts/{traceId}",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<?> receiptStatus(@PathVariable String traceId) {
+        Map<String, Object> status = receiptDeliveryService.status(traceId);
+
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                    "traceId", traceId,
+                    "success", false,
+                    "message", "No receipt found for this traceId."
+            ));
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    private ResponseEntity<?> busy(String traceId, ApplicantRegistry.TenantBusyException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", "1")
+                .body(Map.of(
+                        "traceId", traceId,
+                        "success", false,
+                        "message", e.getMessage()
+                ));
+    }
+
+    // 비동기 전송 모드로 처리된 경우 202 Accepted
+    private ResponseEntity<?> accepted(Map<String, Object> result) {
+        if ("PENDING".equals(result.get("deliveryStatus"))) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
 }
@@ -6,6 +6,8 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 
 import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -14,6 +16,7 @@ import java.util.UUID;
 
 @Slf4j
 @Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // 다른 필터(OrderAdmissionFilter 등)보다 먼저 traceId 부여
 public class TraceIdFilter extends OncePerRequestFilter {
 
     //OncePerRequestFilter : 같은 요청에 대해서 필터가 딱 한 번만 실행되도록 보장
@@ -22,17 +25,22 @@ public class TraceIdFilter extends OncePerRequestFilter {
     public static final String TRACE_ID_KEY = "traceId";
     public static final String TRACE_ID_HEADER = "X-Trace-Id";
 
+    // 요청자가 X-Trace-Id 를 직접 보냈는지 여부 (보낸 경우에만 중복 요청 판단 key 로 사용)
+    public static final String TRACE_ID_SUPPLIED_KEY = "traceIdSupplied";
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws IOException, jakarta.servlet.ServletException {
 
         String traceId = request.getHeader(TRACE_ID_HEADER);
-        if (traceId == null || traceId.isBlank()) {
+        boolean supplied = traceId != null && !traceId.isBlank();
+        if (!supplied) {
             traceId = UUID.randomUUID().toString().replace("-", "");
         }
 
         MDC.put(TRACE_ID_KEY, traceId);
         request.setAttribute(TRACE_ID_KEY, traceId);
+        request.setAttribute(TRACE_ID_SUPPLIED_KEY, supplied);
         response.setHeader(TRACE_ID_HEADER, traceId);
 
         long startNs = System.nanoTime();
@@ -0,0 +1,245 @@
+package com.inspien.infra;
+
+import com.inspien.mapper.ReceiptOutboxMapper;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * DatabaseMetaStore 를 H2(Oracle 호환 모드)에서 실행
+ * 같은 DB 를 보는 두 노드(nodeA, nodeB)로 선점 / 임대 만료 / 중단된 전송 회수 확인
+ */
+class DatabaseMetaStoreTest {
+
+    private static final String DDL = """
+            CREATE TABLE RECEIPT_OUTBOX_TB (
+                FILE_NAME       VARCHAR2(200) PRIMARY KEY,
+                TRACE_ID        VARCHAR2(100),
+                LOCATION        VARCHAR2(10)  NOT NULL,
+                RETRYABLE       CHAR(1)       DEFAULT 'N' NOT NULL,
+                NEXT_ATTEMPT_AT NUMBER(19)    NOT NULL,
+                META_JSON       CLOB          NOT NULL,
+                LEASE_OWNER     VARCHAR2(100),
+                LEASE_UNTIL     TIMESTAMP,
+                UPDATED_AT      TIMESTAMP     DEFAULT SYSTIMESTAMP NOT NULL
+            )
+            """;
+
+    private DriverManagerDataSource dataSource;
+    private DataSourceTransactionManager txManager;
+    private ReceiptOutboxMapper mapper;
+    private DatabaseMetaStore nodeA;
+    private DatabaseMetaStore nodeB;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:outbox-" + System.nanoTime() + ";MODE=Oracle;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=100");
+        new JdbcTemplate(dataSource).execute(DDL);
+
+        SqlSessionFactoryBean factory = new SqlSessionFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setMapperLocations(new ClassPathResource("mapper/ReceiptOutboxMapper.xml"));
+        SqlSessionFactory sqlSessionFactory = factory.getObject();
+
+        mapper = new SqlSessionTemplate(sqlSessionFactory).getMapper(ReceiptOutboxMapper.class);
+        txManager = new DataSourceTransactionManager(dataSource);
+        nodeA = store("nodeA", 300, 600);
+        nodeB = store("nodeB", 300, 600);
+    }
+
+    @AfterEach
+    void tearDown() {
+        new JdbcTemplate(dataSource).execute("SHUTDOWN");
+    }
+
+    @Test
+    void claimDueReturnsDueRowsOldestFirstAndLeasesThem() {
+        long now = System.currentTimeMillis();
+        nodeA.write(ReceiptOutbox.PENDING, failedMeta("r3", now - 1_000));
+        nodeA.write(ReceiptOutbox.PENDING, failedMeta("r1", now - 3_000));
+        nodeA.write(ReceiptOutbox.PENDING, failedMeta("r2", now - 2_000));
+        nodeA.write(ReceiptOutbox.PENDING, failedMeta("later", now + 60_000));
+        nodeA.write(ReceiptOutbox.PENDING, freshMeta("inflight"));
+        nodeA.write(ReceiptOutbox.SENT, failedMeta("sent", now - 5_000));
+
+        assertThat(nodeA.claimDue(2)).containsExactly("r1", "r2");
+        // nodeA 가 임대 중인 행은 건너뛰고 나머지만
+        assertThat(nodeB.claimDue(10)).containsExactly("r3");
+        assertThat(nodeA.claimDue(10)).isEmpty();
+    }
+
+    @Test
+    void lockedRowsAreSkippedInsteadOfCuttingTheResultShort() throws Exception {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            nodeA.write(ReceiptOutbox.PENDING, failedMeta("r" + i, now - 10_000 + i));
+        }
+
+        // 다른 노드가 가장 오래된 두 행을 잠근 채로 트랜잭션 진행 중
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holder = other.submit(() -> new TransactionTemplate(txManager).executeWithoutResult(status -> {
+                new JdbcTemplate(dataSource).queryForList(
+                        "SELECT FILE_NAME FROM RECEIPT_OUTBOX_TB WHERE FILE_NAME IN ('r0', 'r1') FOR UPDATE");
+                locked.countDown();
+                try {
+                    done.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertThat(locked.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(nodeB.claimDue(2)).containsExactly("r2", "r3");
+
+            done.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+        } finally {
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    void expiredLeaseCanBeTakenOverByAnotherNode() throws Exception {
+        DatabaseMetaStore shortLease = store("nodeA", 0, 600);
+        shortLease.write(ReceiptOutbox.PENDING, failedMeta("r1", System.currentTimeMillis() - 1_000));
+
+        assertThat(shortLease.claimDue(10)).containsExactly("r1");
+        Thread.sleep(20);
+
+        assertThat(nodeB.claimDue(10)).containsExactly("r1");
+        assertThat(shortLease.tryLease("r1")).isFalse();
+    }
+
+    @Test
+    void tryLeaseIsExclusiveUntilReleased() {
+        nodeA.write(ReceiptOutbox.PENDING, freshMeta("r1"));
+
+        assertThat(nodeA.tryLease("r1")).isTrue();
+        assertThat(nodeA.tryLease("r1")).isTrue();
+        assertThat(nodeB.tryLease("r1")).isFalse();
+
+        // 다른 노드의 반납은 무시됨
+        nodeB.releaseLease("r1");
+        assertThat(nodeB.tryLease("r1")).isFalse();
+
+        nodeA.releaseLease("r1");
+        assertThat(nodeB.tryLease("r1")).isTrue();
+    }
+
+    @Test
+    void leaseHeldDuringALongUploadIsRenewedUntilReleased() throws Exception {
+        DatabaseMetaStore uploading = store("nodeA", 1, 600);
+        uploading.write(ReceiptOutbox.PENDING, failedMeta("r1", System.currentTimeMillis() - 1_000));
+        assertThat(uploading.claimDue(10)).containsExactly("r1");
+
+        // 전송이 임대 시간(1초)보다 오래 걸려도 연장되는 동안은 다른 노드가 가져가지 못함
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(500);
+            uploading.renewLeases();
+        }
+        assertThat(nodeB.claimDue(10)).isEmpty();
+        assertThat(nodeB.tryLease("r1")).isFalse();
+
+        // 반납한 뒤로는 연장하지 않음
+        uploading.releaseLease("r1");
+        assertThat(nodeB.tryLease("r1")).isTrue();
+        uploading.renewLeases();
+        assertThat(uploading.tryLease("r1")).isFalse();
+    }
+
+    @Test
+    void lostLeaseIsNotRenewedOverTheNewOwner() throws Exception {
+        DatabaseMetaStore slow = store("nodeA", 0, 600);
+        slow.write(ReceiptOutbox.PENDING, freshMeta("r1"));
+        assertThat(slow.tryLease("r1")).isTrue();
+        Thread.sleep(20);
+
+        // 연장이 늦어서 만료된 사이 다른 노드가 가져감
+        assertThat(nodeB.tryLease("r1")).isTrue();
+        slow.renewLeases();
+
+        assertThat(new JdbcTemplate(dataSource).queryForObject(
+                "SELECT LEASE_OWNER FROM RECEIPT_OUTBOX_TB WHERE FILE_NAME = 'r1'", String.class)).isEqualTo("nodeB");
+        assertThat(nodeA.tryLease("r1")).isFalse();
+    }
+
+    @Test
+    void staleInFlightRowIsMarkedInterruptedAndClaimed() throws Exception {
+        nodeA.write(ReceiptOutbox.PENDING, freshMeta("inflight"));
+        assertThat(nodeB.claimDue(10)).isEmpty();
+
+        DatabaseMetaStore impatient = store("nodeB", 300, 0);
+        Thread.sleep(20);
+        assertThat(impatient.claimDue(10)).containsExactly("inflight");
+
+        ReceiptMetaDTO meta = nodeA.read(ReceiptOutbox.PENDING, "inflight");
+        assertThat(meta.getLastError()).isEqualTo("INTERRUPTED_BEFORE_DELIVERY");
+        assertThat(nodeA.tryLease("inflight")).isFalse();
+    }
+
+    @Test
+    void sharedLookupsFollowMovesAndRenames() throws Exception {
+        ReceiptMetaDTO meta = failedMeta("old.txt", System.currentTimeMillis());
+        meta.setTraceId("trace-1");
+        nodeA.write(ReceiptOutbox.PENDING, meta);
+
+        nodeA.rename(ReceiptOutbox.PENDING, "old.txt", "new.txt");
+        assertThat(nodeB.locationOf("old.txt")).isNull();
+        assertThat(nodeB.locationOf("new.txt")).isEqualTo(ReceiptOutbox.PENDING);
+        assertThat(nodeB.countPending()).isEqualTo(1);
+
+        assertThat(nodeB.move("new.txt", ReceiptOutbox.PENDING, ReceiptOutbox.SENT)).isTrue();
+        assertThat(nodeA.findByTraceId("trace-1").location()).isEqualTo(ReceiptOutbox.SENT);
+        assertThat(nodeA.exists(ReceiptOutbox.PENDING, "new.txt")).isFalse();
+        assertThat(nodeA.countPending()).isZero();
+    }
+
+    private DatabaseMetaStore store(String nodeId, int leaseSeconds, int staleAfterSeconds) {
+        DatabaseMetaStore store = new DatabaseMetaStore(mapper, txManager);
+        ReflectionTestUtils.setField(store, "nodeId", nodeId);
+        ReflectionTestUtils.setField(store, "leaseSeconds", leaseSeconds);
+        ReflectionTestUtils.setField(store, "staleAfterSeconds", staleAfterSeconds);
+        return store;
+    }
+
+    private static ReceiptMetaDTO failedMeta(String fileName, long nextAttemptAt) {
+        ReceiptMetaDTO meta = freshMeta(fileName);
+        meta.setAttempts(1);
+        meta.setLastError("SFTP_FAIL: test");
+        meta.setNextAttemptAtEpochMs(nextAttemptAt);
+        return meta;
+    }
+
+    // 실패 이력 없는 meta (전송 중)
+    private static ReceiptMetaDTO freshMeta(String fileName) {
+        ReceiptMetaDTO meta = new ReceiptMetaDTO();
+        meta.setTraceId("trace-" + fileName);
+        meta.setApplicantKey("KEY");
+        meta.setFileName(fileName);
+        meta.setOrderIds(List.of("A001"));
+        meta.setNextAttemptAtEpochMs(Long.MAX_VALUE);
+        return meta;
+    }
+}
@@ -0,0 +1,229 @@
+package com.inspien.infra;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JournalMetaStore 재시작 복원 확인
+ * 같은 폴더로 store 를 다시 열어서 서버 재시작 / 비정상 종료 후 상태를 확인
+ */
+class JournalMetaStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<JournalMetaStore> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(JournalMetaStore::close);
+    }
+
+    @Test
+    void replayRestoresPutMoveRenameAndDelete() throws Exception {
+        JournalMetaStore store = open(64 * 1024, 16 * 1024 * 1024);
+        store.write(ReceiptOutbox.PENDING, meta("a", 0));
+        store.write(ReceiptOutbox.PENDING, meta("b", 0));
+        store.write(ReceiptOutbox.PENDING, meta("c", 0));
+        store.write(ReceiptOutbox.PENDING, meta("a", 2));
+        store.move("a", ReceiptOutbox.PENDING, ReceiptOutbox.SENT);
+        // 관리자 재전송과 같이 이름 변경 후 바뀐 이름으로 meta 내용 반영
+        store.rename(ReceiptOutbox.PENDING, "b", "b2");
+        ReceiptMetaDTO renamed = store.read(ReceiptOutbox.PENDING, "b2");
+        renamed.setFileName("b2");
+        store.write(ReceiptOutbox.PENDING, renamed);
+        store.delete(ReceiptOutbox.PENDING, "c");
+        close(store);
+
+        JournalMetaStore reopened = open(64 * 1024, 16 * 1024 * 1024);
+        assertThat(reopened.exists(ReceiptOutbox.PENDING, "a")).isFalse();
+        assertThat(reopened.read(ReceiptOutbox.SENT, "a").getAttempts()).isEqualTo(2);
+        assertThat(reopened.exists(ReceiptOutbox.PENDING, "b")).isFalse();
+        assertThat(reopened.read(ReceiptOutbox.PENDING, "b2").getTraceId()).isEqualTo("trace-b");
+        assertThat(reopened.exists(ReceiptOutbox.PENDING, "c")).isFalse();
+        assertThat(fileNames(reopened, ReceiptOutbox.PENDING)).containsExactly("b2");
+    }
+
+    @Test
+    void tornTailIsTruncatedAndLaterWritesAreKept() throws Exception {
+        JournalMetaStore store = open(64 * 1024, 16 * 1024 * 1024);
+        store.write(ReceiptOutbox.PENDING, meta("a", 0));
+        store.write(ReceiptOutbox.PENDING, meta("b", 0));
+        close(store);
+
+        // 레코드를 쓰는 도중 서버가 꺼진 상황: 길이/CRC 와 내용 일부만 기록됨
+        Path segment = segment(1);
+        long goodSize = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 5, 6}, StandardOpenOption.APPEND);
+
+        JournalMetaStore reopened = open(64 * 1024, 16 * 1024 * 1024);
+        assertThat(fileNames(reopened, ReceiptOutbox.PENDING)).containsExactlyInAnyOrder("a", "b");
+        assertThat(Files.size(segment)).isEqualTo(goodSize);
+
+        // 잘라낸 위치부터 이어서 기록
+        reopened.write(ReceiptOutbox.PENDING, meta("c", 0));
+        close(reopened);
+
+        assertThat(fileNames(open(64 * 1024, 16 * 1024 * 1024), ReceiptOutbox.PENDING))
+                .containsExactlyInAnyOrder("a", "b", "c");
+    }
+
+    @Test
+    void checksumMismatchStopsReplayAtTheCorruptRecord() throws Exception {
+        JournalMetaStore store = open(64 * 1024, 16 * 1024 * 1024);
+        store.write(ReceiptOutbox.PENDING, meta("a", 0));
+        long firstRecordEnd = Files.size(segment(1));
+        store.write(ReceiptOutbox.PENDING, meta("b", 0));
+        close(store);
+
+        // 마지막 레코드 내용 1byte 변조
+        Path segment = segment(1);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 0x5A;
+        Files.write(segment, bytes);
+
+        JournalMetaStore reopened = open(64 * 1024, 16 * 1024 * 1024);
+        assertThat(fileNames(reopened, ReceiptOutbox.PENDING)).containsExactly("a");
+        assertThat(Files.size(segment)).isEqualTo(firstRecordEnd);
+    }
+
+    @Test
+    void crashDuringCompactionReplaysToTheSameState() throws Exception {
+        // segment 를 작게 잡아서 여러 파일로 나뉘게 하고, 같은 영수증을 계속 덮어써서 compaction 대상으로
+        JournalMetaStore store = open(512, 0);
+        Map<String, Integer> expected = new HashMap<>();
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 5; i++) {
+                store.write(ReceiptOutbox.PENDING, meta("r" + i, round));
+                expected.put("r" + i, round);
+            }
+        }
+        store.move("r0", ReceiptOutbox.PENDING, ReceiptOutbox.FAILED);
+        store.delete(ReceiptOutbox.PENDING, "r1");
+        expected.remove("r1");
+
+        List<Path> before = segments();
+        assertThat(before).hasSizeGreaterThan(2);
+        Map<Path, byte[]> oldSegments = new HashMap<>();
+        for (Path p : before.subList(0, before.size() - 1)) {
+            oldSegments.put(p, Files.readAllBytes(p));
+        }
+
+        store.compact();
+        assertThat(segments()).hasSize(2);
+
+        // compaction 뒤에 기록한 내용도 유지되어야 함
+        store.write(ReceiptOutbox.PENDING, meta("r5", 0));
+        expected.put("r5", 0);
+        close(store);
+
+        // snapshot 교체 후 이전 segment 삭제 전에 서버가 죽은 상황 + 쓰다 만 snapshot 임시 파일
+        for (Map.Entry<Path, byte[]> e : oldSegments.entrySet()) {
+            Files.write(e.getKey(), e.getValue());
+        }
+        Path leftoverTmp = dir.resolve("journal").resolve("journal-000099.log.tmp");
+        Files.write(leftoverTmp, new byte[]{1, 2, 3});
+
+        JournalMetaStore reopened = open(512, 0);
+        assertThat(Files.exists(leftoverTmp)).isFalse();
+        assertThat(reopened.read(ReceiptOutbox.FAILED, "r0").getAttempts()).isEqualTo(19);
+        assertThat(reopened.exists(ReceiptOutbox.PENDING, "r1")).isFalse();
+
+        Map<String, Integer> actual = new HashMap<>();
+        reopened.forEach(ReceiptOutbox.PENDING, m -> actual.put(m.getFileName(), m.getAttempts()));
+        reopened.forEach(ReceiptOutbox.FAILED, m -> actual.put(m.getFileName(), m.getAttempts()));
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void concurrentWritesAreAllDurableWithGroupFsync() throws Exception {
+        JournalMetaStore store = open(4096, 16 * 1024 * 1024);
+
+        int threads = 8;
+        int perThread = 50;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        store.write(ReceiptOutbox.PENDING, meta("t" + id + "-" + i, 0));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        close(store);
+
+        // 작은 segment 로 넘어가는 동안에도 빠진 기록이 없어야 함
+        assertThat(fileNames(open(4096, 16 * 1024 * 1024), ReceiptOutbox.PENDING)).hasSize(threads * perThread);
+        assertThat(segments()).hasSizeGreaterThan(1);
+    }
+
+    private JournalMetaStore open(long segmentBytes, long compactMinBytes) throws IOException {
+        JournalMetaStore store = new JournalMetaStore();
+        ReflectionTestUtils.setField(store, "outboxDir", dir.toString());
+        ReflectionTestUtils.setField(store, "segmentBytes", segmentBytes);
+        ReflectionTestUtils.setField(store, "fsync", true);
+        ReflectionTestUtils.setField(store, "compactMinBytes", compactMinBytes);
+        store.open();
+        opened.add(store);
+        return store;
+    }
+
+    // 서버 종료
+    private void close(JournalMetaStore store) {
+        store.close();
+        opened.remove(store);
+    }
+
+    private Path segment(int no) {
+        return dir.resolve("journal").resolve(String.format("journal-%06d.log", no));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve("journal"))) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static List<String> fileNames(JournalMetaStore store, String location) {
+        List<String> res = new ArrayList<>();
+        store.forEach(location, m -> res.add(m.getFileName()));
+        return res;
+    }
+
+    private static ReceiptMetaDTO meta(String fileName, int attempts) {
+        ReceiptMetaDTO meta = new ReceiptMetaDTO();
+        meta.setTraceId("trace-" + fileName);
+        meta.setFileName(fileName);
+        meta.setAttempts(attempts);
+        return meta;
+    }
+}
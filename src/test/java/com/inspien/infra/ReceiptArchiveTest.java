@@ -0,0 +1,150 @@
+package com.inspien.infra;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ReceiptArchive 보관 / 조회 / 중단 후 재시작 복구 확인
+ * 재시작은 같은 폴더로 outbox 와 archive 를 다시 만들어서 흉내냄
+ */
+class ReceiptArchiveTest {
+
+    private static final String OLD_1 = "INSPIEN_T_20250101090000.txt";
+    private static final String OLD_2 = "INSPIEN_T_20250101180000.txt";
+
+    @TempDir
+    Path dir;
+
+    private ReceiptOutbox outbox;
+    private ReceiptArchive archive;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        restart();
+        sent(OLD_1, "trace-1", "A000^first\n");
+        sent(OLD_2, "trace-2", "A001^second\n");
+    }
+
+    @Test
+    void oldSentReceiptsAreMovedIntoADailyZipAndStayReadable() throws Exception {
+        String today = "INSPIEN_T_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + ".txt";
+        sent(today, "trace-today", "A002^today\n");
+
+        assertThat(archive.archiveSent()).isEqualTo(2);
+
+        assertThat(archiveNames()).containsExactly("sent-2025-01-01.zip", "sent-2025-01-01.zip.idx");
+        assertThat(outbox.fileNames(ReceiptOutbox.SENT)).containsExactly(today);
+        assertThat(Files.exists(outbox.sentDir().resolve(OLD_1))).isFalse();
+
+        ReceiptArchive.Archived found = archive.read(archive.findByTraceId("trace-1"));
+        assertThat(found.receipt()).isEqualTo("A000^first\n");
+        assertThat(found.meta().getFileName()).isEqualTo(OLD_1);
+        assertThat(archive.findByFileName(OLD_2).traceId()).isEqualTo("trace-2");
+    }
+
+    @Test
+    void indexIsRebuiltFromIdxFilesAfterARestart() throws Exception {
+        archive.archiveSent();
+
+        restart();
+
+        assertThat(archive.read(archive.findByTraceId("trace-2")).receipt()).isEqualTo("A001^second\n");
+        assertThat(archive.findByFileName(OLD_1).archive()).isEqualTo("sent-2025-01-01.zip");
+    }
+
+    @Test
+    void zipLeftWithoutIndexIsDroppedAndTheReceiptsAreArchivedAgain() throws Exception {
+        // zip rename 직후 idx rename 전에 중단: sent 는 그대로, zip 만 있고 idx 없음 (+ 쓰다 만 .tmp)
+        Files.writeString(archive.archiveDir().resolve("sent-2025-01-01.zip"), "half written");
+        Files.writeString(archive.archiveDir().resolve("sent-2025-01-01.zip.idx.tmp"), OLD_1 + "\ttrace-1\n");
+
+        restart();
+
+        assertThat(archiveNames()).isEmpty();
+        assertThat(archive.findByTraceId("trace-1")).isNull();
+
+        assertThat(archive.archiveSent()).isEqualTo(2);
+        assertThat(archiveNames()).containsExactly("sent-2025-01-01.zip", "sent-2025-01-01.zip.idx");
+        assertThat(archive.read(archive.findByTraceId("trace-1")).receipt()).isEqualTo("A000^first\n");
+    }
+
+    @Test
+    void receiptsLeftInSentAfterTheIndexWasWrittenAreNotArchivedTwice() throws Exception {
+        // zip / idx 확정 후 sent 에서 지우기 전에 중단: 지워질 파일을 미리 복사해 두었다가 되돌림
+        Path backup = Files.createDirectory(dir.resolve("backup"));
+        List<Path> sentFiles = list(outbox.sentDir());
+        for (Path p : sentFiles) Files.copy(p, backup.resolve(p.getFileName()));
+        archive.archiveSent();
+        for (Path p : sentFiles) Files.copy(backup.resolve(p.getFileName()), p);
+
+        restart();
+        assertThat(outbox.fileNames(ReceiptOutbox.SENT)).containsExactlyInAnyOrder(OLD_1, OLD_2);
+
+        assertThat(archive.archiveSent()).isZero();
+
+        assertThat(list(outbox.sentDir())).isEmpty();
+        assertThat(outbox.fileNames(ReceiptOutbox.SENT)).isEmpty();
+        // -2 zip 이 새로 생기지 않음
+        assertThat(archiveNames()).containsExactly("sent-2025-01-01.zip", "sent-2025-01-01.zip.idx");
+        assertThat(archive.read(archive.findByTraceId("trace-1")).receipt()).isEqualTo("A000^first\n");
+    }
+
+    @Test
+    void expiredArchivesAreRemovedWithTheirIndexEntries() throws Exception {
+        archive.archiveSent();
+
+        ReflectionTestUtils.setField(archive, "retentionDays", 30);
+        assertThat(archive.pruneExpired()).isEqualTo(1);
+
+        assertThat(archiveNames()).isEmpty();
+        assertThat(archive.findByTraceId("trace-1")).isNull();
+        assertThat(archive.findByFileName(OLD_2)).isNull();
+    }
+
+    private void restart() {
+        FileMetaStore metaStore = new FileMetaStore();
+        ReflectionTestUtils.setField(metaStore, "outboxDir", dir.toString());
+
+        outbox = new ReceiptOutbox(metaStore);
+        ReflectionTestUtils.setField(outbox, "outboxDir", dir.toString());
+        outbox.rebuildIndex();
+
+        archive = new ReceiptArchive(outbox);
+        ReflectionTestUtils.setField(archive, "outboxDir", dir.toString());
+        ReflectionTestUtils.setField(archive, "minAgeDays", 1);
+        ReflectionTestUtils.setField(archive, "retentionDays", 0);
+        archive.loadIndex();
+    }
+
+    private void sent(String fileName, String traceId, String content) throws Exception {
+        ReceiptMetaDTO meta = new ReceiptMetaDTO();
+        meta.setTraceId(traceId);
+        meta.setApplicantKey("APP");
+        meta.setFileName(fileName);
+        meta.setOrderIds(List.of());
+        outbox.writeMetaToPending(meta);
+        Files.writeString(outbox.pendingDir().resolve(fileName), content);
+        outbox.markSent(fileName);
+    }
+
+    private List<String> archiveNames() throws Exception {
+        return list(archive.archiveDir()).stream().map(p -> p.getFileName().toString()).sorted().toList();
+    }
+
+    private static List<Path> list(Path d) throws Exception {
+        try (Stream<Path> files = Files.list(d)) {
+            return files.toList();
+        }
+    }
+}
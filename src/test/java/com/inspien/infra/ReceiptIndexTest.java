@@ -0,0 +1,107 @@
+package com.inspien.infra;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReceiptIndexTest {
+
+    private final ReceiptIndex index = new ReceiptIndex();
+
+    @Test
+    void onlyPendingReceiptsWithFailureHistoryAreDueInRetryOrder() {
+        long now = System.currentTimeMillis();
+        index.put(ReceiptOutbox.PENDING, meta("t3", "r3", 1, now - 1_000));
+        index.put(ReceiptOutbox.PENDING, meta("t1", "r1", 2, now - 3_000));
+        index.put(ReceiptOutbox.PENDING, meta("t2", "r2", 1, now - 2_000));
+        index.put(ReceiptOutbox.PENDING, meta("t4", "later", 1, now + 60_000));
+        index.put(ReceiptOutbox.PENDING, meta("t5", "fresh", 0, now - 5_000));
+        index.put(ReceiptOutbox.FAILED, meta("t6", "failed", 5, now - 5_000));
+
+        assertThat(index.dueFileNames(now, 10)).containsExactly("r1", "r2", "r3");
+        assertThat(index.dueFileNames(now, 2)).containsExactly("r1", "r2");
+        assertThat(index.pendingCount()).isEqualTo(5);
+    }
+
+    @Test
+    void putReplacesThePreviousRetrySchedule() {
+        long now = System.currentTimeMillis();
+        index.put(ReceiptOutbox.PENDING, meta("t1", "r1", 1, now - 1_000));
+        index.put(ReceiptOutbox.PENDING, meta("t1", "r1", 2, now + 60_000));
+
+        assertThat(index.dueFileNames(now, 10)).isEmpty();
+        assertThat(index.dueFileNames(now + 60_000, 10)).containsExactly("r1");
+        assertThat(index.pendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void moveAndRemoveKeepCountsAndQueueInSync() {
+        long now = System.currentTimeMillis();
+        index.put(ReceiptOutbox.PENDING, meta("t1", "r1", 1, now - 1_000));
+        index.put(ReceiptOutbox.PENDING, meta("t2", "r2", 1, now - 1_000));
+
+        index.move("r1", ReceiptOutbox.SENT);
+        assertThat(index.dueFileNames(now, 10)).containsExactly("r2");
+        assertThat(index.pendingCount()).isEqualTo(1);
+        assertThat(index.get("r1").location()).isEqualTo(ReceiptOutbox.SENT);
+        assertThat(index.fileNames(ReceiptOutbox.SENT)).containsExactly("r1");
+
+        index.remove("r2");
+        assertThat(index.dueFileNames(now, 10)).isEmpty();
+        assertThat(index.pendingCount()).isZero();
+        assertThat(index.findByTraceId("t2")).isNull();
+    }
+
+    @Test
+    void renameKeepsTraceIdLookupAndRetrySchedule() {
+        long now = System.currentTimeMillis();
+        index.put(ReceiptOutbox.PENDING, meta("t1", "old", 1, now - 1_000));
+
+        index.rename("old", "new");
+
+        assertThat(index.get("old")).isNull();
+        assertThat(index.findByTraceId("t1").fileName()).isEqualTo("new");
+        assertThat(index.dueFileNames(now, 10)).containsExactly("new");
+        assertThat(index.pendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void awaitDueSkipsClaimedReceiptsAndTimesOut() throws Exception {
+        long now = System.currentTimeMillis();
+        index.put(ReceiptOutbox.PENDING, meta("t1", "r1", 1, now - 1_000));
+        index.put(ReceiptOutbox.PENDING, meta("t2", "r2", 1, now - 500));
+
+        assertThat(index.awaitDue(10, 10, Set.of("r1"))).containsExactly("r2");
+        assertThat(index.awaitDue(10, 10, Set.of("r1", "r2"))).isEmpty();
+    }
+
+    @Test
+    void awaitDueWakesUpWhenARetryBecomesDue() throws Exception {
+        CompletableFuture<List<String>> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return index.awaitDue(10, 5_000, Set.of());
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+
+        index.put(ReceiptOutbox.PENDING, meta("t1", "r1", 1, System.currentTimeMillis() + 100));
+
+        assertThat(waiting.get(3, TimeUnit.SECONDS)).containsExactly("r1");
+    }
+
+    private static ReceiptMetaDTO meta(String traceId, String fileName, int attempts, long nextAttemptAt) {
+        ReceiptMetaDTO meta = new ReceiptMetaDTO();
+        meta.setTraceId(traceId);
+        meta.setFileName(fileName);
+        meta.setAttempts(attempts);
+        meta.setNextAttemptAtEpochMs(nextAttemptAt);
+        return meta;
+    }
+}
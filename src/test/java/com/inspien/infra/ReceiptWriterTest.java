@@ -0,0 +1,130 @@
+package com.inspien.infra;
+
+import com.inspien.dto.OrderBatch;
+import com.inspien.dto.OrderDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ReceiptWriter 결과가 교체 전 StringBuilder + Files.writeString 방식과 byte 단위로 같은지 확인
+ */
+class ReceiptWriterTest {
+
+    private static final String[] TEXTS = {
+            "plain", "홍길동", "서울시 강남구 테헤란로 1", "사과🍎", "café", "", "a^b", "  공백  ", "日本語テキスト", "🚀🚀"
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void batchAndRowPathsMatchTheOldStringBuilderOutputOn20kRows() throws Exception {
+        OrderBatch batch = sampleBatch(20_000, new Random(7));
+        List<OrderDTO> rows = batch.toOrderRows();
+        byte[] expected = legacyContent(rows).getBytes(StandardCharsets.UTF_8);
+
+        Path fromBatch = dir.resolve("batch.txt");
+        try (ReceiptWriter w = ReceiptWriter.open(fromBatch)) {
+            w.writeAll(batch);
+            assertThat(w.bytesWritten()).isEqualTo(expected.length);
+        }
+        Path fromRows = dir.resolve("rows.txt");
+        try (ReceiptWriter w = ReceiptWriter.open(fromRows)) {
+            w.writeAll(rows);
+        }
+
+        assertThat(Files.readAllBytes(fromBatch)).isEqualTo(expected);
+        assertThat(Files.readAllBytes(fromRows)).isEqualTo(expected);
+        // 행 길이 계산(버퍼 공간 확인용)도 실제 기록 결과와 같아야 함
+        long sum = 0;
+        for (int i = 0; i < batch.size(); i++) sum += batch.receiptBytes(i);
+        assertThat(sum).isEqualTo(expected.length);
+    }
+
+    @Test
+    void rowLongerThanTheBufferIsWrittenIdentically() throws Exception {
+        OrderBatch batch = new OrderBatch("KEY");
+        int header = batch.addHeader("이름", "주소", "N");
+        batch.add(header, "u1", "i1", "짧은", 1, "1");
+        batch.add(header, "u2", "i2", "가🍎".repeat(30_000), 2, "2");
+        batch.add(header, "u3", "i3", "x".repeat(70_000), 3, "3");
+        for (int i = 0; i < batch.size(); i++) batch.setOrderId(i, "A00" + i);
+
+        Path file = dir.resolve("long.txt");
+        try (ReceiptWriter w = ReceiptWriter.open(file)) {
+            w.writeAll(batch);
+        }
+
+        assertThat(Files.readAllBytes(file)).isEqualTo(legacyContent(batch.toOrderRows()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void unpairedSurrogateFailsLikeFilesWriteString() throws Exception {
+        OrderDTO row = new OrderDTO();
+        row.setOrderId("A000");
+        row.setItemName("broken\uD83D");
+
+        assertThatThrownBy(() -> Files.writeString(dir.resolve("legacy.txt"), legacyContent(List.of(row))))
+                .isInstanceOf(CharacterCodingException.class);
+        assertThatThrownBy(() -> {
+            try (ReceiptWriter w = ReceiptWriter.open(dir.resolve("new.txt"))) {
+                w.write(row);
+            }
+        }).isInstanceOf(CharacterCodingException.class);
+    }
+
+    private static OrderBatch sampleBatch(int rows, Random random) {
+        OrderBatch batch = new OrderBatch("APPLICANT-키");
+        int[] headers = new int[8];
+        for (int h = 0; h < headers.length; h++) {
+            // null 이름 / 주소는 기존 포맷에서 "null" 로 기록됨
+            String name = h == 0 ? null : pick(random) + h;
+            String address = h == 1 ? null : pick(random) + " " + pick(random);
+            headers[h] = batch.addHeader(name, address, "N");
+        }
+
+        for (int i = 0; i < rows; i++) {
+            long price = random.nextInt(5) == 0 ? random.nextLong() & Long.MAX_VALUE : random.nextInt(100_000);
+            String priceText = switch (random.nextInt(10)) {
+                case 0 -> "00" + price;                    // 앞에 0 이 있는 원문
+                case 1 -> "123456789012345678901234567890"; // long 범위 초과
+                default -> Long.toString(price);
+            };
+            String itemName = random.nextInt(50) == 0 ? null : pick(random) + i;
+            batch.add(headers[random.nextInt(headers.length)], "user" + i, "item-" + pick(random), itemName, price, priceText);
+            batch.setOrderId(i, String.format("%c%03d", (char) ('A' + i / 1000), i % 1000));
+        }
+        return batch;
+    }
+
+    private static String pick(Random random) {
+        return TEXTS[random.nextInt(TEXTS.length)];
+    }
+
+    // 교체 전 OrderService.buildReceiptContent
+    private static String legacyContent(List<OrderDTO> rows) {
+        StringBuilder sb = new StringBuilder(rows.size() * 96);
+        for (OrderDTO r : rows) {
+            sb.append(r.getOrderId()).append('^')
+              .append(r.getUserId()).append('^')
+              .append(r.getItemId()).append('^')
+              .append(r.getApplicantKey()).append('^')
+              .append(r.getName()).append('^')
+              .append(r.getAddress()).append('^')
+              .append(r.getItemName()).append('^')
+              .append(r.getPrice())
+              .append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package com.inspien.infra;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SftpCircuitBreakerTest {
+
+    @Test
+    void opensAfterConsecutiveFailuresAndSuccessResetsTheCount() {
+        SftpCircuitBreaker breaker = breaker(3, 60_000);
+
+        breaker.recordFailure("timeout");
+        breaker.recordFailure("timeout");
+        breaker.recordSuccess();
+        breaker.recordFailure("timeout");
+        breaker.recordFailure("timeout");
+        assertThat(breaker.state()).isEqualTo(SftpCircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowInline()).isTrue();
+
+        breaker.recordFailure("timeout");
+        assertThat(breaker.state()).isEqualTo(SftpCircuitBreaker.State.OPEN);
+        assertThat(breaker.allowInline()).isFalse();
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.nextAttemptAtEpochMs()).isGreaterThan(System.currentTimeMillis() + 50_000);
+    }
+
+    @Test
+    void halfOpenAllowsOneProbeAndItsOutcomeDecidesTheState() {
+        SftpCircuitBreaker breaker = breaker(1, 0);
+        breaker.recordFailure("refused");
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(SftpCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.allowInline()).isFalse();
+
+        breaker.recordFailure("refused");
+        assertThat(breaker.state()).isEqualTo(SftpCircuitBreaker.State.OPEN);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.recordSuccess();
+        assertThat(breaker.state()).isEqualTo(SftpCircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowInline()).isTrue();
+    }
+
+    @Test
+    void releasedProbeWithoutOutcomeCanBeTakenAgain() {
+        SftpCircuitBreaker breaker = breaker(1, 0);
+        breaker.recordFailure("refused");
+
+        // 원격에 이미 있어서 업로드 없이 끝난 경우 등
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.releaseProbe();
+
+        assertThat(breaker.state()).isEqualTo(SftpCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void releaseProbeFromAnotherThreadDoesNotFreeTheProbe() throws Exception {
+        SftpCircuitBreaker breaker = breaker(1, 0);
+        breaker.recordFailure("refused");
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        // 시험 전송 권한이 없는 스레드의 finally
+        CompletableFuture.runAsync(breaker::releaseProbe).get(3, TimeUnit.SECONDS);
+
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void releaseProbeAfterRecordedOutcomeChangesNothing() {
+        SftpCircuitBreaker breaker = breaker(1, 0);
+        breaker.recordFailure("refused");
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        // 시험 전송 실패로 다시 OPEN, 이번에는 한동안 유지
+        ReflectionTestUtils.setField(breaker, "openDurationMs", 60_000L);
+        breaker.recordFailure("refused");
+        breaker.releaseProbe();
+
+        assertThat(breaker.state()).isEqualTo(SftpCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void disabledBreakerAlwaysAllows() {
+        SftpCircuitBreaker breaker = breaker(1, 60_000);
+        ReflectionTestUtils.setField(breaker, "enabled", false);
+        breaker.recordFailure("refused");
+
+        assertThat(breaker.allowInline()).isTrue();
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    private static SftpCircuitBreaker breaker(int failureThreshold, long openDurationMs) {
+        SftpCircuitBreaker breaker = new SftpCircuitBreaker();
+        ReflectionTestUtils.setField(breaker, "enabled", true);
+        ReflectionTestUtils.setField(breaker, "failureThreshold", failureThreshold);
+        ReflectionTestUtils.setField(breaker, "openDurationMs", openDurationMs);
+        return breaker;
+    }
+}
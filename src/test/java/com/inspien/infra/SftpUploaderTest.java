@@ -0,0 +1,300 @@
+package com.inspien.infra;
+
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * SftpUploader 를 내장 SFTP 서버(Apache MINA SSHD)에 연결해서 실행
+ * 원격 폴더는 remote 임시 폴더에 그대로 보임
+ */
+class SftpUploaderTest {
+
+    @TempDir
+    Path local;
+
+    @TempDir
+    Path remote;
+
+    private SshServer sshd;
+    private SftpUploader uploader;
+    // 서버에 접속(SSH session 생성)된 횟수
+    private final AtomicInteger connects = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        sshd = SshServer.setUpDefaultServer();
+        sshd.setHost("127.0.0.1");
+        sshd.setPort(0);
+        SimpleGeneratorHostKeyProvider hostKey = new SimpleGeneratorHostKeyProvider(local.resolve("hostkey.ser"));
+        hostKey.setAlgorithm("RSA");
+        sshd.setKeyPairProvider(hostKey);
+        sshd.setPasswordAuthenticator((user, password, session) -> "user".equals(user) && "secret".equals(password));
+        sshd.setSubsystemFactories(List.of(new SftpSubsystemFactory()));
+        sshd.setFileSystemFactory(new VirtualFileSystemFactory(remote));
+        sshd.addSessionListener(new SessionListener() {
+            @Override
+            public void sessionCreated(Session session) {
+                connects.incrementAndGet();
+            }
+        });
+        sshd.start();
+
+        uploader = uploader(2);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        uploader.shutdown();
+        sshd.stop(true);
+    }
+
+    @Test
+    void uploadPublishesTheFileAndCleansUpPartFiles() throws Exception {
+        Path file = receipt("r1.txt", 10_000, 'a');
+
+        SftpUploader.UploadResult result = uploader.upload(file, "r1.txt");
+
+        assertThat(Files.readAllBytes(remote.resolve("r1.txt"))).isEqualTo(Files.readAllBytes(file));
+        assertThat(result.size()).isEqualTo(10_000);
+        // 크기만 비교했으므로 checksum 은 기록하지 않음
+        assertThat(result.sha256()).isNull();
+        assertThat(remoteNames()).containsExactly("r1.txt");
+    }
+
+    @Test
+    void partialUploadStartedFromTheSameContentIsResumedAndVerified() throws Exception {
+        Path file = receipt("r1.txt", 10_000, 'a');
+        byte[] content = Files.readAllBytes(file);
+        Files.write(remote.resolve("r1.txt.part"), Arrays.copyOf(content, 4_000));
+        Files.writeString(remote.resolve("r1.txt.part.sha256"), sha256(content));
+
+        SftpUploader.UploadResult result = uploader.upload(file, "r1.txt");
+
+        assertThat(Files.readAllBytes(remote.resolve("r1.txt"))).isEqualTo(content);
+        // 이어서 전송한 경우는 내용까지 비교
+        assertThat(result.sha256()).isEqualTo(sha256(content));
+        assertThat(remoteNames()).containsExactly("r1.txt");
+    }
+
+    @Test
+    void partialUploadOfARegeneratedReceiptIsNotSplicedEvenWithTheSameSize() throws Exception {
+        // 같은 크기지만 내용이 다른 이전 영수증에서 올라가다 만 .part
+        byte[] previous = new byte[10_000];
+        Arrays.fill(previous, (byte) 'x');
+        Files.write(remote.resolve("r1.txt.part"), Arrays.copyOf(previous, 4_000));
+        Files.writeString(remote.resolve("r1.txt.part.sha256"), sha256(previous));
+
+        Path file = receipt("r1.txt", 10_000, 'a');
+        uploader.upload(file, "r1.txt");
+
+        assertThat(Files.readAllBytes(remote.resolve("r1.txt"))).isEqualTo(Files.readAllBytes(file));
+    }
+
+    @Test
+    void partialUploadWithoutARecordedHashStartsOver() throws Exception {
+        Files.write(remote.resolve("r1.txt.part"), new byte[]{'x', 'x', 'x'});
+
+        Path file = receipt("r1.txt", 5_000, 'a');
+        SftpUploader.UploadResult result = uploader.upload(file, "r1.txt");
+
+        assertThat(Files.readAllBytes(remote.resolve("r1.txt"))).isEqualTo(Files.readAllBytes(file));
+        assertThat(result.sha256()).isNull();
+    }
+
+    @Test
+    void findDeliveredRecordsChecksumOnlyWhenContentWasCompared() throws Exception {
+        Path file = receipt("r1.txt", 2_000, 'a');
+        Files.copy(file, remote.resolve("r1.txt"));
+
+        assertThat(uploader.findDelivered(file, "r1.txt").sha256()).isNull();
+
+        ReflectionTestUtils.setField(uploader, "remoteCheckVerifyChecksum", true);
+        assertThat(uploader.findDelivered(file, "r1.txt").sha256()).isEqualTo(sha256(Files.readAllBytes(file)));
+
+        // 크기는 같고 내용이 다르면 다시 업로드 대상
+        Files.write(remote.resolve("r1.txt"), new byte[2_000]);
+        assertThat(uploader.findDelivered(file, "r1.txt")).isNull();
+    }
+
+    @Test
+    void sequentialUploadsReuseOnePooledConnection() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            uploader.upload(receipt("r" + i + ".txt", 1_000, 'a'), "r" + i + ".txt");
+        }
+
+        assertThat(remoteNames()).hasSize(5);
+        assertThat(connects.get()).isEqualTo(1);
+        assertThat(idleCount()).isEqualTo(1);
+        assertThat(permits().availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentUploadsNeverOpenMoreThanMaxSizeConnections() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<SftpUploader.UploadResult>> results = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                Path file = receipt("c" + i + ".txt", 200_000, 'a');
+                String name = "c" + i + ".txt";
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return uploader.upload(file, name);
+                }));
+            }
+            start.countDown();
+            for (Future<SftpUploader.UploadResult> f : results) f.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(remoteNames()).hasSize(6);
+        assertThat(connects.get()).isLessThanOrEqualTo(2);
+        assertThat(idleCount()).isEqualTo(connects.get());
+        assertThat(permits().availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void borrowTimesOutWhenEveryConnectionIsInUse() throws Exception {
+        ReflectionTestUtils.setField(uploader, "borrowTimeoutMs", 100L);
+        permits().acquire(2);
+
+        Path file = receipt("r1.txt", 1_000, 'a');
+        assertThatThrownBy(() -> uploader.upload(file, "r1.txt"))
+                .hasMessageContaining("no connection available within 100ms");
+        assertThat(connects.get()).isZero();
+
+        // 반납되면 다시 업로드 가능
+        permits().release(2);
+        uploader.upload(file, "r1.txt");
+        assertThat(permits().availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void failedUploadDropsTheConnectionAndReturnsThePermit() throws Exception {
+        uploader.upload(receipt("r1.txt", 1_000, 'a'), "r1.txt");
+
+        // 없는 원격 폴더: 재사용한 연결, 새 연결 모두 실패
+        Path file = receipt("r2.txt", 1_000, 'a');
+        assertThatThrownBy(() -> uploader.upload(file, "missing/r2.txt")).isInstanceOf(RuntimeException.class);
+
+        assertThat(idleCount()).isZero();
+        assertThat(permits().availablePermits()).isEqualTo(2);
+
+        uploader.upload(file, "r2.txt");
+        assertThat(remoteNames()).containsExactly("r1.txt", "r2.txt");
+    }
+
+    @Test
+    void connectionClosedByTheServerIsReplacedOnTheNextUpload() throws Exception {
+        uploader.upload(receipt("r1.txt", 1_000, 'a'), "r1.txt");
+        for (var session : sshd.getActiveSessions()) session.close(true);
+
+        uploader.upload(receipt("r2.txt", 1_000, 'a'), "r2.txt");
+
+        assertThat(remoteNames()).containsExactly("r1.txt", "r2.txt");
+        assertThat(connects.get()).isEqualTo(2);
+        assertThat(permits().availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void idleConnectionsAreEvictedAndClosedOnShutdown() throws Exception {
+        uploader.upload(receipt("r1.txt", 1_000, 'a'), "r1.txt");
+        assertThat(idleCount()).isEqualTo(1);
+
+        ReflectionTestUtils.setField(uploader, "idleTimeoutMs", 0L);
+        uploader.evictIdle();
+        assertThat(idleCount()).isZero();
+
+        ReflectionTestUtils.setField(uploader, "idleTimeoutMs", 60_000L);
+        uploader.upload(receipt("r2.txt", 1_000, 'a'), "r2.txt");
+        uploader.shutdown();
+        assertThat(idleCount()).isZero();
+        awaitNoServerSessions();
+    }
+
+    private SftpUploader uploader(int maxSize) {
+        SftpCircuitBreaker breaker = new SftpCircuitBreaker();
+        ReflectionTestUtils.setField(breaker, "enabled", true);
+        ReflectionTestUtils.setField(breaker, "failureThreshold", 5);
+        ReflectionTestUtils.setField(breaker, "openDurationMs", 30_000L);
+
+        SftpUploader u = new SftpUploader(breaker);
+        ReflectionTestUtils.setField(u, "host", "127.0.0.1");
+        ReflectionTestUtils.setField(u, "port", sshd.getPort());
+        ReflectionTestUtils.setField(u, "user", "user");
+        ReflectionTestUtils.setField(u, "password", "secret");
+        ReflectionTestUtils.setField(u, "remoteDir", "/");
+        ReflectionTestUtils.setField(u, "serverHostKeyAlgos", "rsa-sha2-256");
+        ReflectionTestUtils.setField(u, "connectTimeoutMs", 5_000);
+        ReflectionTestUtils.setField(u, "maxSize", maxSize);
+        ReflectionTestUtils.setField(u, "borrowTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(u, "idleTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(u, "validateAfterIdleMs", 5_000L);
+        ReflectionTestUtils.setField(u, "keepaliveMs", 15_000);
+        u.init();
+        return u;
+    }
+
+    private int idleCount() {
+        Deque<?> idle = (Deque<?>) ReflectionTestUtils.getField(uploader, "idle");
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    private Semaphore permits() {
+        return (Semaphore) ReflectionTestUtils.getField(uploader, "permits");
+    }
+
+    private void awaitNoServerSessions() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!sshd.getActiveSessions().isEmpty()) {
+            assertThat(System.currentTimeMillis()).as("server sessions still open").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private Path receipt(String name, int size, char fill) throws Exception {
+        byte[] b = new byte[size];
+        for (int i = 0; i < size; i++) b[i] = (byte) (i % 100 == 99 ? '\n' : fill + (i % 7));
+        return Files.write(local.resolve(name), b);
+    }
+
+    private List<String> remoteNames() throws Exception {
+        try (var files = Files.list(remote)) {
+            return files.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return SftpUploader.sha256Hex(new ByteArrayInputStream(content));
+    }
+}
@@ -0,0 +1,46 @@
+package com.inspien.infra;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    @Test
+    void nonPositiveRateIsUnlimited() throws Exception {
+        TokenBucket bucket = new TokenBucket(0, 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) bucket.acquire();
+
+        assertThat(elapsedMs(start)).isLessThan(1_000);
+    }
+
+    @Test
+    void burstIsAvailableImmediately() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 5);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) bucket.acquire();
+
+        assertThat(elapsedMs(start)).isLessThan(500);
+    }
+
+    @Test
+    void acquireWaitsForRefillOnceBurstIsSpent() throws Exception {
+        TokenBucket bucket = new TokenBucket(20, 1);
+        bucket.acquire();
+
+        // 초당 20개 -> 나머지 4개는 약 200ms
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) bucket.acquire();
+
+        assertThat(elapsedMs(start)).isGreaterThanOrEqualTo(150);
+    }
+
+    private static long elapsedMs(long startNs) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+    }
+}
@@ -0,0 +1,113 @@
+package com.inspien.scheduler;
+
+import com.inspien.infra.ReceiptMetaDTO;
+import com.inspien.infra.ReceiptOutbox;
+import com.inspien.infra.SftpCircuitBreaker;
+import com.inspien.infra.SftpUploader;
+import com.inspien.infra.TokenBucket;
+import com.inspien.service.ReceiptRegenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * retryOne 이 어느 경로로 끝나든 awaitDue 에서 받은 선점/임대를 반납하는지 확인
+ */
+class ReceiptRetrySchedulerTest {
+
+    private final ReceiptOutbox outbox = mock(ReceiptOutbox.class);
+    private ReceiptRetryScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new ReceiptRetryScheduler(outbox, mock(SftpUploader.class), mock(SftpCircuitBreaker.class),
+                mock(ReceiptRegenerator.class));
+        ReflectionTestUtils.setField(scheduler, "maxAttempts", 10);
+        ReflectionTestUtils.setField(scheduler, "rateLimit", new TokenBucket(0, 1));
+    }
+
+    @Test
+    void alreadyMovedReceiptReleasesTheStoreLease() {
+        when(outbox.isPending("r1")).thenReturn(false);
+
+        retryOne("r1");
+
+        verify(outbox).releaseUnclaimed("r1");
+        verify(outbox, never()).tryClaim(anyString());
+    }
+
+    @Test
+    void missingMetaReleasesTheStoreLease() {
+        when(outbox.isPending("r1")).thenReturn(true);
+
+        retryOne("r1");
+
+        verify(outbox).releaseUnclaimed("r1");
+    }
+
+    @Test
+    void metaReadFailureReleasesTheStoreLease() {
+        when(outbox.isPending("r1")).thenReturn(true);
+        when(outbox.readMeta("r1")).thenThrow(new IllegalStateException("disk error"));
+
+        retryOne("r1");
+
+        verify(outbox).releaseUnclaimed("r1");
+    }
+
+    @Test
+    void notYetDueReceiptReleasesTheStoreLease() {
+        when(outbox.isPending("r1")).thenReturn(true);
+        when(outbox.readMeta("r1")).thenReturn(failedMeta("r1", System.currentTimeMillis() + 60_000));
+
+        retryOne("r1");
+
+        verify(outbox).releaseUnclaimed("r1");
+        verify(outbox, never()).tryClaim(anyString());
+    }
+
+    @Test
+    void receiptClaimedByAnotherThreadIsLeftToThatThread() {
+        when(outbox.isPending("r1")).thenReturn(true);
+        when(outbox.readMeta("r1")).thenReturn(failedMeta("r1", 0));
+        when(outbox.tryClaim("r1")).thenReturn(false);
+
+        retryOne("r1");
+
+        verify(outbox).releaseUnclaimed("r1");
+        verify(outbox, never()).releaseClaim(anyString());
+    }
+
+    @Test
+    void claimedReceiptReleasesTheClaim() {
+        // 선점한 뒤 다른 곳에서 처리가 끝난 경우
+        when(outbox.isPending("r1")).thenReturn(true, false);
+        when(outbox.readMeta("r1")).thenReturn(failedMeta("r1", 0));
+        when(outbox.tryClaim("r1")).thenReturn(true);
+
+        retryOne("r1");
+
+        verify(outbox).releaseClaim("r1");
+        verify(outbox, never()).releaseUnclaimed(anyString());
+    }
+
+    private void retryOne(String fileName) {
+        ReflectionTestUtils.invokeMethod(scheduler, "retryOne", fileName);
+    }
+
+    private static ReceiptMetaDTO failedMeta(String fileName, long nextAttemptAt) {
+        ReceiptMetaDTO meta = new ReceiptMetaDTO();
+        meta.setTraceId("trace-" + fileName);
+        meta.setFileName(fileName);
+        meta.setAttempts(1);
+        meta.setLastError("SFTP_FAIL: test");
+        meta.setNextAttemptAtEpochMs(nextAttemptAt);
+        return meta;
+    }
+}
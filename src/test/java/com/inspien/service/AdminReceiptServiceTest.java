@@ -0,0 +1,235 @@
+package com.inspien.service;
+
+import com.inspien.infra.ReceiptArchive;
+import com.inspien.infra.ReceiptMetaDTO;
+import com.inspien.infra.ReceiptOutbox;
+import com.inspien.infra.SftpCircuitBreaker;
+import com.inspien.infra.SftpUploader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.MDC;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 일괄 재전송(bulkRetry) 진행 결과 전달 / 동시 처리 수 / 중단 확인
+ * outbox 와 SFTP 는 mock, 영수증 파일은 임시 폴더에 실제로 만듦
+ */
+class AdminReceiptServiceTest {
+
+    private static final String ADMIN_KEY = "admin-secret";
+
+    @TempDir
+    Path pending;
+
+    private final ReceiptOutbox outbox = mock(ReceiptOutbox.class);
+    private final SftpUploader uploader = mock(SftpUploader.class);
+    private final SftpCircuitBreaker breaker = new SftpCircuitBreaker();
+    private AdminReceiptService service;
+
+    // 동시에 업로드 중인 건수 / 최대값
+    private final AtomicInteger uploading = new AtomicInteger();
+    private final AtomicInteger maxUploading = new AtomicInteger();
+    private final List<String> uploaded = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(breaker, "enabled", true);
+        ReflectionTestUtils.setField(breaker, "failureThreshold", 3);
+        ReflectionTestUtils.setField(breaker, "openDurationMs", 60_000L);
+
+        service = new AdminReceiptService(outbox, uploader, mock(ReceiptRegenerator.class), breaker,
+                mock(ReceiptArchive.class));
+        ReflectionTestUtils.setField(service, "expectedAdminKey", ADMIN_KEY);
+        ReflectionTestUtils.setField(service, "bulkParallelism", 2);
+        ReflectionTestUtils.setField(service, "bulkMaxItems", 100);
+        ReflectionTestUtils.invokeMethod(service, "init");
+
+        when(outbox.tryClaim(anyString())).thenReturn(true);
+        uploadTakes(20, null);
+        MDC.put("traceId", "admin-trace");
+    }
+
+    @AfterEach
+    void tearDown() {
+        MDC.remove("traceId");
+        ReflectionTestUtils.invokeMethod(service, "shutdown");
+    }
+
+    @Test
+    void streamsStartEveryResultAndSummary() throws Exception {
+        for (int i = 1; i <= 5; i++) pendingReceipt("t" + i);
+
+        List<Map<String, Object>> lines = bulk(traceIds("t1", "t2", "t3", "t4", "t5", "t2", "unknown"));
+
+        assertThat(lines.get(0)).containsEntry("type", "start").containsEntry("total", 6);
+        List<Map<String, Object>> results = lines.subList(1, lines.size() - 1);
+        assertThat(results).hasSize(6);
+        assertThat(results).extracting(r -> r.get("seq")).containsExactly(1, 2, 3, 4, 5, 6);
+        assertThat(results).extracting(r -> r.get("traceId"))
+                .containsExactlyInAnyOrder("t1", "t2", "t3", "t4", "t5", "unknown");
+        assertThat(lines.get(lines.size() - 1))
+                .containsEntry("type", "summary")
+                .containsEntry("total", 6)
+                .containsEntry("succeeded", 5)
+                .containsEntry("failed", 1);
+        assertThat(uploaded).hasSize(5);
+    }
+
+    @Test
+    void neverRunsMoreThanParallelismUploadsAtOnce() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            pendingReceipt("t" + i);
+            ids.add("t" + i);
+        }
+
+        bulk(traceIds(ids.toArray(String[]::new)));
+
+        assertThat(uploaded).hasSize(8);
+        assertThat(maxUploading.get()).isEqualTo(2);
+    }
+
+    @Test
+    void eachResultIsDeliveredAsSoonAsItFinishes() throws Exception {
+        pendingReceipt("fast");
+        pendingReceipt("slow");
+        CountDownLatch release = new CountDownLatch(1);
+        uploadTakes(0, release);
+
+        CountDownLatch fastReported = new CountDownLatch(1);
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> job = caller.submit(() -> service.bulkRetry(traceIds("fast", "slow"), ADMIN_KEY, line -> {
+                if ("result".equals(line.get("type")) && "fast".equals(line.get("traceId"))) fastReported.countDown();
+            }));
+
+            // slow 가 끝나기 전에 fast 결과가 먼저 전달되어야 함
+            assertThat(fastReported.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(job.isDone()).isFalse();
+
+            release.countDown();
+            job.get(5, TimeUnit.SECONDS);
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    void clientDisconnectStopsTheJobAfterTheRunningUploads() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            pendingReceipt("t" + i);
+            ids.add("t" + i);
+        }
+
+        List<Map<String, Object>> written = new ArrayList<>();
+        service.bulkRetry(traceIds(ids.toArray(String[]::new)), ADMIN_KEY, line -> {
+            if ("result".equals(line.get("type"))) {
+                throw new UncheckedIOException(new IOException("Client disconnected"));
+            }
+            written.add(line);
+        });
+
+        // 첫 결과를 쓰려다 끊김: 이미 시작한 parallelism 건 외에는 시작하지 않음
+        assertThat(written).extracting(l -> l.get("type")).containsExactly("start");
+        Thread.sleep(100);
+        assertThat(uploaded.size()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void openCircuitFailsEveryItemWithoutUploading() throws Exception {
+        pendingReceipt("t1");
+        pendingReceipt("t2");
+        for (int i = 0; i < 3; i++) breaker.recordFailure("down");
+
+        List<Map<String, Object>> lines = bulk(traceIds("t1", "t2"));
+
+        assertThat(lines.get(lines.size() - 1)).containsEntry("succeeded", 0).containsEntry("failed", 2);
+        assertThat(lines.get(1).get("message")).isEqualTo("SFTP circuit is open. Try again later.");
+        verify(uploader, never()).upload(any(), anyString());
+        verify(outbox).releaseClaim("t1.txt");
+        verify(outbox).releaseClaim("t2.txt");
+    }
+
+    @Test
+    void wrongAdminKeyOrTooManyTargetsAnswersWithOneErrorLine() {
+        List<Map<String, Object>> denied = new ArrayList<>();
+        service.bulkRetry(traceIds("t1"), "wrong", denied::add);
+        assertThat(denied).singleElement().satisfies(l -> {
+            assertThat(l).containsEntry("success", false).containsEntry("message", "Unauthorized admin key");
+        });
+
+        ReflectionTestUtils.setField(service, "bulkMaxItems", 2);
+        List<Map<String, Object>> tooMany = new ArrayList<>();
+        service.bulkRetry(traceIds("t1", "t2", "t3"), ADMIN_KEY, tooMany::add);
+        assertThat(tooMany).singleElement().satisfies(l -> {
+            assertThat(l).containsEntry("success", false).containsEntry("message", "Too many targets: 3 (max 2)");
+        });
+        verify(outbox, never()).tryClaim(anyString());
+    }
+
+    private List<Map<String, Object>> bulk(String xml) {
+        List<Map<String, Object>> lines = new ArrayList<>();
+        service.bulkRetry(xml, ADMIN_KEY, lines::add);
+        return lines;
+    }
+
+    private static String traceIds(String... ids) {
+        StringBuilder sb = new StringBuilder("<BULK_RETRY>");
+        for (String id : ids) sb.append("<TRACE_ID>").append(id).append("</TRACE_ID>");
+        return sb.append("</BULK_RETRY>").toString();
+    }
+
+    // pending 에 영수증 + meta 가 있는 상태
+    private void pendingReceipt(String traceId) throws IOException {
+        String fileName = traceId + ".txt";
+        Files.writeString(pending.resolve(fileName), "A000^" + traceId + "\n");
+
+        ReceiptMetaDTO meta = new ReceiptMetaDTO();
+        meta.setTraceId(traceId);
+        meta.setFileName(fileName);
+        when(outbox.findByTraceId(traceId)).thenReturn(new ReceiptOutbox.Located(ReceiptOutbox.PENDING, pending, meta));
+    }
+
+    // 업로드가 ms 만큼 걸리게 하거나, release 가 열릴 때까지 "slow" 를 붙잡아 둠
+    private void uploadTakes(long ms, CountDownLatch release) {
+        when(uploader.upload(any(), anyString())).thenAnswer(inv -> {
+            String name = inv.getArgument(1);
+            int now = uploading.incrementAndGet();
+            maxUploading.accumulateAndGet(now, Math::max);
+            try {
+                if (release != null && name.equals("slow.txt")) release.await(5, TimeUnit.SECONDS);
+                if (ms > 0) Thread.sleep(ms);
+                uploaded.add(name);
+                return new SftpUploader.UploadResult(10, null);
+            } finally {
+                uploading.decrementAndGet();
+            }
+        });
+    }
+}
@@ -0,0 +1,259 @@
+package com.inspien.service;
+
+import com.inspien.dto.IdempotencyRecordDTO;
+import com.inspien.dto.OrderBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * OrderGroupCommitter 를 H2(Oracle 호환 모드)에서 실행
+ * ID 할당기는 A000 부터 차례로 나눠주는 mock
+ */
+class OrderGroupCommitterTest {
+
+    private static final String KEY = "APP";
+
+    private OrderTestDb db;
+    private OrderIdAllocator allocator;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private OrderGroupCommitter committer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        db = new OrderTestDb();
+
+        allocator = mock(OrderIdAllocator.class);
+        when(allocator.allocate(anyString(), anyInt())).thenAnswer(inv -> {
+            int count = inv.getArgument(1);
+            int start = nextIndex.getAndAdd(count);
+            List<String> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) ids.add(OrderIdAllocator.indexToId(start + i));
+            return ids;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (committer != null) committer.stop();
+        db.shutdown();
+    }
+
+    @Test
+    void concurrentMembersShareOneAllocationAndCommit() throws Exception {
+        committer = committer(3, 2_000);
+
+        List<Future<OrderBatch>> results = submitTogether(batch(2), batch(3), batch(1));
+
+        List<String> ids = new ArrayList<>();
+        for (Future<OrderBatch> f : results) ids.addAll(f.get(5, TimeUnit.SECONDS).orderIds());
+        assertThat(ids).containsExactlyInAnyOrder("A000", "A001", "A002", "A003", "A004", "A005");
+        assertThat(db.countOrders(KEY)).isEqualTo(6);
+        verify(allocator, times(1)).allocate(KEY, 6);
+    }
+
+    @Test
+    void rejectedMemberIsRolledBackAloneAndItsIdsGoToTheNextMember() throws Exception {
+        committer = committer(3, 2_000);
+
+        OrderBatch bad = batch(2);
+        bad.add(0, "user", "item", "ITEM NAME THAT IS FAR TOO LONG", 1, "1");
+
+        List<Future<OrderBatch>> results = submitTogether(batch(2), bad, batch(2));
+
+        // 어느 요청이 먼저 처리되었든 실패한 요청 몫의 ID 는 건너뛰지 않음
+        assertThatThrownBy(() -> results.get(1).get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(DataIntegrityViolationException.class);
+        List<String> ids = new ArrayList<>(results.get(0).get(5, TimeUnit.SECONDS).orderIds());
+        ids.addAll(results.get(2).get(5, TimeUnit.SECONDS).orderIds());
+        assertThat(ids).containsExactlyInAnyOrder("A000", "A001", "A002", "A003");
+        assertThat(db.countOrders(KEY)).isEqualTo(4);
+        verify(allocator, times(0)).discard(anyString());
+    }
+
+    @Test
+    void orderIdCollisionDiscardsTheBlockAndReallocatesForTheRestOfTheGroup() throws Exception {
+        committer = committer(3, 2_000);
+        // 다른 노드가 이미 사용한 ID (A000~A005 중 하나)
+        db.insertOrder(KEY, "A003");
+
+        List<Future<OrderBatch>> results = submitTogether(batch(2), batch(2), batch(2));
+
+        int committed = 0;
+        int collided = 0;
+        for (Future<OrderBatch> f : results) {
+            try {
+                f.get(5, TimeUnit.SECONDS);
+                committed++;
+            } catch (Exception e) {
+                assertThat(e).hasCauseInstanceOf(DuplicateKeyException.class);
+                collided++;
+            }
+        }
+        assertThat(collided).isEqualTo(1);
+        assertThat(committed).isEqualTo(2);
+        verify(allocator, times(1)).discard(KEY);
+        assertThat(db.countOrders(KEY)).isEqualTo(1 + 4);
+    }
+
+    @Test
+    void idempotencyConflictRejectsOnlyThatMemberWithoutDiscardingTheBlock() throws Exception {
+        committer = committer(2, 2_000);
+        db.jdbc.update("INSERT INTO ORDER_IDEMPOTENCY_TB (TRACE_ID, APPLICANT_KEY, RECEIPT_FILE_NAME, ORDER_IDS) "
+                + "VALUES ('dup', 'APP', 'r.txt', 'Z999')");
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            OrderBatch first = batch(2);
+            OrderBatch second = batch(2);
+            Future<?> dup = pool.submit(() -> {
+                start.await();
+                committer.commit(KEY, first, record("dup"));
+                return null;
+            });
+            Future<?> ok = pool.submit(() -> {
+                start.await();
+                committer.commit(KEY, second, record("fresh"));
+                return null;
+            });
+            start.countDown();
+
+            assertThatThrownBy(() -> dup.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(DuplicateKeyException.class);
+            ok.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        verify(allocator, times(0)).discard(anyString());
+        assertThat(db.countOrders(KEY)).isEqualTo(2);
+    }
+
+    @Test
+    void stopWhileCallersAreSubmittingLeavesNoCallerWaiting() throws Exception {
+        committer = committer(4, 5);
+
+        int callers = 8;
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicInteger committedRows = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < callers; t++) {
+                futures.add(pool.submit(() -> {
+                    // 종료 후에는 즉시 거절되어야 하고, 종료 직전에 들어간 요청도 결과를 받아야 함
+                    while (true) {
+                        OrderBatch b = batch(1);
+                        try {
+                            committer.commit(KEY, b, null);
+                            committedRows.incrementAndGet();
+                        } catch (IllegalStateException e) {
+                            if (stopped.get()) return null;
+                            throw e;
+                        }
+                    }
+                }));
+            }
+            Thread.sleep(100);
+            stopped.set(true);
+            committer.stop();
+
+            for (Future<?> f : futures) f.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(committedRows.get()).isPositive();
+        assertThat(db.countOrders(KEY)).isEqualTo(committedRows.get());
+        assertThatThrownBy(() -> committer.commit(KEY, batch(1), null)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void callerGivesUpAfterTheWaitTimeout() throws Exception {
+        committer = committer(1, 5);
+        ReflectionTestUtils.setField(committer, "waitTimeoutMs", 100L);
+
+        // 할당이 멈춘 상황 (DB 장애 등)
+        CountDownLatch blocked = new CountDownLatch(1);
+        when(allocator.allocate(anyString(), anyInt())).thenAnswer(inv -> {
+            blocked.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("allocator unavailable");
+        });
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> committer.commit(KEY, batch(1), null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("timed out");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2_000);
+        blocked.countDown();
+    }
+
+    private OrderGroupCommitter committer(int maxDocs, long windowMs) {
+        OrderGroupCommitter c = new OrderGroupCommitter(allocator, db.batchSqlSession, db.txManager);
+        ReflectionTestUtils.setField(c, "enabled", true);
+        ReflectionTestUtils.setField(c, "windowMs", windowMs);
+        ReflectionTestUtils.setField(c, "maxDocs", maxDocs);
+        ReflectionTestUtils.setField(c, "maxRows", 10_000);
+        ReflectionTestUtils.setField(c, "waitTimeoutMs", 10_000L);
+        c.start();
+        return c;
+    }
+
+    // 여러 요청을 동시에 보내서 한 그룹으로 묶이게 함 (maxDocs 가 요청 수와 같으면 모두 도착하는 즉시 커밋)
+    private List<Future<OrderBatch>> submitTogether(OrderBatch... batches) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(batches.length);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<OrderBatch>> results = new ArrayList<>();
+        for (OrderBatch b : batches) {
+            Callable<OrderBatch> call = () -> {
+                start.await();
+                committer.commit(KEY, b, null);
+                return b;
+            };
+            results.add(pool.submit(call));
+        }
+        start.countDown();
+        pool.shutdown();
+        return results;
+    }
+
+    private static OrderBatch batch(int rows) {
+        OrderBatch b = new OrderBatch(KEY);
+        int header = b.addHeader("name", "address", "N");
+        for (int i = 0; i < rows; i++) {
+            b.add(header, "user" + i, "item" + i, "item name", 1000 + i, Integer.toString(1000 + i));
+        }
+        return b;
+    }
+
+    private static IdempotencyRecordDTO record(String traceId) {
+        IdempotencyRecordDTO r = new IdempotencyRecordDTO();
+        r.setTraceId(traceId);
+        r.setApplicantKey(KEY);
+        r.setReceiptFileName(traceId + ".txt");
+        return r;
+    }
+}
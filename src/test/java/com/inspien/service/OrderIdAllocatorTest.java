@@ -0,0 +1,175 @@
+package com.inspien.service;
+
+import com.inspien.mapper.OrderIdBlockMapper;
+import com.inspien.mapper.OrderMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * OrderIdAllocator 블록 임대 / 회수 / 연장 / 폐기를 H2(Oracle 호환 모드)에서 확인
+ * 노드 두 개는 nodeId 가 다른 할당기 두 개로 흉내냄
+ */
+class OrderIdAllocatorTest {
+
+    private static final String KEY = "APP";
+
+    private OrderTestDb db;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        db = new OrderTestDb();
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    void firstLeaseStartsAfterExistingOrders() {
+        db.insertOrder(KEY, "A041");
+        OrderIdAllocator node = allocator("node-1", 10, 300);
+
+        assertThat(node.allocate(KEY, 3)).containsExactly("A042", "A043", "A044");
+        assertThat(blocks()).containsExactly(Map.of("BLOCK_START", 42, "BLOCK_END", 52, "OWNER", "node-1"));
+    }
+
+    @Test
+    void documentIsServedFromOneBlockAndTheRemainderIsReturned() {
+        OrderIdAllocator node = allocator("node-1", 10, 300);
+
+        assertThat(node.allocate(KEY, 7)).containsExactly("A000", "A001", "A002", "A003", "A004", "A005", "A006");
+        // 남은 3개로는 부족하므로 두 블록에 걸치지 않고 새 블록에서 할당
+        List<String> second = node.allocate(KEY, 5);
+        assertThat(second).containsExactly("A010", "A011", "A012", "A013", "A014");
+
+        // 남은 A007~A009 는 반납되어 작은 문서가 사용
+        assertThat(node.allocate(KEY, 5)).containsExactly("A015", "A016", "A017", "A018", "A019");
+        assertThat(allocator("node-2", 10, 300).allocate(KEY, 3)).containsExactly("A007", "A008", "A009");
+    }
+
+    @Test
+    void documentLargerThanTheBlockSizeGetsItsOwnBlock() {
+        OrderIdAllocator node = allocator("node-1", 10, 300);
+
+        List<String> ids = node.allocate(KEY, 25);
+        assertThat(ids).hasSize(25).isSorted();
+        assertThat(ids.get(0)).isEqualTo("A000");
+        assertThat(ids.get(24)).isEqualTo("A024");
+        assertThat(node.allocate(KEY, 1)).containsExactly("A025");
+    }
+
+    @Test
+    void releasedRangeIsReclaimedByAnotherNodeSkippingUsedIds() {
+        OrderIdAllocator node1 = allocator("node-1", 10, 300);
+        List<String> ids = node1.allocate(KEY, 4);
+        // A000, A001 만 실제로 커밋되고 A002, A003 은 다른 경로로 이미 사용된 상황
+        db.insertOrder(KEY, "A000");
+        db.insertOrder(KEY, "A001");
+        db.insertOrder(KEY, ids.get(3));
+        node1.releaseAll();
+
+        OrderIdAllocator node2 = allocator("node-2", 10, 300);
+        assertThat(node2.allocate(KEY, 2)).containsExactly("A004", "A005");
+        assertThat(blocks()).containsExactly(Map.of("BLOCK_START", 4, "BLOCK_END", 10, "OWNER", "node-2"));
+    }
+
+    @Test
+    void expiredLeaseIsReclaimedAndTheOldOwnerDropsItOnRenew() {
+        OrderIdAllocator crashed = allocator("node-1", 10, 0);
+        crashed.allocate(KEY, 2);
+        db.insertOrder(KEY, "A000");
+
+        OrderIdAllocator node2 = allocator("node-2", 10, 300);
+        // 커밋된 A000 이후부터 (A001 은 커밋 전에 죽은 것)
+        assertThat(node2.allocate(KEY, 2)).containsExactly("A001", "A002");
+
+        // 임대를 잃은 노드는 연장 시 블록을 버리고 새 블록을 받음
+        crashed.renewLeases();
+        assertThat(crashed.allocate(KEY, 1)).containsExactly("A010");
+    }
+
+    @Test
+    void renewExtendsTheLeaseSoTheBlockIsNotReclaimed() {
+        OrderIdAllocator node1 = allocator("node-1", 10, 300);
+        node1.allocate(KEY, 1);
+        node1.renewLeases();
+
+        assertThat(allocator("node-2", 10, 300).allocate(KEY, 1)).containsExactly("A010");
+        assertThat(node1.allocate(KEY, 1)).containsExactly("A001");
+    }
+
+    @Test
+    void reclaimTrimsABlockThatIsTooSmallAndLeavesItForSmallerDocuments() {
+        OrderIdAllocator node1 = allocator("node-1", 10, 300);
+        node1.allocate(KEY, 2);
+        db.insertOrder(KEY, "A000");
+        db.insertOrder(KEY, "A001");
+        node1.releaseAll();
+
+        // 남은 8개로는 부족하므로 새 범위에서 할당, 사용된 앞부분만 잘라둠
+        OrderIdAllocator node2 = allocator("node-2", 10, 300);
+        assertThat(node2.allocate(KEY, 9)).containsExactly("A010", "A011", "A012", "A013", "A014", "A015", "A016", "A017", "A018");
+        assertThat(allocator("node-3", 10, 300).allocate(KEY, 8))
+                .containsExactly("A002", "A003", "A004", "A005", "A006", "A007", "A008", "A009");
+    }
+
+    @Test
+    void discardedBlockIsNotUsedAgainByThisNode() {
+        OrderIdAllocator node = allocator("node-1", 10, 300);
+        node.allocate(KEY, 1);
+
+        node.discard(KEY);
+
+        assertThat(node.allocate(KEY, 1)).containsExactly("A010");
+    }
+
+    @Test
+    void releasedTailIsHandedOutAgain() {
+        OrderIdAllocator node = allocator("node-1", 10, 300);
+        node.allocate(KEY, 2);
+        List<String> rolledBack = node.allocate(KEY, 3);
+
+        node.release(KEY, rolledBack);
+
+        assertThat(node.allocate(KEY, 3)).isEqualTo(rolledBack);
+        assertThat(node.burnedCount()).isZero();
+    }
+
+    @Test
+    void releaseThatCannotRewindIsCountedAsBurned() {
+        OrderIdAllocator node = allocator("node-1", 10, 300);
+        List<String> first = node.allocate(KEY, 2);
+        node.allocate(KEY, 2);
+
+        // 뒤의 ID 가 이미 나갔으므로 되돌릴 수 없음
+        node.release(KEY, first);
+
+        assertThat(node.burnedCount()).isEqualTo(2);
+        assertThat(node.allocate(KEY, 1)).containsExactly("A004");
+    }
+
+    private OrderIdAllocator allocator(String nodeId, int blockSize, int leaseSeconds) {
+        OrderIdAllocator a = new OrderIdAllocator(
+                db.sqlSession.getMapper(OrderIdBlockMapper.class),
+                db.sqlSession.getMapper(OrderMapper.class),
+                db.txManager);
+        ReflectionTestUtils.setField(a, "blockSize", blockSize);
+        ReflectionTestUtils.setField(a, "leaseSeconds", leaseSeconds);
+        ReflectionTestUtils.setField(a, "nodeId", nodeId);
+        return a;
+    }
+
+    private List<Map<String, Object>> blocks() {
+        return db.jdbc.queryForList(
+                "SELECT CAST(BLOCK_START AS INT) AS BLOCK_START, CAST(BLOCK_END AS INT) AS BLOCK_END, OWNER "
+                        + "FROM ORDER_ID_BLOCK_TB WHERE APPLICANT_KEY = ? ORDER BY BLOCK_END", KEY);
+    }
+}
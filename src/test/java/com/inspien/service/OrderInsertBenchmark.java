@@ -0,0 +1,214 @@
+package com.inspien.service;
+
+import com.inspien.dto.OrderBatch;
+import com.inspien.infra.BatchSqlSession;
+import com.inspien.mapper.OrderMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * ORDER_TB insert 방식 비교 (JDBC batch vs 기존 INSERT ALL + foreach), Oracle 대상
+ *
+ * 기본 test 태스크에서는 제외되고, 접속 정보를 주면 benchmark 태스크로 실행
+ *   gradle benchmark -Dbenchmark.datasource.url=jdbc:oracle:thin:@//host:1521/svc \
+ *                    -Dbenchmark.datasource.username=... -Dbenchmark.datasource.password=...
+ *
+ * - 같은 문서 크기 순서(seed 고정, 1 ~ benchmark.max-rows 건)로 두 방식을 각각 실행해서 처리량(rows/s) 비교
+ * - V$SQL 에서 각 방식의 cursor 수 / SHARABLE_MEM / PARSE_CALLS 증가분을 비교 (V$SQL 조회 권한 필요, 없으면 생략)
+ *   INSERT ALL 은 건수마다 SQL 문장이 달라서 문서 크기 종류만큼 cursor 가 생김
+ * - 실행할 때마다 새 APPLICANT_KEY(BENCH...)로 넣고 끝나면 삭제
+ */
+@Tag("benchmark")
+class OrderInsertBenchmark {
+
+    // 기존 OrderService 의 INSERT ALL 단위
+    private static final int INSERT_ALL_CHUNK = 200;
+    // 현재 OrderService 의 flush 단위
+    private static final int BATCH_FLUSH = 200;
+
+    private static final String INSERT_ALL_MARK = "/* order-insert-bench */";
+
+    private static HikariDataSource dataSource;
+    private static JdbcTemplate jdbc;
+    private static DataSourceTransactionManager txManager;
+    private static BatchSqlSession batchSqlSession;
+    private static String run;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String url = System.getProperty("benchmark.datasource.url");
+        assumeTrue(url != null && !url.isBlank(), "benchmark.datasource.url is not set");
+
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(System.getProperty("benchmark.datasource.username"));
+        dataSource.setPassword(System.getProperty("benchmark.datasource.password"));
+        dataSource.setMaximumPoolSize(2);
+
+        SqlSessionFactoryBean factory = new SqlSessionFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setMapperLocations(new ClassPathResource("mapper/OrderMapper.xml"));
+        SqlSessionFactory sqlSessionFactory = factory.getObject();
+
+        jdbc = new JdbcTemplate(dataSource);
+        txManager = new DataSourceTransactionManager(dataSource);
+        batchSqlSession = new BatchSqlSession(sqlSessionFactory);
+        run = "BENCH" + System.currentTimeMillis();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (dataSource == null) return;
+        try {
+            int deleted = jdbc.update("DELETE FROM ORDER_TB WHERE APPLICANT_KEY LIKE ?", run + "-%");
+            System.out.printf("cleanup: %d rows deleted%n", deleted);
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    void compareJdbcBatchWithInsertAll() {
+        int documents = Integer.getInteger("benchmark.documents", 300);
+        int maxRows = Integer.getInteger("benchmark.max-rows", 500);
+        int warmup = Integer.getInteger("benchmark.warmup", 20);
+
+        Random random = new Random(42);
+        int[] sizes = new int[documents];
+        for (int i = 0; i < documents; i++) sizes[i] = 1 + random.nextInt(maxRows);
+
+        // JIT / 커넥션 예열 (측정에서 제외)
+        for (int i = 0; i < warmup; i++) {
+            insertWithBatch(batch("warm-b" + i, sizes[i % documents]));
+            insertWithInsertAll(batch("warm-a" + i, sizes[i % documents]));
+        }
+
+        Result batch = measure("jdbc-batch", "INSERT INTO ORDER_TB%", sizes, this::insertWithBatch);
+        Result insertAll = measure("insert-all", "INSERT " + INSERT_ALL_MARK + "%", sizes, this::insertWithInsertAll);
+
+        System.out.printf("%ndocuments=%d, rows/doc=1..%d%n", documents, maxRows);
+        System.out.printf("%-12s %12s %12s %10s %14s %12s%n",
+                "method", "rows", "rows/s", "cursors", "sharable_mem", "parse_calls");
+        batch.print();
+        insertAll.print();
+    }
+
+    private Result measure(String name, String sqlPattern, int[] sizes, Insert insert) {
+        SharedPool before = sharedPool(sqlPattern);
+
+        long rows = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < sizes.length; i++) {
+            insert.run(batch(name + "-" + i, sizes[i]));
+            rows += sizes[i];
+        }
+        long elapsedNs = System.nanoTime() - start;
+
+        SharedPool after = sharedPool(sqlPattern);
+        return new Result(name, rows, elapsedNs, before, after);
+    }
+
+    // 현재 OrderService.insertWithId 와 같은 방식
+    private void insertWithBatch(OrderBatch b) {
+        new TransactionTemplate(txManager).executeWithoutResult(status -> {
+            OrderMapper mapper = batchSqlSession.getMapper(OrderMapper.class);
+            for (int i = 0; i < b.size(); i++) {
+                mapper.insertOrder(b.row(i));
+                if ((i + 1) % BATCH_FLUSH == 0) batchSqlSession.flush();
+            }
+            batchSqlSession.flush();
+        });
+    }
+
+    // 기존 insertOrders (INSERT ALL + foreach) 와 같은 SQL, 건수마다 문장이 달라짐
+    private void insertWithInsertAll(OrderBatch b) {
+        new TransactionTemplate(txManager).executeWithoutResult(status -> {
+            for (int from = 0; from < b.size(); from += INSERT_ALL_CHUNK) {
+                int to = Math.min(from + INSERT_ALL_CHUNK, b.size());
+
+                StringBuilder sql = new StringBuilder("INSERT ").append(INSERT_ALL_MARK).append(" ALL");
+                List<Object> args = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    sql.append(" INTO ORDER_TB (ORDER_ID, USER_ID, ITEM_ID, APPLICANT_KEY, NAME, ADDRESS, ITEM_NAME, PRICE, STATUS)")
+                            .append(" VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                    OrderBatch.Row r = b.row(i);
+                    args.add(r.getOrderId());
+                    args.add(r.getUserId());
+                    args.add(r.getItemId());
+                    args.add(r.getApplicantKey());
+                    args.add(r.getName());
+                    args.add(r.getAddress());
+                    args.add(r.getItemName());
+                    args.add(r.getPrice());
+                    args.add(r.getStatus());
+                }
+                sql.append(" SELECT 1 FROM DUAL");
+                jdbc.update(sql.toString(), args.toArray());
+            }
+        });
+    }
+
+    // 문서마다 다른 APPLICANT_KEY 를 써서 ORDER_ID 는 항상 A000 부터
+    private static OrderBatch batch(String doc, int rows) {
+        OrderBatch b = new OrderBatch(run + "-" + doc, rows);
+        int header = b.addHeader("bench name", "bench address", "N");
+        for (int i = 0; i < rows; i++) {
+            b.add(header, "user" + i, "item" + i, "item name " + i, 1000 + i, Integer.toString(1000 + i));
+            b.setOrderId(i, OrderIdAllocator.indexToId(i));
+        }
+        return b;
+    }
+
+    private static SharedPool sharedPool(String sqlPattern) {
+        try {
+            Map<String, Object> row = jdbc.queryForMap(
+                    "SELECT COUNT(*) AS CURSORS, NVL(SUM(SHARABLE_MEM), 0) AS MEM, NVL(SUM(PARSE_CALLS), 0) AS PARSES "
+                            + "FROM V$SQL WHERE SQL_TEXT LIKE ?", sqlPattern);
+            return new SharedPool(
+                    ((Number) row.get("CURSORS")).longValue(),
+                    ((Number) row.get("MEM")).longValue(),
+                    ((Number) row.get("PARSES")).longValue());
+        } catch (Exception e) {
+            System.out.printf("V$SQL not available (%s), shared pool columns are skipped%n", e.getMessage());
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Insert {
+        void run(OrderBatch b);
+    }
+
+    private record SharedPool(long cursors, long sharableMem, long parseCalls) {}
+
+    private record Result(String name, long rows, long elapsedNs, SharedPool before, SharedPool after) {
+
+        void print() {
+            double rowsPerSec = rows / (elapsedNs / 1_000_000_000.0);
+            if (before == null || after == null) {
+                System.out.printf("%-12s %12d %12.0f %10s %14s %12s%n", name, rows, rowsPerSec, "-", "-", "-");
+                return;
+            }
+            System.out.printf("%-12s %12d %12.0f %10d %14d %12d%n", name, rows, rowsPerSec,
+                    after.cursors - before.cursors,
+                    after.sharableMem - before.sharableMem,
+                    after.parseCalls - before.parseCalls);
+        }
+    }
+}
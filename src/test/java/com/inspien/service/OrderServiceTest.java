@@ -0,0 +1,240 @@
+package com.inspien.service;
+
+import com.inspien.dto.OrderBatch;
+import com.inspien.infra.ReceiptOutbox;
+import com.inspien.mapper.IdempotencyMapper;
+import com.inspien.mapper.OrderIdBlockMapper;
+import com.inspien.mapper.OrderMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * OrderService.create 를 H2(Oracle 호환 모드)에서 실행
+ * 영수증 outbox / 전송은 mock, ID 할당기와 중복 방지 기록은 실제 DB 사용, preview token 캐시는 실제 객체
+ */
+class OrderServiceTest {
+
+    private static final String KEY = "APP";
+
+    private static final String XML = """
+            <ORDERS>
+              <HEADER><USER_ID>u1</USER_ID><NAME>홍길동</NAME><ADDRESS>서울</ADDRESS><STATUS>N</STATUS></HEADER>
+              <ITEM><USER_ID>u1</USER_ID><ITEM_ID>i1</ITEM_ID><ITEM_NAME>사과</ITEM_NAME><PRICE>1000</PRICE></ITEM>
+              <ITEM><USER_ID>u1</USER_ID><ITEM_ID>i2</ITEM_ID><ITEM_NAME>배</ITEM_NAME><PRICE>2000</PRICE></ITEM>
+            </ORDERS>
+            """;
+
+    private OrderTestDb db;
+    private OrderIdAllocator allocator;
+    private IdempotencyStore idempotencyStore;
+    private final ReceiptOutbox outbox = mock(ReceiptOutbox.class);
+    private final ReceiptDeliveryService delivery = mock(ReceiptDeliveryService.class);
+    private PreviewTokenCache previewTokenCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        db = new OrderTestDb();
+
+        allocator = new OrderIdAllocator(
+                db.sqlSession.getMapper(OrderIdBlockMapper.class),
+                db.sqlSession.getMapper(OrderMapper.class),
+                db.txManager);
+        ReflectionTestUtils.setField(allocator, "blockSize", 10);
+        ReflectionTestUtils.setField(allocator, "leaseSeconds", 300);
+        ReflectionTestUtils.setField(allocator, "nodeId", "node-1");
+
+        idempotencyStore = newIdempotencyStore();
+
+        previewTokenCache = new PreviewTokenCache();
+        ReflectionTestUtils.setField(previewTokenCache, "ttlMs", 300_000L);
+        ReflectionTestUtils.setField(previewTokenCache, "maxEntries", 10);
+        ReflectionTestUtils.setField(previewTokenCache, "maxRows", 1000);
+
+        when(delivery.deliver(anyString(), any())).thenReturn(true);
+        when(delivery.status(anyString())).thenReturn(Map.of("status", "SENT"));
+        MDC.put("traceId", "trace-1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        MDC.remove("traceId");
+        db.shutdown();
+    }
+
+    @Test
+    void repeatedTraceIdReplaysTheFirstResponseWithoutInsertingOrUploading() {
+        OrderService service = service(idempotencyStore);
+
+        Map<String, Object> first = service.create(KEY, XML, "trace-1", null);
+        Map<String, Object> second = service.create(KEY, XML, "trace-1", null);
+
+        assertThat(orderIds(first)).containsExactly("A000", "A001");
+        assertThat(second.get("replayed")).isEqualTo(true);
+        assertThat(second.get("orderIds")).isEqualTo(first.get("orderIds"));
+        assertThat(second.get("receiptFileName")).isEqualTo(first.get("receiptFileName"));
+        assertThat(second.get("deliveryStatus")).isEqualTo("SENT");
+
+        assertThat(db.countOrders(KEY)).isEqualTo(2);
+        verify(outbox, times(1)).writeMetaToPending(any());
+        verify(delivery, times(1)).deliver(anyString(), any());
+    }
+
+    @Test
+    void replayIsServedFromTheTableAfterARestart() {
+        Map<String, Object> first = service(idempotencyStore).create(KEY, XML, "trace-1", null);
+
+        // 재기동: 메모리 LRU 가 비어 있는 새 store
+        Map<String, Object> again = service(newIdempotencyStore()).create(KEY, XML, "trace-1", null);
+
+        assertThat(again.get("replayed")).isEqualTo(true);
+        assertThat(again.get("orderIds")).isEqualTo(first.get("orderIds"));
+        assertThat(db.countOrders(KEY)).isEqualTo(2);
+    }
+
+    @Test
+    void requestsWithoutTraceIdAreNeverDeduplicated() {
+        OrderService service = service(idempotencyStore);
+
+        service.create(KEY, XML, null, null);
+        Map<String, Object> second = service.create(KEY, XML, null, null);
+
+        assertThat(second).doesNotContainKey("replayed");
+        assertThat(orderIds(second)).containsExactly("A002", "A003");
+        assertThat(db.countOrders(KEY)).isEqualTo(4);
+    }
+
+    @Test
+    void traceIdOfAnotherApplicantIsRejected() {
+        OrderService service = service(idempotencyStore);
+        service.create(KEY, XML, "trace-1", null);
+
+        assertThatThrownBy(() -> service.create("OTHER", XML, "trace-1", null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("another applicant");
+        assertThat(db.countOrders("OTHER")).isZero();
+    }
+
+    @Test
+    void losingARaceOnTheSameTraceIdRollsBackAndReplaysTheWinner() {
+        // 다른 노드가 같은 traceId 를 먼저 커밋했지만, 이 요청은 그 전에 조회해서 기록이 없었던 상황
+        db.insertOrder(KEY, "A000");
+        db.insertOrder(KEY, "A001");
+        db.jdbc.update("INSERT INTO ORDER_IDEMPOTENCY_TB (TRACE_ID, APPLICANT_KEY, RECEIPT_FILE_NAME, ORDER_IDS) "
+                + "VALUES ('trace-1', ?, 'winner.txt', 'A000,A001')", KEY);
+
+        IdempotencyStore racing = spy(newIdempotencyStore());
+        doReturn(null).doCallRealMethod().when(racing).find("trace-1");
+
+        Map<String, Object> res = service(racing).create(KEY, XML, "trace-1", null);
+
+        assertThat(res.get("replayed")).isEqualTo(true);
+        assertThat(res.get("receiptFileName")).isEqualTo("winner.txt");
+        assertThat(orderIds(res)).containsExactly("A000", "A001");
+        assertThat(db.countOrders(KEY)).isEqualTo(2);
+        verify(outbox, never()).writeMetaToPending(any());
+        // 롤백된 ID 는 반납되어 버려지지 않음
+        assertThat(allocator.burnedCount()).isZero();
+    }
+
+    @Test
+    void orderIdCollisionWithTraceIdIsNotMistakenForAReplay() {
+        OrderService service = service(idempotencyStore);
+        assertThat(orderIds(service.create(KEY, XML, null, null))).containsExactly("A000", "A001");
+        // 블록 안의 다음 ID 가 다른 경로로 이미 사용됨
+        db.insertOrder(KEY, "A003");
+
+        assertThatThrownBy(() -> service.create(KEY, XML, "trace-1", null))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(idempotencyStore.find("trace-1")).isNull();
+
+        // 블록을 버렸으므로 다음 요청은 새 블록에서 할당받아 성공
+        Map<String, Object> retry = service.create(KEY, XML, "trace-1", null);
+        assertThat(retry).doesNotContainKey("replayed");
+        assertThat(orderIds(retry)).doesNotContain("A002", "A003");
+        assertThat(db.countOrders(KEY)).isEqualTo(2 + 1 + 2);
+    }
+
+    @Test
+    void previewTokenSkipsParsingAndInsertsThePreviewedBatch() {
+        // preview 때 만든 batch 를 그대로 쓰는지 구분하기 위해 XML 과 다른 상품명을 넣어둠
+        OrderBatch previewed = new OrderBatch(KEY);
+        int header = previewed.addHeader("홍길동", "서울", "N");
+        previewed.add(header, "u1", "i1", "from-preview", 1000, "1000");
+        String token = previewTokenCache.issue(XML, KEY, previewed);
+
+        Map<String, Object> res = service(idempotencyStore).create(KEY, XML, null, token);
+
+        assertThat(orderIds(res)).containsExactly("A000");
+        assertThat(itemNames()).containsExactly("from-preview");
+    }
+
+    @Test
+    void previewTokenForAnotherBodyFallsBackToParsing() {
+        OrderBatch previewed = new OrderBatch(KEY);
+        previewed.add(previewed.addHeader("홍길동", "서울", "N"), "u1", "i1", "from-preview", 1000, "1000");
+        String token = previewTokenCache.issue(XML.replace("사과", "포도"), KEY, previewed);
+
+        Map<String, Object> res = service(idempotencyStore).create(KEY, XML, null, token);
+
+        assertThat(orderIds(res)).containsExactly("A000", "A001");
+        assertThat(itemNames()).containsExactly("사과", "배");
+    }
+
+    @Test
+    void previewTokenIsSingleUse() {
+        OrderBatch previewed = new OrderBatch(KEY);
+        previewed.add(previewed.addHeader("홍길동", "서울", "N"), "u1", "i1", "from-preview", 1000, "1000");
+        String token = previewTokenCache.issue(XML, KEY, previewed);
+        OrderService service = service(idempotencyStore);
+
+        service.create(KEY, XML, null, token);
+        Map<String, Object> second = service.create(KEY, XML, null, token);
+
+        // 두 번째는 XML 을 다시 파싱해서 처리
+        assertThat(orderIds(second)).containsExactly("A001", "A002");
+        assertThat(itemNames()).containsExactly("from-preview", "사과", "배");
+    }
+
+    private OrderService service(IdempotencyStore store) {
+        OrderGroupCommitter groupCommitter = mock(OrderGroupCommitter.class);
+        OrderService service = new OrderService(allocator, db.batchSqlSession, groupCommitter, db.txManager,
+                delivery, store, previewTokenCache, outbox);
+        ReflectionTestUtils.setField(service, "participantName", "TEST");
+        ReflectionTestUtils.setField(service, "receiptLocalDir", "unused");
+        return service;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> orderIds(Map<String, Object> res) {
+        return (List<String>) res.get("orderIds");
+    }
+
+    private List<String> itemNames() {
+        return db.jdbc.queryForList("SELECT ITEM_NAME FROM ORDER_TB WHERE APPLICANT_KEY = ? ORDER BY ORDER_ID",
+                String.class, KEY);
+    }
+
+    private IdempotencyStore newIdempotencyStore() {
+        return new IdempotencyStore(db.sqlSession.getMapper(IdempotencyMapper.class), 100);
+    }
+}
@@ -0,0 +1,98 @@
+package com.inspien.service;
+
+import com.inspien.infra.BatchSqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * 주문 테이블이 있는 H2(Oracle 호환 모드) DB, 테스트마다 새로 만듦
+ */
+final class OrderTestDb {
+
+    private static final String[] DDL = {
+            """
+            CREATE TABLE ORDER_TB (
+                ORDER_ID      VARCHAR2(4)   NOT NULL,
+                USER_ID       VARCHAR2(50)  NOT NULL,
+                ITEM_ID       VARCHAR2(50)  NOT NULL,
+                APPLICANT_KEY VARCHAR2(100) NOT NULL,
+                NAME          VARCHAR2(100),
+                ADDRESS       VARCHAR2(200),
+                ITEM_NAME     VARCHAR2(20),
+                PRICE         VARCHAR2(30),
+                STATUS        CHAR(1),
+                CONSTRAINT ORDER_PK PRIMARY KEY (APPLICANT_KEY, ORDER_ID)
+            )
+            """,
+            """
+            CREATE TABLE ORDER_IDEMPOTENCY_TB (
+                TRACE_ID          VARCHAR2(100) PRIMARY KEY,
+                APPLICANT_KEY     VARCHAR2(100) NOT NULL,
+                RECEIPT_FILE_NAME VARCHAR2(200) NOT NULL,
+                ORDER_IDS         CLOB          NOT NULL,
+                CREATED_AT        TIMESTAMP     DEFAULT SYSTIMESTAMP NOT NULL
+            )
+            """,
+            """
+            CREATE TABLE ORDER_ID_SEQ_TB (
+                APPLICANT_KEY VARCHAR2(100) PRIMARY KEY,
+                NEXT_INDEX    NUMBER(10)    NOT NULL
+            )
+            """,
+            """
+            CREATE TABLE ORDER_ID_BLOCK_TB (
+                APPLICANT_KEY VARCHAR2(100) NOT NULL,
+                BLOCK_START   NUMBER(10)    NOT NULL,
+                BLOCK_END     NUMBER(10)    NOT NULL,
+                OWNER         VARCHAR2(100),
+                LEASE_UNTIL   TIMESTAMP,
+                CONSTRAINT ORDER_ID_BLOCK_PK PRIMARY KEY (APPLICANT_KEY, BLOCK_END)
+            )
+            """
+    };
+
+    final DriverManagerDataSource dataSource;
+    final JdbcTemplate jdbc;
+    final DataSourceTransactionManager txManager;
+    final SqlSessionFactory sqlSessionFactory;
+    final SqlSessionTemplate sqlSession;
+    final BatchSqlSession batchSqlSession;
+
+    OrderTestDb() throws Exception {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:orders-" + System.nanoTime() + ";MODE=Oracle;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=100");
+        jdbc = new JdbcTemplate(dataSource);
+        for (String ddl : DDL) jdbc.execute(ddl);
+
+        SqlSessionFactoryBean factory = new SqlSessionFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setMapperLocations(
+                new ClassPathResource("mapper/OrderMapper.xml"),
+                new ClassPathResource("mapper/IdempotencyMapper.xml"),
+                new ClassPathResource("mapper/OrderIdBlockMapper.xml"));
+        sqlSessionFactory = factory.getObject();
+
+        sqlSession = new SqlSessionTemplate(sqlSessionFactory);
+        batchSqlSession = new BatchSqlSession(sqlSessionFactory);
+        txManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    int countOrders(String applicantKey) {
+        Integer n = jdbc.queryForObject("SELECT COUNT(*) FROM ORDER_TB WHERE APPLICANT_KEY = ?", Integer.class, applicantKey);
+        return n == null ? 0 : n;
+    }
+
+    void insertOrder(String applicantKey, String orderId) {
+        jdbc.update("INSERT INTO ORDER_TB (ORDER_ID, USER_ID, ITEM_ID, APPLICANT_KEY, STATUS) VALUES (?, 'u', 'i', ?, 'N')",
+                orderId, applicantKey);
+    }
+
+    void shutdown() {
+        jdbc.execute("SHUTDOWN");
+    }
+}
@@ -0,0 +1,97 @@
+package com.inspien.service;
+
+import com.inspien.dto.OrderBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * PreviewTokenCache 발급 / 1회 사용 / 불일치 / 만료 / 용량 제한 확인
+ */
+class PreviewTokenCacheTest {
+
+    private static final String XML = "<HEADER><USER_ID>u1</USER_ID></HEADER>";
+
+    private PreviewTokenCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = cache(300_000, 10, 100);
+    }
+
+    @Test
+    void tokenReturnsTheIssuedBatchOnlyOnce() {
+        OrderBatch batch = batch(3);
+        String token = cache.issue(XML, "APP", batch);
+
+        assertThat(token).isNotBlank();
+        assertThat(cache.take(token, XML, "APP")).isSameAs(batch);
+        assertThat(cache.take(token, XML, "APP")).isNull();
+    }
+
+    @Test
+    void changedBodyOrOtherApplicantFallsBackAndConsumesTheToken() {
+        String token = cache.issue(XML, "APP", batch(1));
+        assertThat(cache.take(token, XML + " ", "APP")).isNull();
+        // 불일치로 한 번 거절된 token 은 다시 쓸 수 없음
+        assertThat(cache.take(token, XML, "APP")).isNull();
+
+        String other = cache.issue(XML, "APP", batch(1));
+        assertThat(cache.take(other, XML, "OTHER")).isNull();
+    }
+
+    @Test
+    void unknownOrExpiredTokenReturnsNull() throws Exception {
+        assertThat(cache.take("no-such-token", XML, "APP")).isNull();
+
+        PreviewTokenCache shortLived = cache(10, 10, 100);
+        String token = shortLived.issue(XML, "APP", batch(1));
+        Thread.sleep(30);
+
+        assertThat(shortLived.take(token, XML, "APP")).isNull();
+    }
+
+    @Test
+    void oldestEntriesAreEvictedWhenEntryOrRowLimitIsReached() {
+        PreviewTokenCache small = cache(300_000, 2, 10);
+
+        String first = small.issue(XML, "APP", batch(1));
+        String second = small.issue(XML, "APP", batch(1));
+        String third = small.issue(XML, "APP", batch(1));
+        // 최대 2건이므로 가장 오래된 first 가 밀려남
+        assertThat(small.take(first, XML, "APP")).isNull();
+
+        // 행 수 합계가 10 을 넘으면 남은 것 중 오래된 것부터 밀려남
+        String big = small.issue(XML, "APP", batch(10));
+        assertThat(small.take(second, XML, "APP")).isNull();
+        assertThat(small.take(third, XML, "APP")).isNull();
+        assertThat(small.take(big, XML, "APP")).isNotNull();
+    }
+
+    @Test
+    void documentLargerThanTheRowLimitIsNotCached() {
+        PreviewTokenCache small = cache(300_000, 10, 10);
+        String kept = small.issue(XML, "APP", batch(5));
+
+        assertThat(small.issue(XML, "APP", batch(11))).isNull();
+        // 거절된 문서 때문에 기존 token 이 밀려나지 않음
+        assertThat(small.take(kept, XML, "APP")).isNotNull();
+    }
+
+    private static PreviewTokenCache cache(long ttlMs, int maxEntries, int maxRows) {
+        PreviewTokenCache c = new PreviewTokenCache();
+        ReflectionTestUtils.setField(c, "ttlMs", ttlMs);
+        ReflectionTestUtils.setField(c, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(c, "maxRows", maxRows);
+        return c;
+    }
+
+    private static OrderBatch batch(int rows) {
+        OrderBatch b = new OrderBatch("APP");
+        int header = b.addHeader("name", "address", "N");
+        for (int i = 0; i < rows; i++) b.add(header, "u1", "i" + i, "item" + i, i, Integer.toString(i));
+        return b;
+    }
+}
@@ -0,0 +1,64 @@
+package com.inspien.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InListChunksTest {
+
+    @Test
+    void emptyInputHasNoChunks() {
+        assertThat(InListChunks.of(List.of())).isEmpty();
+    }
+
+    @Test
+    void valuesAreDeduplicatedSortedAndPaddedWithTheLastValue() {
+        List<List<String>> chunks = InListChunks.of(List.of("B002", "A001", "B002", "A000"));
+
+        assertThat(chunks).hasSize(1);
+        List<String> chunk = chunks.get(0);
+        assertThat(chunk).hasSize(10);
+        assertThat(chunk.subList(0, 3)).containsExactly("A000", "A001", "B002");
+        assertThat(chunk.subList(3, 10)).containsOnly("B002");
+    }
+
+    @Test
+    void lastChunkIsPaddedToTheSmallestBucketThatFits() {
+        assertThat(InListChunks.of(values(10)).get(0)).hasSize(10);
+        assertThat(InListChunks.of(values(11)).get(0)).hasSize(100);
+        assertThat(InListChunks.of(values(100)).get(0)).hasSize(100);
+        assertThat(InListChunks.of(values(101)).get(0)).hasSize(1000);
+
+        List<List<String>> chunks = InListChunks.of(values(1_005));
+        assertThat(chunks).hasSize(2);
+        assertThat(chunks.get(0)).hasSize(1000);
+        assertThat(chunks.get(1)).hasSize(10);
+    }
+
+    @Test
+    void largeInputIsSplitIntoFullSizeChunksInSortedOrder() {
+        List<String> values = new ArrayList<>(values(2_500));
+        Collections.reverse(values);
+
+        List<List<String>> chunks = InListChunks.of(values);
+
+        assertThat(chunks).hasSize(3);
+        assertThat(chunks).allSatisfy(c -> assertThat(c).hasSize(InListChunks.SIZE));
+        assertThat(chunks.get(0).get(0)).isEqualTo("00000");
+        assertThat(chunks.get(1).get(0)).isEqualTo("01000");
+        assertThat(chunks.get(2).get(0)).isEqualTo("02000");
+        assertThat(chunks.get(2).subList(500, InListChunks.SIZE)).containsOnly("02499");
+
+        List<String> flattened = chunks.stream().flatMap(List::stream).distinct().toList();
+        assertThat(flattened).hasSize(2_500).isSorted();
+    }
+
+    private static List<String> values(int n) {
+        return IntStream.range(0, n).mapToObj(i -> String.format("%05d", i)).toList();
+    }
+}
@@ -0,0 +1,137 @@
+package com.inspien.util;
+
+import com.inspien.dto.OrderBatch;
+import com.inspien.dto.OrderHeaderDTO;
+import com.inspien.dto.OrderItemDTO;
+import com.inspien.dto.OrderItemErrorDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+/**
+ * ITEM 검증 오류를 모두 모아서 보고하는지, 큰 문서(병렬 검증)도 작은 문서와 같은 결과를 내는지 확인
+ */
+class OrderPreviewMapperTest {
+
+    private final OrderPreviewMapper mapper = new OrderPreviewMapper();
+
+    @Test
+    void everyInvalidItemIsReportedInDocumentOrder() {
+        List<OrderItemDTO> items = List.of(
+                item("u1", "i0", "ok", "100"),
+                item("u1", "i1", " ", "abc"),
+                item("u1", "i2", "ok", "200"),
+                item("nobody", null, "ok", "300"));
+
+        OrderValidationException e = catchThrowableOfType(OrderValidationException.class,
+                () -> mapper.toBatch(headers("u1"), items, "APP"));
+
+        assertThat(e.getErrorCount()).isEqualTo(4);
+        assertThat(e.getErrors()).containsExactly(
+                new OrderItemErrorDTO(1, "ITEM_NAME", "ITEM.ITEM_NAME is required."),
+                new OrderItemErrorDTO(1, "PRICE", "ITEM.PRICE must be numeric."),
+                new OrderItemErrorDTO(3, "ITEM_ID", "ITEM.ITEM_ID is required."),
+                new OrderItemErrorDTO(3, "USER_ID", "No matching HEADER for ITEM.USER_ID=nobody"));
+        assertThat(e.getMessage()).isEqualTo("4 ITEM errors found. First at ITEM[1]: ITEM.ITEM_NAME is required.");
+    }
+
+    @Test
+    void singleErrorKeepsThePlainMessage() {
+        List<OrderItemDTO> items = List.of(item("u1", "i0", "ok", "100"), item("u1", "i1", "ok", "-1"));
+
+        assertThatThrownBy(() -> mapper.toBatch(headers("u1"), items, "APP"))
+                .isInstanceOf(OrderValidationException.class)
+                .hasMessage("ITEM.PRICE must be numeric.");
+    }
+
+    // 4999 건은 순차 검증, 5000 건부터 병렬 검증
+    @ParameterizedTest
+    @ValueSource(ints = {4_999, 5_000, 20_000})
+    void largeDocumentsReportTheSameErrorsAsASequentialScan(int size) {
+        List<OrderItemDTO> items = new ArrayList<>(size);
+        List<OrderItemErrorDTO> expected = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            boolean noName = i % 7 == 3;
+            boolean badPrice = i % 11 == 5;
+            boolean noHeader = i % 13 == 0;
+            items.add(item(noHeader ? "nobody" : "u" + (i % 3), "i" + i, noName ? "" : "item" + i,
+                    badPrice ? "1.5" : Integer.toString(i)));
+
+            if (noName) expected.add(new OrderItemErrorDTO(i, "ITEM_NAME", "ITEM.ITEM_NAME is required."));
+            if (badPrice) expected.add(new OrderItemErrorDTO(i, "PRICE", "ITEM.PRICE must be numeric."));
+            if (noHeader) expected.add(new OrderItemErrorDTO(i, "USER_ID", "No matching HEADER for ITEM.USER_ID=nobody"));
+        }
+
+        OrderValidationException e = catchThrowableOfType(OrderValidationException.class,
+                () -> mapper.toBatch(headers("u0", "u1", "u2"), items, "APP"));
+
+        // 개수는 전체, 목록은 앞에서부터 MAX_REPORTED 건까지
+        assertThat(e.getErrorCount()).isEqualTo(expected.size());
+        assertThat(e.getErrors()).containsExactlyElementsOf(
+                expected.subList(0, Math.min(expected.size(), OrderValidationException.MAX_REPORTED)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {4_999, 20_000})
+    void validLargeDocumentKeepsItemOrderAndHeaderMatching(int size) {
+        List<OrderItemDTO> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(item("u" + (i % 3), "i" + i, "item" + i, i % 10 == 0 ? "007" : Integer.toString(i)));
+        }
+
+        OrderBatch batch = mapper.toBatch(headers("u0", "u1", "u2"), items, "APP");
+
+        assertThat(batch.size()).isEqualTo(size);
+        for (int i = 0; i < size; i++) {
+            assertThat(batch.itemId(i)).isEqualTo("i" + i);
+            assertThat(batch.name(i)).isEqualTo("name-u" + (i % 3));
+            assertThat(batch.priceText(i)).isEqualTo(items.get(i).getPrice());
+        }
+    }
+
+    @Test
+    void streamingAddItemStopsAtTheFirstError() {
+        OrderBatch batch = new OrderBatch("APP");
+        HashMap<String, Integer> refs = new HashMap<>();
+        mapper.addHeader(batch, header("u1"), refs);
+
+        mapper.addItem(batch, item("u1", "i0", "ok", "1"), refs);
+        assertThatThrownBy(() -> mapper.addItem(batch, item("u1", null, "", "x"), refs))
+                .isInstanceOf(IllegalArgumentException.class)
+                .isNotInstanceOf(OrderValidationException.class)
+                .hasMessage("ITEM.ITEM_ID is required.");
+        assertThat(batch.size()).isEqualTo(1);
+    }
+
+    private static List<OrderHeaderDTO> headers(String... userIds) {
+        List<OrderHeaderDTO> list = new ArrayList<>();
+        for (String u : userIds) list.add(header(u));
+        return list;
+    }
+
+    private static OrderHeaderDTO header(String userId) {
+        OrderHeaderDTO h = new OrderHeaderDTO();
+        h.setUserId(userId);
+        h.setName("name-" + userId);
+        h.setAddress("address-" + userId);
+        h.setStatus("N");
+        return h;
+    }
+
+    private static OrderItemDTO item(String userId, String itemId, String itemName, String price) {
+        OrderItemDTO it = new OrderItemDTO();
+        it.setUserId(userId);
+        it.setItemId(itemId);
+        it.setItemName(itemName);
+        it.setPrice(price);
+        return it;
+    }
+}
@@ -0,0 +1,177 @@
+package com.inspien.util;
+
+import com.inspien.dto.OrderHeaderDTO;
+import com.inspien.dto.OrderItemDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * StAX 파서가 기존 DOM 파서(DomReference, 교체 전 구현 그대로)와 같은 결과를 내는지 확인
+ */
+class OrderXmlParserTest {
+
+    private final OrderXmlParser parser = new OrderXmlParser();
+
+    @ParameterizedTest(name = "[{index}]")
+    @ValueSource(strings = {
+            // root 가 있는 문서
+            """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <ORDERS>
+              <HEADER><USER_ID>u1</USER_ID><NAME>홍길동</NAME><ADDRESS>서울</ADDRESS><STATUS>N</STATUS></HEADER>
+              <ITEM><USER_ID>u1</USER_ID><ITEM_ID>i1</ITEM_ID><ITEM_NAME>사과</ITEM_NAME><PRICE>1000</PRICE></ITEM>
+              <ITEM><USER_ID>u1</USER_ID><ITEM_ID>i2</ITEM_ID><ITEM_NAME>배</ITEM_NAME><PRICE>2000</PRICE></ITEM>
+            </ORDERS>
+            """,
+            // root 없이 나열된 문서 + XML 선언
+            """
+            <?xml version="1.0"?>
+            <HEADER><USER_ID>u1</USER_ID><NAME>a</NAME><ADDRESS>b</ADDRESS><STATUS>N</STATUS></HEADER>
+            <HEADER><USER_ID>u2</USER_ID><NAME>c</NAME><ADDRESS>d</ADDRESS><STATUS>Y</STATUS></HEADER>
+            <ITEM><USER_ID>u2</USER_ID><ITEM_ID>i1</ITEM_ID><ITEM_NAME>x</ITEM_NAME><PRICE>1</PRICE></ITEM>
+            """,
+            // 값 앞뒤 공백, CDATA, 문자 참조, 주석
+            """
+            <ORDERS>
+              <HEADER>
+                <USER_ID>
+                  u1
+                </USER_ID>
+                <NAME><![CDATA[A & B <co>]]></NAME>
+                <ADDRESS>서울 &amp; 부산 &#65;</ADDRESS>
+                <STATUS>N<!-- comment --></STATUS>
+              </HEADER>
+            </ORDERS>
+            """,
+            // 필드 안에 하위 요소가 있는 경우 (getTextContent 는 하위 문자열을 이어 붙임)
+            """
+            <ORDERS>
+              <HEADER><USER_ID>u1</USER_ID><NAME><FIRST>길동</FIRST> <LAST>홍</LAST></NAME><ADDRESS>서울<ZIP>04524</ZIP></ADDRESS><STATUS>N</STATUS></HEADER>
+              <ITEM><USER_ID>u1</USER_ID><ITEM_ID>i1</ITEM_ID><ITEM_NAME><B>굵은</B> 이름</ITEM_NAME><PRICE>1<X/>000</PRICE></ITEM>
+            </ORDERS>
+            """,
+            // 같은 필드가 여러 번이면 처음 값, 없는 필드는 null, 알 수 없는 요소는 무시
+            """
+            <ORDERS>
+              <HEADER><USER_ID>u1</USER_ID><USER_ID>u9</USER_ID><EXTRA><NAME>nested</NAME></EXTRA></HEADER>
+              <ITEM><ITEM_ID>i1</ITEM_ID><MEMO>m</MEMO></ITEM>
+              <OTHER><ITEM_ID>outside</ITEM_ID></OTHER>
+            </ORDERS>
+            """,
+            // 빈 값
+            """
+            <HEADER><USER_ID></USER_ID><NAME/><ADDRESS> </ADDRESS><STATUS>N</STATUS></HEADER>
+            """
+    })
+    void matchesTheDomParser(String xml) throws Exception {
+        OrderXmlParser.Parsed expected = DomReference.parse(xml);
+        OrderXmlParser.Parsed actual = parser.parse(xml);
+
+        assertThat(actual.headers()).isEqualTo(expected.headers());
+        assertThat(actual.items()).isEqualTo(expected.items());
+    }
+
+    @Test
+    void childElementsInAFieldAreJoinedLikeGetTextContent() {
+        OrderXmlParser.Parsed parsed = parser.parse(
+                "<ITEM><ITEM_NAME>사과 <B>1</B>kg</ITEM_NAME><PRICE>1000</PRICE></ITEM>");
+
+        assertThat(parsed.items()).hasSize(1);
+        assertThat(parsed.items().get(0).getItemName()).isEqualTo("사과 1kg");
+        // 하위 요소 뒤의 필드도 계속 읽음
+        assertThat(parsed.items().get(0).getPrice()).isEqualTo("1000");
+    }
+
+    @Test
+    void externalEntitiesAreRejected() {
+        String xml = """
+                <?xml version="1.0"?>
+                <!DOCTYPE x [<!ENTITY xxe SYSTEM "file:///etc/passwd">]>
+                <HEADER><USER_ID>&xxe;</USER_ID></HEADER>
+                """;
+
+        assertThatThrownBy(() -> parser.parse(xml)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * 교체 전 DOM 구현 (비교 기준)
+     */
+    private static final class DomReference {
+
+        static OrderXmlParser.Parsed parse(String rawXml) throws Exception {
+            String trimmed = rawXml.trim();
+            Document doc;
+            try {
+                doc = parseDocument(trimmed);
+            } catch (Exception first) {
+                doc = parseDocument(wrapXml(trimmed));
+            }
+
+            List<OrderHeaderDTO> headers = new ArrayList<>();
+            NodeList headerNodes = doc.getElementsByTagName("HEADER");
+            for (int i = 0; i < headerNodes.getLength(); i++) {
+                Element e = (Element) headerNodes.item(i);
+                OrderHeaderDTO h = new OrderHeaderDTO();
+                h.setUserId(text(e, "USER_ID"));
+                h.setName(text(e, "NAME"));
+                h.setAddress(text(e, "ADDRESS"));
+                h.setStatus(text(e, "STATUS"));
+                headers.add(h);
+            }
+
+            List<OrderItemDTO> items = new ArrayList<>();
+            NodeList itemNodes = doc.getElementsByTagName("ITEM");
+            for (int i = 0; i < itemNodes.getLength(); i++) {
+                Element e = (Element) itemNodes.item(i);
+                OrderItemDTO it = new OrderItemDTO();
+                it.setUserId(text(e, "USER_ID"));
+                it.setItemId(text(e, "ITEM_ID"));
+                it.setItemName(text(e, "ITEM_NAME"));
+                it.setPrice(text(e, "PRICE"));
+                items.add(it);
+            }
+            return new OrderXmlParser.Parsed(headers, items);
+        }
+
+        private static Document parseDocument(String xml) throws Exception {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            dbf.setExpandEntityReferences(false);
+            return dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        private static String wrapXml(String xml) {
+            if (xml.startsWith("<?xml")) {
+                int end = xml.indexOf("?>");
+                if (end != -1) {
+                    return xml.substring(0, end + 2) + "<ROOT>" + xml.substring(end + 2) + "</ROOT>";
+                }
+            }
+            return "<ROOT>" + xml + "</ROOT>";
+        }
+
+        private static String text(Element parent, String tag) {
+            NodeList list = parent.getElementsByTagName(tag);
+            if (list.getLength() == 0) return null;
+            String v = list.item(0).getTextContent();
+            return v == null ? null : v.trim();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.inspien.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inspien.service.AdminReceiptService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 일괄 재전송 응답(NDJSON) 형식과 연결 끊김 감지 확인
+ */
+class AdminReceiptControllerTest {
+
+    private final AdminReceiptService service = mock(AdminReceiptService.class);
+    private final AdminReceiptController controller = new AdminReceiptController(service);
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Test
+    void eachLineIsOneJsonObjectFlushedAsItIsProduced() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<Integer> committedLengths = new ArrayList<>();
+        emits(List.of(line("start", "total", 2), line("result", "traceId", "줄\n바꿈"), line("summary", "total", 2)),
+                () -> committedLengths.add(contentLength(response)));
+
+        controller.bulkRetry("<BULK_RETRY/>", "key", response);
+
+        assertThat(response.getContentType()).startsWith("application/x-ndjson");
+        String[] lines = response.getContentAsString().split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(om.readValue(lines[0], Map.class)).containsEntry("type", "start").containsEntry("total", 2);
+        // 값 안의 줄바꿈은 escape 되어 한 줄을 유지
+        assertThat(om.readValue(lines[1], Map.class)).containsEntry("traceId", "줄\n바꿈");
+        assertThat(om.readValue(lines[2], Map.class)).containsEntry("type", "summary");
+        // 다음 줄을 만들 때는 이전 줄이 이미 응답에 기록되어 있음
+        assertThat(committedLengths.get(1)).isGreaterThan(committedLengths.get(0));
+        assertThat(committedLengths.get(2)).isGreaterThan(committedLengths.get(1));
+    }
+
+    @Test
+    void brokenConnectionIsReportedToTheService() throws Exception {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getWriter()).thenReturn(new PrintWriter(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        }));
+        emits(List.of(line("start", "total", 1), line("result", "traceId", "t1")), () -> { });
+
+        assertThatThrownBy(() -> controller.bulkRetry("<BULK_RETRY/>", "key", response))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasMessageContaining("Client disconnected");
+    }
+
+    // service 가 lines 를 차례로 내보내고, 각 줄을 내보내기 직전에 beforeEach 실행
+    @SuppressWarnings("unchecked")
+    private void emits(List<Map<String, Object>> lines, Runnable beforeEach) {
+        doAnswer(inv -> {
+            Consumer<Map<String, Object>> out = inv.getArgument(2);
+            for (Map<String, Object> l : lines) {
+                beforeEach.run();
+                out.accept(l);
+            }
+            return null;
+        }).when(service).bulkRetry(anyString(), anyString(), any(Consumer.class));
+    }
+
+    private static Map<String, Object> line(String type, String key, Object value) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("type", type);
+        m.put(key, value);
+        return m;
+    }
+
+    private static int contentLength(MockHttpServletResponse response) {
+        return response.getContentAsByteArray().length;
+    }
+}
@@ -0,0 +1,185 @@
+package com.inspien.web;
+
+import com.inspien.infra.ReceiptOutbox;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * OrderAdmissionFilter 한도 조절 확인
+ * 요청 처리(FilterChain)는 latch 로 붙잡아 두어서 동시 처리 수와 응답 시간을 조절
+ */
+class OrderAdmissionFilterTest {
+
+    private final ReceiptOutbox outbox = mock(ReceiptOutbox.class);
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+    private OrderAdmissionFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new OrderAdmissionFilter(mock(DataSource.class), outbox);
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "initialLimit", 20);
+        ReflectionTestUtils.setField(filter, "minLimit", 2);
+        ReflectionTestUtils.setField(filter, "maxLimit", 200);
+        ReflectionTestUtils.setField(filter, "maxQueue", 50);
+        ReflectionTestUtils.setField(filter, "queueTimeoutMs", 100L);
+        ReflectionTestUtils.setField(filter, "latencyTolerance", 2.0);
+        ReflectionTestUtils.setField(filter, "outboxPendingHigh", 1000);
+        ReflectionTestUtils.setField(filter, "outboxBacklogLimit", 2);
+        ReflectionTestUtils.setField(filter, "retryAfterSeconds", 1);
+        ReflectionTestUtils.setField(filter, "sampleIntervalMs", 0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void slowRequestsThatStartedTogetherShrinkTheLimitOnlyOnce() throws Exception {
+        // 기준 응답 시간 측정 (너무 짧으면 측정 오차가 2배를 넘을 수 있으므로 5ms)
+        for (int i = 0; i < 5; i++) assertThat(send("/api/orders", (req, res) -> sleep(5)).getStatus()).isEqualTo(200);
+        assertThat(limit()).isEqualTo(20);
+
+        // 혼잡 직전에 들어온 10건이 모두 느리게 끝남
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<MockHttpServletResponse>> slow = sendConcurrently(10, "/api/orders", blockUntil(go, 50));
+        awaitInFlight(10);
+        go.countDown();
+        for (Future<MockHttpServletResponse> f : slow) assertThat(f.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+
+        assertThat(limit()).isEqualTo(18.0);
+
+        // 줄인 뒤에 시작한 요청이 다시 느리면 한 번 더 줄임
+        send("/api/orders", (req, res) -> sleep(50));
+        assertThat(limit()).isEqualTo(18.0 * 0.9);
+    }
+
+    @Test
+    void outboxBacklogCapsConcurrencyWithoutShrinkingTheLimit() throws Exception {
+        when(outbox.pendingCount()).thenReturn(5_000);
+
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<MockHttpServletResponse>> held = sendConcurrently(2, "/api/orders/stream", blockUntil(go, 0));
+        awaitInFlight(2);
+
+        assertThat(send("/api/orders/stream", noop()).getStatus()).isEqualTo(429);
+
+        go.countDown();
+        for (Future<MockHttpServletResponse> f : held) assertThat(f.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+        assertThat(limit()).isGreaterThanOrEqualTo(20.0);
+
+        // 밀린 게 풀리면 원래 한도로 바로 복구
+        when(outbox.pendingCount()).thenReturn(0);
+        go = new CountDownLatch(1);
+        held = sendConcurrently(5, "/api/orders/stream", blockUntil(go, 0));
+        awaitInFlight(5);
+        go.countDown();
+        for (Future<MockHttpServletResponse> f : held) assertThat(f.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void growingLimitWakesEveryWaiterThatNowFits() throws Exception {
+        ReflectionTestUtils.setField(filter, "initialLimit", 2);
+        ReflectionTestUtils.setField(filter, "queueTimeoutMs", 5_000L);
+
+        CountDownLatch firstDone = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+        Future<MockHttpServletResponse> first = sendAsync("/api/orders/stream", blockUntil(firstDone, 0));
+        sendAsync("/api/orders/stream", blockUntil(secondDone, 0));
+        awaitInFlight(2);
+
+        List<Future<MockHttpServletResponse>> waiters = sendConcurrently(2, "/api/orders/stream", noop());
+        awaitWaiting(2);
+
+        // 하나가 끝나면서 한도가 2 -> 3 이 되어 자리가 2개 생김
+        long start = System.nanoTime();
+        firstDone.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        for (Future<MockHttpServletResponse> f : waiters) assertThat(f.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2_000);
+
+        secondDone.countDown();
+    }
+
+    private MockHttpServletResponse send(String uri, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private Future<MockHttpServletResponse> sendAsync(String uri, FilterChain chain) {
+        return pool.submit(() -> send(uri, chain));
+    }
+
+    private List<Future<MockHttpServletResponse>> sendConcurrently(int n, String uri, FilterChain chain) {
+        List<Future<MockHttpServletResponse>> res = new ArrayList<>();
+        for (int i = 0; i < n; i++) res.add(sendAsync(uri, chain));
+        return res;
+    }
+
+    private static FilterChain noop() {
+        return (req, res) -> { };
+    }
+
+    // go 가 열릴 때까지 붙잡고, 열린 뒤에도 minMs 이상 걸리게 함
+    private static FilterChain blockUntil(CountDownLatch go, long minMs) {
+        return (req, res) -> {
+            long start = System.nanoTime();
+            try {
+                go.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long left = minMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (left > 0) sleep(left);
+        };
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitInFlight(int n) throws InterruptedException {
+        awaitField("inFlight", n);
+    }
+
+    private void awaitWaiting(int n) throws InterruptedException {
+        awaitField("waiting", n);
+    }
+
+    private void awaitField(String name, int n) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((int) ReflectionTestUtils.getField(filter, name) != n) {
+            assertThat(System.currentTimeMillis()).as(name + " never reached " + n).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private double limit() {
+        return (double) ReflectionTestUtils.getField(filter, "limit");
+    }
+}